@@ -0,0 +1,178 @@
+/************************************************************************
+ *
+ * ColumnFilter.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+/**
+ * Typed replacement for PostFilter and FieldPostFilter. Once the parsing is complete
+ * and each field value separated from source string, column and value of each of the
+ * '=', 'LIKE' and 'REGEXP_LIKE' conditions are passed through filterColumn(...) and
+ * filterValue(...) methods. Default instance performs no transformations.<br><br>
+ *
+ * Before the filter is used for a given table and column
+ * {@link #forColumn(String, String) forColumn(...)} is called once, so subclasses can
+ * decide everything which depends only on table and column in advance, see
+ * {@link SQLizerEngine}.
+ */
+public class ColumnFilter extends Object {
+
+    // filter which performs no transformations
+    static final ColumnFilter IDENTITY = new ColumnFilter();
+
+    /**
+     * Returns filter to be used for a given table and column. Default implementation
+     * returns this filter.
+     */
+    public ColumnFilter forColumn(String table, String column) throws Exception {
+        return this;
+    }
+
+    /**
+     * Performs transformation of the column name.
+     *
+     * @param expr        one of {'LIKE', 'REGEXP_LIKE', '='}
+     * @param table       table against which WHERE expression will be build
+     * @param column      column name
+     * @param field       field value to be used in the 'column LIKE expression'
+     */
+    public String filterColumn(String expr, String table, String column, String field)
+        throws Exception
+    {
+        return column;
+    }
+
+    /**
+     * Performs transformation of the field value.
+     *
+     * @param expr        one of {'LIKE', 'REGEXP_LIKE', '='}
+     * @param table       table against which WHERE expression will be build
+     * @param column      column name
+     * @param field       field value to be used in the 'column LIKE expression'
+     */
+    public String filterValue(String expr, String table, String column, String field)
+        throws Exception
+    {
+        return field;
+    }
+
+    /**
+     * Returns column, or expression, holding lower case values of a given column or null
+     * if there is none. It lets case insensitive regular expressions with literal prefix use
+     * index. Default implementation returns null.
+     */
+    public String lowerCaseColumn(String table, String column) throws Exception {
+        return null;
+    }
+
+    /**
+     * Returns column, or expression, holding values of a given column with characters in
+     * reverse order, e.g. 'REVERSE(name)' backed by functional index, or null if there is
+     * none. LIKE patterns starting with a wildcard and ending with literal, such as suffix
+     * searches '*.stanford.edu' of domain names, are then matched by reversed pattern, whose
+     * literal prefix can use index. Values of the column must be the ones the filter gives
+     * for LIKE conditions, e.g. in lower case. Default implementation returns null.
+     */
+    public String reversedColumn(String table, String column) {
+        return null;
+    }
+
+    /**
+     * Returns true if a given column has the same value in all of the rows with the same
+     * id, e.g. if the table has single row per id. OPTIMIZING_ENGINE then checks negations
+     * and conjunctions of conditions on the column by single select rather than by set
+     * operations. Default implementation returns false.
+     */
+    public boolean isSingleValued(String table, String column) {
+        return false;
+    }
+
+    /**
+     * Returns false if a given column never holds NULL, so negated conditions on it need
+     * no 'IS NULL' check, see {@link #isSingleValued(String, String) isSingleValued(...)}.
+     * Default implementation returns true.
+     */
+    public boolean isNullable(String table, String column) {
+        return true;
+    }
+
+    /**
+     * Returns object, whose class transforms columns and values, i.e. this filter or post
+     * filter it adapts.
+     */
+    Object implementation() {
+        return this;
+    }
+
+    /**
+     * Returns typed filter for the post filter accepted by Field2SQL, i.e. ColumnFilter,
+     * PostFilter or FieldPostFilter, or null if post filter is of any other type. Filters
+     * provided by this library are replaced with equivalent ones, which do not repeat
+     * work for every value.
+     */
+    static ColumnFilter of(Object post_filter, String table, String column) throws Exception {
+        if( post_filter instanceof ColumnFilter )
+            return ((ColumnFilter)post_filter).forColumn(table, column);
+
+        Class<?> filter_class = post_filter == null ? null : post_filter.getClass();
+        if( filter_class == PostFilter.class || filter_class == FieldPostFilter.class )
+            return IDENTITY;
+        if( filter_class == NetDBPostFilter.class )
+            return NetDBPostFilter.columnFilter(column, ((NetDBPostFilter)post_filter).reversed_column);
+        if( post_filter instanceof PostFilter )
+            return new PostFilterAdapter((PostFilter)post_filter);
+        if( post_filter instanceof FieldPostFilter )
+            return new FieldPostFilterAdapter((FieldPostFilter)post_filter);
+        return null;
+    }
+
+    private static final class PostFilterAdapter extends ColumnFilter {
+        private final PostFilter filter;
+
+        PostFilterAdapter(PostFilter filter) {
+            this.filter = filter;
+        }
+
+        Object implementation() {
+            return filter;
+        }
+
+        public String filterColumn(String expr, String table, String column, String field)
+            throws Exception
+        {
+            return filter.column_filter(expr, table, column, field);
+        }
+
+        public String filterValue(String expr, String table, String column, String field)
+            throws Exception
+        {
+            return filter.field_filter(expr, table, column, field);
+        }
+    }
+
+    // FieldPostFilter is not applied to REGEXP_LIKE expressions
+    private static final class FieldPostFilterAdapter extends ColumnFilter {
+        private final FieldPostFilter filter;
+
+        FieldPostFilterAdapter(FieldPostFilter filter) {
+            this.filter = filter;
+        }
+
+        Object implementation() {
+            return filter;
+        }
+
+        public String filterValue(String expr, String table, String column, String field)
+            throws Exception
+        {
+            if( expr.equals("REGEXP_LIKE") )
+                return field;
+            return filter.filter(table, column, field);
+        }
+    }
+}
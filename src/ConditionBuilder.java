@@ -0,0 +1,578 @@
+/************************************************************************
+ *
+ * ConditionBuilder.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Builds 'where' conditions for individual values found in the source string.
+ * Shared by FieldTreeParser and FieldCompiler, so both produce identical SQL.
+ */
+final class ConditionBuilder {
+
+    // indicates table against which sql will be build
+    String table;
+
+    // name of the column against which we are building sql
+    String column;
+
+    // by setting this value to true we ensure that strings are numbers
+    boolean match_numbers;
+
+    // by setting this variable to true we can ensure search in subdomains.
+    boolean domain_name;
+
+    // post filter for each value to be matched. The result of
+    // filter.filterValue(...) call becomes value to be matched.
+    // null if post filter given by user is of unknown type.
+    ColumnFilter filter;
+
+    // if not null then when called the sql is built according to the
+    // following algorithm:
+    //       select id from table
+    //       where `expression_builder.filter(table, column, field)`
+    FieldPostFilter expression_builder;
+
+    // values are sent to database as bind parameters, so quotes are not doubled
+    boolean bind_values;
+
+    // regular expressions are replaced with LIKE conditions where possible, see RegexAnalyzer
+    boolean rewrite_regex;
+
+    // if not null, nanoseconds spent in post filter are added to timings[SQLizerMetrics.POST_FILTER]
+    long[] timings;
+
+    // metadata of the column copied to every FieldNode leaf, see ColumnFilter.isSingleValued(...)
+    boolean single_valued;
+    boolean nullable;
+
+    // if not null, column is in this table joined by id, e.g. of multi valued aliases,
+    // and conditions are checked by 'id IN ( select id from join_table where ... )'
+    String join_table;
+
+    // true if column.matches("^.*fullname.*$"), decided once per column
+    private boolean fullname;
+
+    // column holding reversed values, see ColumnFilter.reversedColumn(...), or null
+    private String reversed_column;
+
+    // condition operators
+    static final int EQUALS      = 0;
+    static final int LIKE        = 1;
+    static final int REGEXP_LIKE = 2;
+    static final int EXPRESSION  = 3; // condition built by expression_builder
+    static final int PREFIXED_REGEXP_LIKE = 4; // LIKE prefix condition AND REGEXP_LIKE
+    static final int LESS          = 5;  // comparisons of numbers
+    static final int LESS_EQUAL    = 6;
+    static final int GREATER       = 7;
+    static final int GREATER_EQUAL = 8;
+    static final int BETWEEN       = 9;  // range of numbers, m_values holds both bounds
+    static final int IN            = 10; // list of numbers, m_values holds all of them
+
+    // SQL of LESS, LESS_EQUAL, GREATER and GREATER_EQUAL
+    private static final String[] comparisons = { " < ", " <= ", " > ", " >= " };
+
+    // parts of the last condition built by one of the *Condition(...) methods
+    int     operator;    // one of EQUALS, LIKE, REGEXP_LIKE, EXPRESSION, ...
+    String  m_column;    // column after post filter
+    String  m_value;     // value after post filter, whole condition if operator is EXPRESSION
+    String[] m_values;   // numbers of BETWEEN and IN
+    boolean quoted;      // m_value must be enclosed in quotes
+    String  regex_modes; // 'i' or '' for REGEXP_LIKE
+    String  prefix_column; // column of LIKE prefix condition of PREFIXED_REGEXP_LIKE
+    String  prefix;        // value of LIKE prefix condition of PREFIXED_REGEXP_LIKE
+
+    // buffers reused by all of the conditions built by this instance
+    private StringBuilder svalue = new StringBuilder();
+    private StringBuilder nvalue = new StringBuilder();
+
+    ConditionBuilder(String table,          String column,
+                     boolean match_numbers, boolean domain_name,
+                     Object post_filter,    FieldPostFilter expression_builder)
+        throws Exception
+    {
+        this(table, column, match_numbers, domain_name,
+             ColumnFilter.of(post_filter, table, column), expression_builder);
+    }
+
+    ConditionBuilder(String table,          String column,
+                     boolean match_numbers, boolean domain_name,
+                     ColumnFilter filter,   FieldPostFilter expression_builder)
+    {
+        this.table              = table;
+        this.column             = column;
+        this.match_numbers      = match_numbers;
+        this.domain_name        = domain_name;
+        this.filter             = filter;
+        this.expression_builder = expression_builder;
+        this.fullname           = column.indexOf("fullname") >= 0;
+        this.single_valued      = filter != null && filter.isSingleValued(table, column);
+        this.nullable           = filter == null || filter.isNullable(table, column);
+        this.reversed_column    = filter == null ? null : filter.reversedColumn(table, column);
+    }
+
+    String buildRegexCondition(String value, int max_regex_cost) throws Exception {
+        SQLBuffer condition = new SQLBuffer(value.length() + 32, false);
+        regexCondition(value, 0, value.length(), max_regex_cost);
+        appendCondition(condition);
+        return condition.toString();
+    }
+
+    String buildNumericCondition(String value) throws Exception {
+        SQLBuffer condition = new SQLBuffer(value.length() + 32, false);
+        numericCondition(value, 0, value.length());
+        appendCondition(condition);
+        return condition.toString();
+    }
+
+    String buildStringCondition(String value) throws Exception {
+        SQLBuffer condition = new SQLBuffer(value.length() + 32, false);
+        stringCondition(value, 0, value.length());
+        appendCondition(condition);
+        return condition.toString();
+    }
+
+    /**
+     * Appends the last condition built by one of the *Condition(...) methods.
+     */
+    void appendCondition(SQLBuffer sql) {
+        appendCondition(sql, operator, m_column, m_value, m_values, quoted, regex_modes,
+                        prefix_column, prefix);
+    }
+
+    static void appendCondition(SQLBuffer sql, int operator, String column,
+                                String value, String[] values, boolean quoted,
+                                String regex_modes, String prefix_column, String prefix)
+    {
+        switch( operator ) {
+        case EQUALS:
+            sql.append(column).append(" = ");
+            sql.appendValue(value, quoted);
+            break;
+
+        case LIKE:
+            sql.append(column).append(" LIKE ");
+            sql.appendValue(value, quoted);
+            sql.append(" ESCAPE '\\'");
+            break;
+
+        case REGEXP_LIKE:
+            sql.dialect().appendRegex(sql, column, value, quoted, regex_modes);
+            break;
+
+        case PREFIXED_REGEXP_LIKE:
+            sql.append(prefix_column).append(" LIKE ");
+            sql.appendValue(prefix, true);
+            sql.append(" ESCAPE '\\' AND ");
+            sql.dialect().appendRegex(sql, column, value, quoted, regex_modes);
+            break;
+
+        case LESS:
+        case LESS_EQUAL:
+        case GREATER:
+        case GREATER_EQUAL:
+            sql.append(column).append(comparisons[operator - LESS]);
+            sql.appendValue(value, false);
+            break;
+
+        case BETWEEN:
+            sql.append(column).append(" BETWEEN ");
+            sql.appendValue(values[0], false);
+            sql.append(" AND ");
+            sql.appendValue(values[1], false);
+            break;
+
+        case IN:
+            sql.append(column).append(" IN (");
+            for( int i = 0; i < values.length; i++ ) {
+                if( i > 0 )
+                    sql.append(", ");
+                sql.appendValue(values[i], false);
+            }
+            sql.append(")");
+            break;
+
+        default:
+            sql.append(value);
+        }
+    }
+
+    /**
+     * Builds condition for the numeric term found between start and end offsets of the
+     * source string, see isNumericTerm(...):
+     *
+     *   12          column = 12
+     *   >= 5        column >= 5,  same for '<', '<=' and '>'
+     *   100..200    column BETWEEN 100 AND 200
+     *   1,2,3       column IN (1, 2, 3)
+     *
+     * Numbers are 64 bit integers or decimals. No post filter is applied to numbers.
+     */
+    void numericCondition(String src, int start, int end) throws SQLizerException {
+        m_column = column;
+        m_values = null;
+        quoted   = false;
+
+        int from = comparisonEnd(src, start, end);
+        if( from > start ) {
+            operator = src.charAt(start) == '<' ? LESS : GREATER;
+            if( src.charAt(from - 1) == '=' )
+                operator++;
+            while( from < end && isWhitespace(src.charAt(from)) )
+                from++;
+            if( numberEnd(src, from, end) != end )
+                throw notNumber(src, start, end);
+            m_value = number(src, from, end);
+            return;
+        }
+
+        int to = numberEnd(src, start, end);
+        if( to < 0 )
+            throw notNumber(src, start, end);
+        if( to == end ) {
+            operator = EQUALS;
+            m_value  = number(src, start, end);
+            return;
+        }
+
+        if( src.startsWith("..", to) ) {
+            if( numberEnd(src, to + 2, end) != end )
+                throw notNumber(src, start, end);
+            operator = BETWEEN;
+            m_values = new String[] { number(src, start, to), number(src, to + 2, end) };
+            return;
+        }
+
+        ArrayList<String> numbers = new ArrayList<String>();
+        numbers.add(number(src, start, to));
+        while( to < end && src.charAt(to) == ',' ) {
+            int next = numberEnd(src, to + 1, end);
+            if( next < 0 )
+                throw notNumber(src, start, end);
+            numbers.add(number(src, to + 1, next));
+            to = next;
+        }
+        if( to != end )
+            throw notNumber(src, start, end);
+        operator = IN;
+        m_values = numbers.toArray(new String[numbers.size()]);
+    }
+
+    /**
+     * True if characters between from and to are numeric term, i.e. number, range of
+     * numbers 'a..b', comparison '&lt;a', '&lt;=a', '&gt;a' or '&gt;=a', with optional
+     * whitespace after the operator, or list of numbers 'a,b,c'.
+     */
+    static boolean isNumericTerm(String src, int from, int to) {
+        int number = comparisonEnd(src, from, to);
+        if( number > from ) {
+            while( number < to && isWhitespace(src.charAt(number)) )
+                number++;
+            return numberEnd(src, number, to) == to;
+        }
+
+        int end = numberEnd(src, from, to);
+        if( end < 0 )
+            return false;
+        if( src.startsWith("..", end) )
+            return numberEnd(src, end + 2, to) == to;
+        while( end >= 0 && end < to && src.charAt(end) == ',' )
+            end = numberEnd(src, end + 1, to);
+        return end == to;
+    }
+
+    /**
+     * Returns offset following '&lt;', '&lt;=', '&gt;' or '&gt;=' at from, from if there is none.
+     */
+    static int comparisonEnd(String src, int from, int to) {
+        if( from == to || ( src.charAt(from) != '<' && src.charAt(from) != '>' ) )
+            return from;
+        return from + 1 < to && src.charAt(from + 1) == '=' ? from + 2 : from + 1;
+    }
+
+    // Returns offset following number [+-]digits[.digits] at from or -1 if there is none
+    // or if integer does not fit in 64 bits. Overflow is checked as by Long.parseLong(...).
+    private static int numberEnd(String src, int from, int to) {
+        int i = from;
+        boolean negative = i < to && src.charAt(i) == '-';
+        if( i < to && ( negative || src.charAt(i) == '+' ) )
+            i++;
+        int digits = i;
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long value = 0;
+        boolean overflow = false;
+        for( ; i < to && isDigit(src.charAt(i)); i++ ) {
+            int digit = src.charAt(i) - '0';
+            if( value < limit / 10 || value * 10 < limit + digit )
+                overflow = true;
+            else
+                value = value * 10 - digit;
+        }
+        if( i == digits )
+            return -1;
+        if( i + 1 < to && src.charAt(i) == '.' && isDigit(src.charAt(i + 1)) ) {
+            for( i++; i < to && isDigit(src.charAt(i)); )
+                i++;
+            return i;
+        }
+        return overflow ? -1 : i;
+    }
+
+    // Number between from and to in canonical form, e.g. '+007' is '7'.
+    private static String number(String src, int from, int to) {
+        String number = src.substring(from, to);
+        if( number.indexOf('.') >= 0 )
+            return new BigDecimal(number).toPlainString();
+        return String.valueOf(Long.parseLong(number));
+    }
+
+    // Same message as NumberFormatException thrown by Long.parseLong(...).
+    private static SQLizerException notNumber(String src, int start, int end) {
+        return new SQLizerException("For input string: \""+src.substring(start, end)+"\"",
+                                    start, src.substring(start, end), SQLizerMetrics.NUMBER);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    /**
+     * Builds REGEXP_LIKE(...) condition for the regex token /.../ or /.../i found
+     * between start and end offsets of the source string. '\/' is replaced with '/'.
+     * Regular expression is checked by RegexGuard unless max_regex_cost is 0.
+     */
+    void regexCondition(String src, int start, int end, int max_regex_cost) throws Exception {
+        String rewritten = RegexGuard.check(src, start, end, max_regex_cost);
+        regex_modes = "";
+        if( src.charAt(end - 1) == 'i' ) {
+            end--;
+            regex_modes = "i";
+        }
+        end--;
+        start++;
+        if( rewritten != null ) {
+            src   = rewritten;
+            start = 0;
+            end   = rewritten.length();
+        }
+
+        nvalue.setLength(0);
+        for( int i = start; i < end; i++ ) {
+            char c = src.charAt(i);
+            if( c == '\\' && i + 1 < end && src.charAt(i + 1) == '/' ) {
+                nvalue.append('/');
+                i++;
+            } else if( c == '\\' && i + 1 < end && src.charAt(i + 1) == '\\' ) {
+                nvalue.append("\\\\");
+                i++;
+            } else if( c == '\'' && !bind_values )
+                nvalue.append("''");
+            else
+                nvalue.append(c);
+        }
+
+        operator = REGEXP_LIKE;
+        m_column = column;
+        m_value  = nvalue.toString();
+        quoted   = true;
+        if( filter != null ) {
+            long started = timings == null ? 0 : System.nanoTime();
+            String value = m_value;
+            m_column = filter.filterColumn("REGEXP_LIKE", table, column, value);
+            m_value  = filter.filterValue("REGEXP_LIKE",  table, column, value);
+            if( timings != null )
+                timings[SQLizerMetrics.POST_FILTER] += System.nanoTime() - started;
+        }
+
+        if( rewrite_regex && !match_numbers )
+            rewriteRegex();
+    }
+
+    // Replaces REGEXP_LIKE condition with equivalent one, which can use index on the column.
+    // Case insensitive regular expressions can use only column holding lower case values.
+    private void rewriteRegex() throws Exception {
+        RegexAnalyzer regex = new RegexAnalyzer(m_value, !bind_values);
+        if( regex.kind == RegexAnalyzer.NONE )
+            return;
+
+        String like_column = m_column;
+        if( regex_modes.indexOf('i') >= 0 && !regex.caseless() ) {
+            like_column = filter == null ? null : filter.lowerCaseColumn(table, column);
+            if( like_column == null )
+                return;
+            regex.literal = regex.literal.toLowerCase();
+        }
+
+        if( regex.kind == RegexAnalyzer.PREFILTER ) {
+            operator      = PREFIXED_REGEXP_LIKE;
+            prefix_column = like_column;
+            prefix        = regex.likeValue();
+        } else {
+            operator = regex.kind == RegexAnalyzer.EQUALS ? EQUALS : LIKE;
+            m_column = like_column;
+            m_value  = regex.kind == RegexAnalyzer.EQUALS ? regex.literal : regex.likeValue();
+        }
+    }
+
+    /**
+     * Builds '=' or 'LIKE' condition for the string token found between start and end
+     * offsets of the source string.
+     */
+    void stringCondition(String src, int start, int end) throws Exception {
+        // translate wildcards leaving escapes in place
+        svalue.setLength(0);
+        boolean escaped   = false;
+        boolean like_expr = false;
+        for( int i = start; i < end; i++ ) {
+            char c = src.charAt(i);
+            if( c == '\\' && !escaped && i + 1 < end && src.charAt(i + 1) == '/' ) {
+                svalue.append('/');
+                i++;
+            } else if( c == '\\' ) {
+                escaped = !escaped;
+                svalue.append(c);
+            } else {
+                if( c == '*' && !escaped ) {
+                    svalue.append('%');
+                    like_expr = true;
+                } else if( c == '?' && !escaped ) {
+                    svalue.append('_');
+                    like_expr = true;
+                } else {
+                    if( ( c == '%' || c == '_' ) && !escaped )
+                        like_expr = true;
+                    svalue.append(c);
+                    escaped = false;
+                }
+            }
+        }
+        if( escaped ) // escape char not followed by any character
+            throw new SQLizerException("Illegal use of escape character.", end - 1,
+                                       src.substring(start, end), SQLizerMetrics.ESCAPE);
+
+        // offsets of the value in svalue, without quotes
+        int from = 0;
+        int to   = svalue.length();
+        if( to > 0 && svalue.charAt(0) == '"' && svalue.charAt(to - 1) == '"' ) {
+            from++;
+            to--;
+        }
+
+        if( domain_name || fullname ) {
+            boolean dot = false;
+            for( int i = from; i < to && !dot; i++ )
+                dot = svalue.charAt(i) == '.';
+            if( !dot ) {
+                svalue.setLength(to);
+                svalue.append(".%");
+                to += 2;
+                like_expr = true;
+            }
+        }
+
+        if( domain_name && ( to <= from ||
+                             ( svalue.charAt(to - 1) != '.' && svalue.charAt(to - 1) != '%' ) ) ) {
+            svalue.setLength(to);
+            svalue.append('.');
+            to++;
+        }
+
+        // remove escapes, double quotes and in case of LIKE escape LIKE wildcards
+        nvalue.setLength(0);
+        escaped = false;
+        for( int i = from; i < to; i++ ) {
+            char c = svalue.charAt(i);
+            if( escaped ) {
+                if( c == '\'' && !bind_values )
+                    nvalue.append("''");
+                else if( like_expr && ( c == '\\' || c == '_' || c == '%' ) )
+                    nvalue.append('\\').append(c);
+                else
+                    nvalue.append(c);
+                escaped = false;
+            } else if( c == '\\' )
+                escaped = true;
+            else if( c == '\'' && !bind_values )
+                nvalue.append("''");
+            else
+                nvalue.append(c);
+        }
+
+        String value = nvalue.toString();
+        operator = like_expr ? LIKE : EQUALS;
+        m_column = column;
+        m_value  = value;
+        quoted   = !match_numbers || like_expr;
+
+        long started = timings == null ? 0 : System.nanoTime();
+        if( expression_builder != null ) {
+            operator = EXPRESSION;
+            m_value  = expression_builder.filter(table, column, value);
+
+        } else if( filter != null ) {
+            if( like_expr ) {
+                m_column = filter.filterColumn("LIKE", table, column, value);
+                m_value  = filter.filterValue("LIKE",  table, column, value);
+                String reversed = reversed_column == null ? null : reversePattern(m_value);
+                if( reversed != null ) {
+                    m_column = reversed_column;
+                    m_value  = reversed;
+                }
+            } else {
+                m_value  = filter.filterValue("=",  table, column, value);
+                m_column = filter.filterColumn("=", table, column, value);
+            }
+
+        } else
+            operator = EXPRESSION;
+        if( timings != null )
+            timings[SQLizerMetrics.POST_FILTER] += System.nanoTime() - started;
+    }
+
+    /**
+     * Returns LIKE pattern, which matches reversed values matched by a given pattern, or null
+     * if the pattern does not start with a wildcard or ends with one, i.e. if reversed
+     * pattern has no literal prefix either. Escaped characters, doubled quotes and surrogate
+     * pairs are kept in order:
+     *
+     *   %.stanford.edu.    ->  .ude.drofnats.%
+     *   _a\%b              ->  b\%a_
+     */
+    static String reversePattern(String pattern) {
+        int length = pattern.length();
+        if( length < 2 || ( pattern.charAt(0) != '%' && pattern.charAt(0) != '_' ) )
+            return null;
+
+        // offsets of the characters, an escape and the character it escapes are one character
+        int[] starts = new int[length + 1];
+        int count = 0;
+        for( int i = 0; i < length; i++ ) {
+            starts[count++] = i;
+            char c = pattern.charAt(i);
+            if( i + 1 < length &&
+                ( c == '\\' || Character.isSurrogatePair(c, pattern.charAt(i + 1)) ) )
+                i++;
+        }
+        starts[count] = length;
+        char last = pattern.charAt(length - 1);
+        if( starts[count - 1] == length - 1 && ( last == '%' || last == '_' ) )
+            return null;
+
+        StringBuilder reversed = new StringBuilder(length);
+        for( int i = count - 1; i >= 0; i-- )
+            reversed.append(pattern, starts[i], starts[i + 1]);
+        return reversed.toString();
+    }
+}
\ No newline at end of file
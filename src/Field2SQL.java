@@ -10,6 +10,7 @@
 package stanford.netdb.utils;
 
 import java.io.*;
+import java.util.*;
 import java.util.regex.*;
 import antlr.collections.*;
 import antlr.debug.misc.*;
@@ -60,6 +61,43 @@ public class Field2SQL {
      */
     public static int DOMAIN_NAME = 2;
 
+    /**
+     * SQL is generated by the hand written single pass compiler. This is the default.
+     */
+    public static int FAST_ENGINE  = 0;
+
+    /**
+     * SQL is generated by ANTLR generated lexer, parser and tree parser.
+     */
+    public static int ANTLR_ENGINE = 1;
+
+    /**
+     * SQL is generated by the hand written compiler after parsed source string is rewritten
+     * into equivalent one, which needs fewer set operations. E.g. 'a or b' becomes
+     * single select with 'IN (...)' condition and 'a and not b' becomes 'MINUS'.
+     * Regular expressions with literal prefix, e.g. /^abc$/, /^abc/ or /^abc[0-9]/, become
+     * '=' or 'LIKE' conditions, or are preceded by one, which can use index on the column.
+     * Generated SQL selects the same ids as SQL generated by other engines.
+     */
+    public static int OPTIMIZING_ENGINE = 2;
+
+    /**
+     * Chains of more than this many AND and OR operators are written by FAST_ENGINE
+     * without nesting runs of the same operator, '( a UNION b UNION c )' rather than
+     * '( ( a UNION b ) UNION c )', so that long inputs give shallow SQL. Shorter chains are
+     * written just as by ANTLR_ENGINE, which hands inputs with longer chains to FAST_ENGINE.
+     * OPTIMIZING_ENGINE writes every chain flat.
+     */
+    public static int FLAT_CHAIN = 16;
+
+    private static volatile int engine = FAST_ENGINE;
+
+    private static volatile SQLDialect dialect = SQLDialect.ORACLE;
+
+    private static volatile SQLizerMetrics metrics = SQLizerMetrics.NONE;
+
+    private static volatile SQLizerLimits limits = SQLizerLimits.DEFAULT;
+
     private String field_display_name;    // used in error messages
     private String table;                 // table name
     private String column;                // column name
@@ -77,7 +115,7 @@ public class Field2SQL {
         this.type               = type;
         this.table              = table;
         this.column             = column;
-        this.str                = escape(str)+";";
+        this.str                = str;
         this.field_display_name = field_display_name;
         this.post_filter        = post_filter;
         this.expr_builder       = expr_builder;
@@ -138,9 +176,11 @@ public class Field2SQL {
      * @param post_filter         once the parsing is complete and each field value separated
      *                            from source string, post_filter.filter(...) method is called
      *                            and its result is used as a <strong>final field value</strong>.
-     *                            This variable must be either instance of FieldPostFilter or PostFilter
+     *                            This variable must be instance of FieldPostFilter, PostFilter
+     *                            or ColumnFilter
      *                            @see stanford.netdb.utils.FieldPostFilter#filter(String table, String column, String field)
      *                            @see stanford.netdb.utils.PostFilter
+     *                            @see stanford.netdb.utils.ColumnFilter
      */
     public static String parseField(int type,   String table, String column,
                                     String str, String field_display_name,
@@ -148,9 +188,10 @@ public class Field2SQL {
         throws Exception
     {
         if( !(post_filter instanceof FieldPostFilter) &&
-            !(post_filter instanceof PostFilter) )
+            !(post_filter instanceof PostFilter)      &&
+            !(post_filter instanceof ColumnFilter) )
             throw new Exception("post_filter must be instance of "+
-                                "either PostFilter or FieldPostFilter.");
+                                "PostFilter, FieldPostFilter or ColumnFilter.");
         return (new Field2SQL(type, table, column, str, field_display_name, post_filter, null)).doParse();
     }
 
@@ -190,16 +231,166 @@ public class Field2SQL {
                               new FieldPostFilter(), null)).doParse();
     }
 
+    /**
+     * Same as {@link #parseField(int, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.Object) parseField(...)},
+     * but field values are not written into generated SQL. Every value is replaced with '?'
+     * and passed as parameter of returned object, ready to be bound to PreparedStatement.
+     * Quotes in values are not doubled, neither in values given to post_filter, nor in
+     * parameters. SQL is generated by FAST_ENGINE, unless OPTIMIZING_ENGINE is selected.
+     *
+     * @see stanford.netdb.utils.PreparedSQL
+     */
+    public static PreparedSQL prepareField(int type,   String table, String column,
+                                           String str, String field_display_name,
+                                           Object post_filter)
+        throws Exception
+    {
+        if( !(post_filter instanceof FieldPostFilter) &&
+            !(post_filter instanceof PostFilter)      &&
+            !(post_filter instanceof ColumnFilter) )
+            throw new Exception("post_filter must be instance of "+
+                                "PostFilter, FieldPostFilter or ColumnFilter.");
+        return (new Field2SQL(type, table, column, str, field_display_name, post_filter, null)).doPrepare();
+    }
+
+    /**
+     * Same as {@link #prepareField(int, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.Object) prepareField(...)}
+     * with post_filter set to the default one, which performs no transormations on final field values
+     */
+    public static PreparedSQL prepareField(int type,   String table, String column,
+                                           String str, String field_display_name)
+        throws Exception
+    {
+        return (new Field2SQL(type, table, column, str, field_display_name,
+                              new FieldPostFilter(), null)).doPrepare();
+    }
+
+    /**
+     * Same as {@link #prepareField(int, java.lang.String, java.lang.String, java.lang.String, java.lang.String) prepareField(...)}
+     * with type = STRING
+     */
+    public static PreparedSQL prepareStringField(String table, String column,
+                                                 String str,   String field_display_name)
+        throws Exception
+    {
+        return (new Field2SQL(STRING, table, column, str, field_display_name,
+                              new FieldPostFilter(), null)).doPrepare();
+    }
+
+    /**
+     * Same as {@link #prepareField(int, java.lang.String, java.lang.String, java.lang.String, java.lang.String) prepareField(...)}
+     * with type = INT
+     */
+    public static PreparedSQL prepareIntField(String table, String column,
+                                              String str,   String field_display_name)
+        throws Exception
+    {
+        return (new Field2SQL(NUMERIC, table, column, str, field_display_name,
+                              new FieldPostFilter(), null)).doPrepare();
+    }
+
+    /**
+     * Selects engine used to generate SQL by all of the methods of this class.
+     * FAST_ENGINE and ANTLR_ENGINE produce identical SQL.
+     *
+     * @param engine              one of FAST_ENGINE, ANTLR_ENGINE, OPTIMIZING_ENGINE
+     */
+    public static void setEngine(int engine) {
+        if( engine != FAST_ENGINE && engine != ANTLR_ENGINE && engine != OPTIMIZING_ENGINE )
+            throw new IllegalArgumentException("Unknown engine "+engine);
+        Field2SQL.engine = engine;
+    }
+
+    /**
+     * Returns engine currently used to generate SQL, one of FAST_ENGINE, ANTLR_ENGINE,
+     * OPTIMIZING_ENGINE.
+     */
+    public static int getEngine() {
+        return engine;
+    }
+
+    /**
+     * Selects SQL dialect generated by all of the methods of this class. ANTLR_ENGINE
+     * generates only Oracle SQL, so FAST_ENGINE is used instead of it with other dialects.
+     *
+     * @param dialect             one of SQLDialect.ORACLE, SQLDialect.POSTGRESQL, SQLDialect.H2
+     */
+    public static void setDialect(SQLDialect dialect) {
+        if( dialect == null )
+            throw new IllegalArgumentException("dialect must not be null");
+        Field2SQL.dialect = dialect;
+    }
+
+    /**
+     * Returns SQL dialect currently generated, SQLDialect.ORACLE by default.
+     */
+    public static SQLDialect getDialect() {
+        return dialect;
+    }
+
+    /**
+     * Installs receiver of measurements of every input compiled by methods of this class
+     * and by SQLizerEngine instances built afterwards, e.g. SQLizerStats.
+     * SQLizerMetrics.NONE turns measurements off.
+     *
+     * @see stanford.netdb.utils.SQLizerMetrics
+     */
+    public static void setMetrics(SQLizerMetrics metrics) {
+        if( metrics == null )
+            throw new IllegalArgumentException("metrics must not be null");
+        Field2SQL.metrics = metrics;
+    }
+
+    /**
+     * Returns installed metrics, SQLizerMetrics.NONE by default.
+     */
+    public static SQLizerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets limits of complexity of input accepted by methods of this class and by
+     * SQLizerEngine instances and SearchForm objects created afterwards.
+     *
+     * @see stanford.netdb.utils.SQLizerLimits
+     */
+    public static void setLimits(SQLizerLimits limits) {
+        if( limits == null )
+            throw new IllegalArgumentException("limits must not be null");
+        Field2SQL.limits = limits;
+    }
+
+    /**
+     * Returns limits currently set, SQLizerLimits.DEFAULT by default.
+     */
+    public static SQLizerLimits getLimits() {
+        return limits;
+    }
+
     private String doParse() throws Exception {
+        int engine = Field2SQL.engine;
+        if( engine != ANTLR_ENGINE || dialect != SQLDialect.ORACLE )
+            return sqlizer(engine == ANTLR_ENGINE ? FAST_ENGINE : engine).parse(str);
+
+        SQLizerLimits  limits  = Field2SQL.limits;
+        SQLizerMetrics metrics = Field2SQL.metrics;
+        long[] timings = metrics == SQLizerMetrics.NONE ? null : new long[SQLizerMetrics.PHASES];
+        long   started = timings == null ? 0 : System.nanoTime();
         try {
+            // tree parser recurses along chains of operators, long ones are left to fast engine
+            if( FieldCompiler.scan(str, limits) > FLAT_CHAIN )
+                return sqlizer(FAST_ENGINE).parse(str);
+
             // first generate AST
-            StringsLexer lexer = new StringsLexer(new StringReader(str));
+            StringsLexer lexer = new StringsLexer(new StringReader(escape(str)+";"));
             if( type == NUMERIC )
                 lexer.match_numbers = true;
 
-            StringsParser parser = new StringsParser(lexer);
+            StringsParser parser = new StringsParser(timings == null ?
+                                                     (TokenStream)lexer : new TimedTokenStream(lexer, timings));
             parser.expr();
             CommonAST ast = (CommonAST)parser.getAST();
+            long parsed = timings == null ? 0 : System.nanoTime();
 
             // now walk down the AST and generate sql
             FieldTreeParser stp = new FieldTreeParser();
@@ -208,6 +399,8 @@ public class Field2SQL {
             stp.column             = column;
             stp.post_filter        = post_filter;
             stp.expression_builder = expr_builder;
+            stp.timings            = timings;
+            stp.max_regex_cost     = limits.max_regex_cost;
 
             if(      type == NUMERIC )
                 stp.match_numbers = true;
@@ -215,24 +408,120 @@ public class Field2SQL {
             else if( type == DOMAIN_NAME )
                 stp.domain_name   = true;
 
-            return stp.expr(ast);
+            String sql = stp.expr(ast);
+            limits.checkSQLLength(sql.length());
 
-        } catch (Exception ex){
-            str = unescape(str, true);
-            String msg = ex.getMessage();
-            if( expr_builder != null && msg != null && msg.trim().length() > 0 ) {
-                throw new Exception("In \""+field_display_name+"\" field "+msg.trim());
-            } else {
-                if( field_display_name != null )
-                    throw new Exception("\""+field_display_name+"\" field \""+str.substring(0, str.length()-1)+
-                                        "\" is not a valid "+(type==NUMERIC?"numeric":"string")+" field.");
-                else
-                    throw new Exception("Invalid "+(type==NUMERIC?"numeric":"string")+
-                                        " field \""+str.substring(0, str.length()-1)+"\".");
+            if( timings != null ) {
+                long generated = System.nanoTime();
+                timings[SQLizerMetrics.PARSE]    = parsed - started - timings[SQLizerMetrics.LEX];
+                timings[SQLizerMetrics.GENERATE] = generated - parsed - timings[SQLizerMetrics.POST_FILTER];
+                metrics.compiled(type, engine, timings, generated - started,
+                                 sql.length(), SQLizerMetrics.depth(ast));
             }
+            return sql;
+
+        } catch (Exception ex){
+            if( timings == null )
+                throw error(ex);
+            long failed = System.nanoTime();
+            Exception error = error(ex);
+            long reported = System.nanoTime();
+            timings[SQLizerMetrics.ERROR] = reported - failed;
+            metrics.failed(type, engine, timings, reported - started, SQLizerMetrics.category(ex));
+            throw error;
+        } catch (StackOverflowError ex) {
+            throw error(SQLizerLimits.stackOverflow());
         }
     } // end of doParse()
 
+    // Adds nanoseconds spent reading tokens to timings[SQLizerMetrics.LEX].
+    private static final class TimedTokenStream implements TokenStream {
+        private final TokenStream tokens;
+        private final long[]      timings;
+
+        TimedTokenStream(TokenStream tokens, long[] timings) {
+            this.tokens  = tokens;
+            this.timings = timings;
+        }
+
+        public Token nextToken() throws TokenStreamException {
+            long started = System.nanoTime();
+            try {
+                return tokens.nextToken();
+            } finally {
+                timings[SQLizerMetrics.LEX] += System.nanoTime() - started;
+            }
+        }
+    }
+
+    private PreparedSQL doPrepare() throws Exception {
+        return sqlizer(engine == OPTIMIZING_ENGINE ? OPTIMIZING_ENGINE : FAST_ENGINE).prepare(str);
+    } // end of doPrepare()
+
+    // SQLizerEngine with parameters of this call
+    private SQLizerEngine sqlizer(int engine) throws Exception {
+        try {
+            return new SQLizerEngine(type, table, column, field_display_name,
+                                     ColumnFilter.of(post_filter, table, column), expr_builder,
+                                     engine, dialect, metrics, limits);
+        } catch (Exception ex){
+            throw error(ex);
+        }
+    }
+
+    private SQLizerException error(Exception ex) {
+        return error(ex, type, str, field_display_name, expr_builder != null);
+    }
+
+    /**
+     * Checks syntax of the input without generating SQL and without calling post filter,
+     * e.g. while the user types. Much cheaper than parsing invalid input, as nothing is
+     * thrown. Returns the error, which parseField(...) would throw, or null if input is
+     * valid.
+     *
+     * @param type  one of NUMERIC, STRING, DOMAIN_NAME
+     * @see stanford.netdb.utils.SQLizerException
+     */
+    public static SQLizerException validate(int type, String str) {
+        return validate(type, str, null, false, limits);
+    }
+
+    /**
+     * Same as {@link #validate(int, String) validate(...)} with field_display_name used
+     * in error message.
+     */
+    public static SQLizerException validate(int type, String str, String field_display_name) {
+        return validate(type, str, field_display_name, false, limits);
+    }
+
+    static SQLizerException validate(int type, String str, String field_display_name,
+                                     boolean expression, SQLizerLimits limits)
+    {
+        boolean match_numbers = type == NUMERIC;
+        try {
+            ConditionBuilder conditions =
+                new ConditionBuilder("Record", "value", match_numbers, type == DOMAIN_NAME,
+                                     (ColumnFilter)null, null);
+            FieldCompiler compiler = new FieldCompiler("Record", "value", match_numbers, conditions);
+            compiler.limits = limits;
+            compiler.validate(str);
+            return null;
+        } catch (Exception ex) {
+            return error(ex, type, str, field_display_name, expression);
+        } catch (StackOverflowError ex) {
+            return error(SQLizerLimits.stackOverflow(), type, str, field_display_name, expression);
+        }
+    }
+
+    /**
+     * Translates exception thrown while parsing source string into the one reported to the caller.
+     */
+    static SQLizerException error(Exception ex, int type, String str, String field_display_name,
+                                  boolean expression)
+    {
+        return new SQLizerException(ex, type, str, field_display_name, expression);
+    } // end of error(...)
+
     /**
      * SQLizer shell. Run this to bring up sqlizer shell, where you can try different
      * input parameters and see generated SQL.
@@ -312,6 +601,14 @@ public class Field2SQL {
                     System.out.print(">>> ");
                 }
 
+            } else if( args[0].equals("batch") ) {
+                // compile every line of the file or stdin using all of the processors
+                System.exit(batch(args) == 0 ? 0 : 1);
+
+            } else if( args[0].equals("dbtest") ) {
+                // run regression test cases against database
+                dbtest(args.length > 1 ? args[1] : "jdbc:h2:mem:sqlizer");
+
             } else if( args[0].equals("test") ) {
                 // do regression test
                 System.out.println("Regression test for Field2SQL parser.");
@@ -322,86 +619,199 @@ public class Field2SQL {
                     else if( args[1].equals("-vv") )
                         verbose = 2;
                 } catch (Exception ex) { }
-                BufferedReader file = new BufferedReader(new FileReader("src/Field2SQL.java"));
-                String line;
-                boolean do_test = false;
                 int counter = 1;
-                while( ( line = file.readLine() ) != null ){
-                    line = line.trim();
-                    //System.out.println(line);
-                    if( line.equals("BEGIN REGRESSION TEST DATA") ) {
-                        do_test = true;
-                        continue;
-                    }
+                int[] engines = { FAST_ENGINE, ANTLR_ENGINE };
+                for( int e = 0; e < engines.length; e++ ) {
+                    setEngine(engines[e]);
+                    System.out.println((engines[e] == FAST_ENGINE ? "Fast" : "ANTLR")+" engine.");
+                    column = "name";
+                    BufferedReader file = new BufferedReader(new FileReader("src/Field2SQL.java"));
+                    String line;
+                    boolean do_test = false;
+                    while( ( line = file.readLine() ) != null ){
+                        line = line.trim();
+                        //System.out.println(line);
+                        if( line.equals("BEGIN REGRESSION TEST DATA") ) {
+                            do_test = true;
+                            continue;
+                        }
 
-                    if( !do_test || line.equals("") )
-                        continue;
+                        if( !do_test || line.equals("") )
+                            continue;
 
-                    if( line.equals("END REGRESSION TEST DATA") )
-                        return;
+                        if( line.equals("END REGRESSION TEST DATA") )
+                            break;
 
-                    // parse the line and extract test case and expected result
-                    Matcher m = Pattern.compile("^(\\S+)\\s+;(.*);.*;(.*);.*$").matcher(line);
-                    if( !m.matches() || m.groupCount() != 3 ) {
-                        System.out.println("ERROR: Invalid test case ["+line+"]");
-                        continue;
-                    }
+                        // parse the line and extract test case and expected result
+                        Matcher m = Pattern.compile("^(\\S+)\\s+;(.*);.*;(.*);.*$").matcher(line);
+                        if( !m.matches() || m.groupCount() != 3 ) {
+                            System.out.println("ERROR: Invalid test case ["+line+"]");
+                            continue;
+                        }
 
-                    String type = m.group(1);
-                    String test_case = m.group(2);
-                    String expected = m.group(3);
+                        String type = m.group(1);
+                        String test_case = m.group(2);
+                        String expected = m.group(3);
 
-                    if( !type.equals("COLUMN") ) {
-                        if( verbose > 0 )
-                            System.out.print(pad("\""+test_case+"\"", 75)+" ");
-                        else
-                            System.out.print(pad(""+(counter++), 5));
-                    }
+                        if( !type.equals("COLUMN") ) {
+                            if( verbose > 0 )
+                                System.out.print(pad("\""+test_case+"\"", 75)+" ");
+                            else
+                                System.out.print(pad(""+(counter++), 5));
+                        }
 
-                    String result = "";
-                    try {
-                        if( type.equals("COLUMN") ) {
-                            column = test_case;
+                        String result = "";
+                        try {
+                            if( type.equals("COLUMN") ) {
+                                column = test_case;
 
-                        } else if( type.equals("STRING") ) {
-                            result = parseStringField(table, column, test_case, null).trim();
+                            } else if( type.equals("STRING") ) {
+                                result = parseStringField(table, column, test_case, null).trim();
 
-                        } else if( type.equals("NETDB") ) {
-                            result = parseField(STRING, table, column, test_case, null,
-                                                new NetDBPostFilter()).trim();
+                            } else if( type.equals("NETDB") ) {
+                                result = parseField(STRING, table, column, test_case, null,
+                                                    new NetDBPostFilter()).trim();
 
-                        } else if( type.equals("NUMERIC") ) {
-                            result = parseIntField(table, column, test_case, null).trim();
+                            } else if( type.equals("DOMAIN") || type.equals("REVERSED") ) {
+                                // suffix searches matched by REVERSE(column) if it is REVERSED
+                                result = parseField(DOMAIN_NAME, table, column, test_case, null,
+                                                    type.equals("DOMAIN") ? new NetDBPostFilter() :
+                                                    new NetDBPostFilter("REVERSE(%s)")).trim();
 
-                        } else
-                            System.out.println("ERROR: Invalid test type ["+type+"]");
+                            } else if( type.equals("NUMERIC") ) {
+                                result = parseIntField(table, column, test_case, null).trim();
 
-                        if( !type.equals("COLUMN") ) {
-                            if( expected.equals("ERROR") )
-                                System.out.println("Failed. Expected ERROR.");
-                            else if( expected.equals(result) ) {
+                            } else if( type.equals("BIND") ) {
+                                result = prepareStringField(table, column, test_case, null).toString().trim();
+
+                            } else if( type.equals("NBIND") ) {
+                                result = prepareIntField(table, column, test_case, null).toString().trim();
+
+                            } else if( type.equals("PGSQL") || type.equals("PGOPT") ) {
+                                setDialect(SQLDialect.POSTGRESQL);
+                                if( type.equals("PGOPT") )
+                                    setEngine(OPTIMIZING_ENGINE);
+                                try {
+                                    result = parseStringField(table, column, test_case, null).trim();
+                                } finally {
+                                    setDialect(SQLDialect.ORACLE);
+                                    setEngine(engines[e]);
+                                }
+
+                            } else if( type.equals("NOPT") ) {
+                                setEngine(OPTIMIZING_ENGINE);
+                                try {
+                                    result = parseIntField(table, column, test_case, null).trim();
+                                } finally {
+                                    setEngine(engines[e]);
+                                }
+
+                            } else if( type.equals("OPTIMIZED") || type.equals("NETOPT") ) {
+                                setEngine(OPTIMIZING_ENGINE);
+                                try {
+                                    if( type.equals("NETOPT") )
+                                        result = parseField(STRING, table, column, test_case, null,
+                                                            new NetDBPostFilter()).trim();
+                                    else
+                                        result = parseStringField(table, column, test_case, null).trim();
+                                } finally {
+                                    setEngine(engines[e]);
+                                }
+
+                            } else if( type.equals("SINGLE") || type.equals("SNOTNULL") ) {
+                                // single valued column declared by post filter or by builder
+                                setEngine(OPTIMIZING_ENGINE);
+                                try {
+                                    if( type.equals("SINGLE") )
+                                        result = parseField(STRING, table, column, test_case, null,
+                                                            new SingleValuedFilter()).trim();
+                                    else
+                                        result = new SQLizerEngine.Builder().table(table).column(column).
+                                            engine(OPTIMIZING_ENGINE).singleValued(true).notNull(true).
+                                            build().parse(test_case).trim();
+                                } finally {
+                                    setEngine(engines[e]);
+                                }
+
+                            } else if( type.equals("FANOUT") || type.equals("FANOPT") ) {
+                                // input matched against the column, name_lc and name of RecordA
+                                result = fanout(table, column).engine(type.equals("FANOUT") ?
+                                                                      FAST_ENGINE : OPTIMIZING_ENGINE).
+                                    build().parse(test_case).trim();
+
+                            } else if( type.equals("NORMAL") || type.equals("KEY") ) {
+                                // canonical form of the input and its key
+                                SQLizerEngine sqlizer = new SQLizerEngine.Builder().table(table).
+                                    column(column).normalize(true).build();
+                                result = type.equals("KEY") ? sqlizer.key(test_case) :
+                                    sqlizer.parse(test_case).trim();
+
+                            } else if( type.equals("VALIDATE") || type.equals("NVALIDATE") ) {
+                                // error found by validate(...) must be the one returned by tryParse(...)
+                                int vtype = type.equals("VALIDATE") ? STRING : NUMERIC;
+                                SQLizerEngine sqlizer = new SQLizerEngine.Builder().type(vtype).
+                                    table(table).column(column).build();
+                                result = describe(validate(vtype, test_case));
+                                String parsed = describe(sqlizer.tryParse(test_case).getError());
+                                if( !parsed.equals(result) )
+                                    result = result+" / tryParse(...) "+parsed;
+
+                            } else if( type.equals("MATCH") || type.equals("NMATCH") ) {
+                                // expected result lists values and those of them, which match
+                                int arrow = expected.indexOf("=>");
+                                String values = arrow < 0 ? expected : expected.substring(0, arrow).trim();
+                                StringBuilder matched = new StringBuilder();
+                                if( type.equals("MATCH") ) {
+                                    FieldPredicate predicate = FieldPredicate.compile(STRING, test_case);
+                                    for( String value : values.split(" +") )
+                                        if( predicate.test(value) )
+                                            matched.append(' ').append(value);
+                                } else {
+                                    FieldPredicate.Numeric predicate = FieldPredicate.compileNumeric(test_case);
+                                    for( String value : values.split(" +") )
+                                        if( value.indexOf('.') >= 0 ?
+                                            predicate.test(new java.math.BigDecimal(value)) :
+                                            predicate.test(Long.parseLong(value)) )
+                                            matched.append(' ').append(value);
+                                }
+                                result = values+" =>"+matched;
+
+                            } else
+                                System.out.println("ERROR: Invalid test type ["+type+"]");
+
+                            if( !type.equals("COLUMN") ) {
+                                if( expected.equals("ERROR") )
+                                    System.out.println("Failed. Expected ERROR.");
+                                else if( expected.equals(result) ) {
+                                    System.out.println("Ok.");
+                                    if( verbose == 2 )
+                                        System.out.println("\tResult \""+result+"\"\n");
+                                } else {
+                                    System.out.println("Failed.\nTest ["+test_case+"]\nExpected ["+expected+"].\nFound    ["+result+"]\n");
+                                    if( verbose == 2 )
+                                        System.out.println("\tExpected \""+result+"\"");
+                                    if( verbose == 1 )
+                                        System.out.println("\tGot      \""+result+"\"");
+                                    if( verbose == 2 )
+                                        System.out.println("");
+                                }
+                            }
+                        } catch (Exception ex) {
+                            if( expected.equals("ERROR") ) {
                                 System.out.println("Ok.");
                                 if( verbose == 2 )
-                                    System.out.println("\tResult \""+result+"\"\n");
-                            } else {
-                                System.out.println("Failed.\nTest ["+test_case+"]\nExpected ["+expected+"].\nFound    ["+result+"]\n");
-                                if( verbose == 2 )
-                                    System.out.println("\tExpected \""+result+"\"");
-                                if( verbose == 1 )
-                                    System.out.println("\tGot      \""+result+"\"");
-                                if( verbose == 2 )
-                                    System.out.println("");
-                            }
+                                    System.out.println("\tResult \"ERROR\"\n");
+                            } else
+                                System.out.println("Failed. Expected success.");
                         }
-                    } catch (Exception ex) {
-                        if( expected.equals("ERROR") ) {
-                            System.out.println("Ok.");
-                            if( verbose == 2 )
-                                System.out.println("\tResult \"ERROR\"\n");
-                        } else
-                            System.out.println("Failed. Expected success.");
                     }
+                    file.close();
                 }
+                batchtest();
+                storetest();
+                metricstest();
+                validatetest();
+                limitstest();
             }
 
         } catch (Exception ex) {
@@ -409,6 +819,736 @@ public class Field2SQL {
         }
     } // end of main(...)
 
+    /**
+     * Compiles STRING test cases by SQLizerBatch, in small tasks so that they are split
+     * between threads, and checks that results come in order and are the same as those
+     * of SQLizerEngine.
+     */
+    private static void batchtest() throws Exception {
+        System.out.println("Batch compilation.");
+        ArrayList<String> inputs = new ArrayList<String>();
+        for( String[] test : testData() )
+            if( test[0].equals("STRING") )
+                inputs.add(test[1]);
+
+        SQLizerEngine engine = new SQLizerEngine.Builder().table("Record").column("name").build();
+        java.util.List<SQLizerResult> results =
+            new SQLizerBatch(engine, java.util.concurrent.ForkJoinPool.commonPool(), 16, 1).parse(inputs);
+        String failed = results.size() == inputs.size() ? null : "Expected "+inputs.size()+" results.";
+        for( int i = 0; i < results.size() && failed == null; i++ ) {
+            String input = inputs.get(i);
+            String expected;
+            try {
+                expected = engine.parse(input);
+            } catch (Exception ex) {
+                expected = "ERROR: "+ex.getMessage();
+            }
+            if( !input.equals(results.get(i).getInput()) || !expected.equals(results.get(i).toString()) )
+                failed = "Test ["+input+"]\nExpected ["+expected+"].\nFound    ["+results.get(i)+"]";
+        }
+        System.out.println(failed == null ? "Ok." : "Failed.\n"+failed+"\n");
+    } // end of batchtest()
+
+    // Writes STRING test cases into SQLizerStore, which must give the same SQL and keys as
+    // the engine, and ignore the file when engine settings change.
+    private static void storetest() throws Exception {
+        System.out.println("Precompiled store.");
+        LinkedHashSet<String> inputs = new LinkedHashSet<String>();
+        for( String[] test : testData() )
+            if( test[0].equals("STRING") )
+                inputs.add(test[1]);
+
+        SQLizerEngine engine = new SQLizerEngine.Builder().table("Record").column("name").build();
+        File file = File.createTempFile("sqlizer", ".store");
+        try {
+            int written = SQLizerStore.write(engine, inputs, file);
+            SQLizerStore store = SQLizerStore.open(engine, file);
+            String failed = store.isCurrent() && store.size() == written ? null :
+                "Expected "+written+" entries, found "+store.size()+".";
+            int valid = 0;
+            for( String input : inputs ) {
+                if( failed != null )
+                    break;
+                String expected, found;
+                try {
+                    expected = engine.parse(input)+" "+engine.key(input);
+                    valid++;
+                } catch (Exception ex) {
+                    expected = "ERROR: "+ex.getMessage();
+                }
+                try {
+                    found = store.parse(input)+" "+store.key(input);
+                } catch (Exception ex) {
+                    found = "ERROR: "+ex.getMessage();
+                }
+                if( !expected.equals(found) || store.contains(input) != !expected.startsWith("ERROR") )
+                    failed = "Test ["+input+"]\nExpected ["+expected+"].\nFound    ["+found+"]";
+            }
+            if( failed == null && valid != written )
+                failed = "Expected "+valid+" entries, written "+written+".";
+
+            // entries compiled for other post filter are not used
+            SQLizerEngine netdb = new SQLizerEngine.Builder().table("Record").column("lower(name)").
+                postFilter(new NetDBPostFilter()).build();
+            store = SQLizerStore.open(netdb, file);
+            if( failed == null && ( store.isCurrent() || store.size() != 0 ||
+                                    !store.parse("aBc").equals(netdb.parse("aBc")) ) )
+                failed = "Entries of other engine are used.";
+
+            // nor entries compiled for other class of post filter, even if it gives the same SQL
+            SQLizerEngine plain = new SQLizerEngine.Builder().table("Record").column("name").
+                postFilter(new FieldPostFilter()).build();
+            SQLizerEngine subclass = new SQLizerEngine.Builder().table("Record").column("name").
+                postFilter(new FieldPostFilter() {}).build();
+            SQLizerStore.write(plain, inputs, file);
+            if( failed == null && ( !SQLizerStore.open(plain, file).isCurrent() ||
+                                    SQLizerStore.open(subclass, file).isCurrent() ) )
+                failed = "Entries of other post filter are used.";
+
+            // truncated file is either not used or its entries, which do not fit, are not
+            SQLizerStore.write(engine, inputs, file);
+            byte[] bytes = java.nio.file.Files.readAllBytes(file.toPath());
+            for( int cut = 1; cut < bytes.length && failed == null; cut += Math.max(1, cut / 2) ) {
+                FileOutputStream out = new FileOutputStream(file);
+                out.write(bytes, 0, bytes.length - cut);
+                out.close();
+                store = SQLizerStore.open(engine, file);
+                for( String input : inputs ) {
+                    String expected, found;
+                    try {
+                        expected = engine.parse(input);
+                    } catch (Exception ex) {
+                        expected = "ERROR: "+ex.getMessage();
+                    }
+                    try {
+                        found = store.parse(input);
+                    } catch (Exception ex) {
+                        found = "ERROR: "+ex.getMessage();
+                    }
+                    if( !expected.equals(found) ) {
+                        failed = "File truncated by "+cut+" bytes, test ["+input+"]\nExpected ["+
+                            expected+"].\nFound    ["+found+"]";
+                        break;
+                    }
+                }
+            }
+
+            FileOutputStream out = new FileOutputStream(file);
+            out.write("not a store".getBytes());
+            out.close();
+            if( failed == null && SQLizerStore.open(engine, file).isCurrent() )
+                failed = "Invalid file is used.";
+            System.out.println(failed == null ? "Ok." : "Failed.\n"+failed+"\n");
+        } finally {
+            file.delete();
+        }
+    } // end of storetest()
+
+    // Compiles STRING and NUMERIC test cases by every engine with SQLizerStats installed.
+    // Counters must match outcomes of the test cases and engines must agree on parse tree
+    // depths and error categories.
+    private static void metricstest() throws Exception {
+        System.out.println("Metrics.");
+        int saved_engine = engine;
+        String failed = null;
+        SQLizerStats first = null;
+        int[] engines = { FAST_ENGINE, ANTLR_ENGINE, OPTIMIZING_ENGINE };
+        try {
+            for( int e = 0; e < engines.length && failed == null; e++ ) {
+                SQLizerStats stats = new SQLizerStats();
+                setEngine(engines[e]);
+                setMetrics(stats);
+                int[] compiled = new int[3];
+                int[] errors   = new int[3];
+                for( String[] test : testData() ) {
+                    int type = test[0].equals("STRING") ? STRING : test[0].equals("NUMERIC") ? NUMERIC : -1;
+                    if( type < 0 )
+                        continue;
+                    try {
+                        parseField(type, "Record", "name", test[1], null);
+                        compiled[type]++;
+                    } catch (Exception ex) {
+                        errors[type]++;
+                    }
+                }
+                setMetrics(SQLizerMetrics.NONE);
+
+                for( int type = 0; type < 3; type++ )
+                    if( stats.getCompiled(type) != compiled[type] || stats.getFailed(type) != errors[type] )
+                        failed = "Engine "+engines[e]+", type "+type+": expected "+compiled[type]+"/"+errors[type]+
+                            ", found "+stats.getCompiled(type)+"/"+stats.getFailed(type)+".";
+                if( first == null )
+                    first = stats;
+                else if( failed == null ) {
+                    if( !Arrays.equals(first.getDepthHistogram(), stats.getDepthHistogram()) )
+                        failed = "Engine "+engines[e]+": depths differ.";
+                    for( int c = 0; c < SQLizerMetrics.CATEGORIES; c++ )
+                        if( first.getErrors(c) != stats.getErrors(c) )
+                            failed = "Engine "+engines[e]+": "+SQLizerMetrics.categoryName(c)+" errors differ, "+
+                                first.getErrors(c)+" != "+stats.getErrors(c)+".";
+                }
+            }
+        } finally {
+            setMetrics(SQLizerMetrics.NONE);
+            setEngine(saved_engine);
+        }
+        System.out.println(failed == null ? "Ok." : "Failed.\n"+failed+"\n");
+    } // end of metricstest()
+
+    // Every engine and validate(...) must reject input over limits at the same token,
+    // deeply nested input must not exhaust the stack and long chains must give shallow SQL.
+    private static void limitstest() throws Exception {
+        System.out.println("Limits.");
+        StringBuilder nested = new StringBuilder();
+        StringBuilder chain  = new StringBuilder("a0");
+        for( int i = 0; i < 100000; i++ )
+            nested.append('(');
+        for( int i = 1; i < 50000; i++ )
+            chain.append(" or a").append(i);
+        String[][] cases = {
+            // input, limits as terms/depth/sql length[/regex cost], expected error
+            { nested.toString(),      "0/256/0", "limit at 256 (" },
+            { nested.toString(),      "0/0/0",   "limit at 1024 (" },
+            { nested.toString(),      "0/5000/0", "limit at 1024 (" },
+            { "a or b or c or d or e", "4/0/0",  "limit at 20 e" },
+            { "not (not (a))",         "0/2/0",  "limit at 5 not" },
+            { "not a or (not b)",      "0/1/0",  "limit at 10 not" },
+            { "a or b",                "0/0/40", "limit at -1 end" },
+            { "a or b",                "2/1/0",  "valid" },
+            { "/.*a.*b.*c.*d/",        "0/0/0/3", "limit at 0 /.*a.*b.*c.*d/" },
+            { "/.*a.*b.*c/",           "0/0/0/3", "valid" },
+        };
+        int saved_engine = engine;
+        SQLizerLimits saved_limits = limits;
+        String failed = null;
+        int[] engines = { FAST_ENGINE, ANTLR_ENGINE, OPTIMIZING_ENGINE };
+        try {
+            for( int e = 0; e < engines.length && failed == null; e++ ) {
+                setEngine(engines[e]);
+                for( int i = 0; i < cases.length && failed == null; i++ ) {
+                    String[] max = cases[i][1].split("/");
+                    setLimits(new SQLizerLimits(Integer.parseInt(max[0]), Integer.parseInt(max[1]),
+                                                Integer.parseInt(max[2]),
+                                                max.length > 3 ? Integer.parseInt(max[3]) : 0));
+                    String found = "valid";
+                    try {
+                        parseStringField("Record", "name", cases[i][0], null);
+                    } catch (SQLizerException ex) {
+                        found = describe(ex);
+                    }
+                    SQLizerException error = validate(STRING, cases[i][0]);
+                    if( !found.equals(cases[i][2]) ||
+                        ( error != null && error.getPosition() >= 0 && !describe(error).equals(found) ) )
+                        failed = "Engine "+engines[e]+", test ["+cases[i][0].substring(0, Math.min(40, cases[i][0].length()))+
+                            "]\nExpected ["+cases[i][2]+"].\nFound    ["+found+"], validate(...) ["+describe(error)+"]";
+                }
+
+                setLimits(SQLizerLimits.DEFAULT);
+                String sql = parseStringField("Record", "name", chain.toString(), null);
+                int depth = 0, deepest = 0;
+                for( int i = 0; i < sql.length(); i++ ) {
+                    if( sql.charAt(i) == '(' )
+                        deepest = Math.max(deepest, ++depth);
+                    else if( sql.charAt(i) == ')' )
+                        depth--;
+                }
+                if( failed == null && deepest > FLAT_CHAIN + 2 )
+                    failed = "Engine "+engines[e]+": "+deepest+" nested brackets in SQL of long chain.";
+
+                // depth of MAX_DEPTH is accepted by every engine, even when normalized
+                String deep = nested.substring(0, SQLizerLimits.MAX_DEPTH - 1)+"a or not b"+
+                    nested.substring(0, SQLizerLimits.MAX_DEPTH - 1).replace('(', ')');
+                setLimits(SQLizerLimits.NONE);
+                SQLizerException error = validate(STRING, deep);
+                try {
+                    parseStringField("Record", "name", deep, null);
+                } catch (SQLizerException ex) {
+                    error = ex;
+                }
+                if( error == null && engines[e] != ANTLR_ENGINE )
+                    error = new SQLizerEngine.Builder().table("Record").column("name").engine(engines[e]).
+                        limits(SQLizerLimits.NONE).normalize(true).build().tryParse(deep).getError();
+                if( failed == null && error != null )
+                    failed = "Engine "+engines[e]+": "+SQLizerLimits.MAX_DEPTH+" nested brackets rejected, "+
+                        describe(error);
+            }
+        } finally {
+            setLimits(saved_limits);
+            setEngine(saved_engine);
+        }
+        System.out.println(failed == null ? "Ok." : "Failed.\n"+failed+"\n");
+    } // end of limitstest()
+
+    // Declares every column single valued and nullable.
+    private static final class SingleValuedFilter extends ColumnFilter {
+        public boolean isSingleValued(String table, String column) {
+            return true;
+        }
+    }
+
+    // Position, token and category of the error as written in regression test data.
+    private static String describe(SQLizerException error) {
+        if( error == null )
+            return "valid";
+        return SQLizerMetrics.categoryName(error.getCategory())+" at "+error.getPosition()+
+            ( error.getToken() == null ? " end" : " "+error.getToken() );
+    }
+
+    // Every STRING and NUMERIC test case must be valid exactly when it is parsed without
+    // error and validate(...) must report the same message.
+    private static void validatetest() throws Exception {
+        System.out.println("Validation.");
+        String failed = null;
+        for( String[] test : testData() ) {
+            int type = test[0].equals("STRING") ? STRING : test[0].equals("NUMERIC") ? NUMERIC : -1;
+            if( type < 0 )
+                continue;
+            String expected = null;
+            try {
+                parseField(type, "Record", "name", test[1], "Name");
+            } catch (Exception ex) {
+                expected = ex.getMessage();
+            }
+            SQLizerException error = validate(type, test[1], "Name");
+            String found = error == null ? null : error.getMessage();
+            if( expected == null ? found != null : !expected.equals(found) ) {
+                failed = "Test ["+test[1]+"]\nExpected ["+expected+"].\nFound    ["+found+"]";
+                break;
+            }
+        }
+        System.out.println(failed == null ? "Ok." : "Failed.\n"+failed+"\n");
+    } // end of validatetest()
+
+    /**
+     * Reads regression test data found at the end of src/Field2SQL.java. Each test case
+     * is returned as { type, test case, expected result }.
+     */
+    private static ArrayList<String[]> testData() throws Exception {
+        ArrayList<String[]> cases = new ArrayList<String[]>();
+        BufferedReader file = new BufferedReader(new FileReader("src/Field2SQL.java"));
+        try {
+            Pattern test_p = Pattern.compile("^(\\S+)\\s+;(.*);.*;(.*);.*$");
+            String line;
+            boolean do_test = false;
+            while( ( line = file.readLine() ) != null ){
+                line = line.trim();
+                if( line.equals("BEGIN REGRESSION TEST DATA") ) {
+                    do_test = true;
+                    continue;
+                }
+                if( !do_test || line.equals("") )
+                    continue;
+                if( line.equals("END REGRESSION TEST DATA") )
+                    break;
+
+                Matcher m = test_p.matcher(line);
+                if( m.matches() )
+                    cases.add(new String[] { m.group(1), m.group(2), m.group(3) });
+            }
+        } finally {
+            file.close();
+        }
+        return cases;
+    } // end of testData()
+
+    /**
+     * Runs regression test cases against database given by JDBC url. Tables Record and
+     * RecordN are filled with values found in the expected SQL of the test cases, several
+     * values per id. Then ids selected by SQL, which is generated by every engine for every
+     * dialect, which can run on the database, and with bind parameters, are checked against
+     * ids selected by SQL, which FAST_ENGINE generates for Oracle, and so are ids selected by
+     * SQLizerExecutor.
+     */
+    private static void dbtest(String url) throws Exception {
+        System.out.println("Database regression test for Field2SQL parser.");
+        ArrayList<String[]> cases = testData();
+        java.sql.Connection connection = java.sql.DriverManager.getConnection(url);
+        // connections of SQLizerExecutor, H2 is not needed to compile this class
+        javax.sql.DataSource source = (javax.sql.DataSource)
+            Class.forName("org.h2.jdbcx.JdbcDataSource").getDeclaredConstructor().newInstance();
+        source.getClass().getMethod("setURL", String.class).invoke(source, url);
+        java.util.concurrent.ExecutorService pool = java.util.concurrent.Executors.newFixedThreadPool(4);
+        try {
+            createTestTables(connection, cases);
+
+            SQLDialect[] dialects = { SQLDialect.ORACLE, SQLDialect.H2 };
+            int[]        engines  = { FAST_ENGINE, ANTLR_ENGINE, OPTIMIZING_ENGINE };
+            String column = "name";
+            int counter = 1;
+            for( String[] test : cases ) {
+                String type = test[0];
+                String test_case = test[1];
+                if( type.equals("COLUMN") ) {
+                    column = test_case;
+                    continue;
+                }
+                if( test[2].equals("ERROR") || type.endsWith("VALIDATE") || type.startsWith("FAN") )
+                    continue;
+
+                int ptype = type.equals("NUMERIC") || type.equals("NBIND") || type.equals("NOPT") ?
+                    NUMERIC : type.equals("DOMAIN") || type.equals("REVERSED") ? DOMAIN_NAME : STRING;
+                String table = ptype == NUMERIC ? "RecordN" : "Record";
+                Object post_filter = type.equals("REVERSED") ?
+                    (Object)new NetDBPostFilter("REVERSE(%s)") :
+                    ptype == DOMAIN_NAME || type.equals("NETDB") || type.equals("NETOPT") ?
+                    (Object)new NetDBPostFilter() : (Object)new FieldPostFilter();
+                // reversed column must select the same ids as the column itself
+                Object expected_filter = type.equals("REVERSED") ?
+                    (Object)new NetDBPostFilter() : post_filter;
+
+                System.out.print(pad(""+(counter++), 5));
+                String failed = null;
+                try {
+                    Set<Long> expected =
+                        select(connection, parseField(ptype, table, column, test_case, null, expected_filter), null);
+                    for( int d = 0; d < dialects.length && failed == null; d++ ) {
+                        setDialect(dialects[d]);
+                        for( int e = 0; e < engines.length && failed == null; e++ ) {
+                            setEngine(engines[e]);
+                            if( !expected.equals(select(connection, parseField(ptype, table, column, test_case,
+                                                                               null, post_filter), null)) )
+                                failed = "engine "+engines[e]+", dialect "+dialects[d];
+                            PreparedSQL prepared = prepareField(ptype, table, column, test_case, null, post_filter);
+                            if( failed == null && !expected.equals(select(connection, prepared.getSQL(), prepared)) )
+                                failed = "engine "+engines[e]+", dialect "+dialects[d]+", bind parameters";
+                        }
+                    }
+                    // H2 matches regular expressions by java.util.regex, which has no POSIX classes
+                    if( failed == null && test_case.indexOf("[:") < 0 ) {
+                        String single = ptype == NUMERIC ? "RecordNS" : "RecordS";
+                        if( !select(connection, parseField(ptype, single, column, test_case, null, post_filter), null).
+                            equals(match(connection, ptype, column, test_case, post_filter)) )
+                            failed = "FieldPredicate";
+                    }
+                    // negations on single valued columns are written as conditions, which must
+                    // select the same ids, also when some of the values are NULL
+                    for( int d = 0; d < dialects.length && failed == null; d++ ) {
+                        String[] tables = ptype == NUMERIC ?
+                            new String[] { "RecordNS", "RecordNSV" } : new String[] { "RecordS", "RecordSV" };
+                        for( int t = 0; t < tables.length && failed == null; t++ ) {
+                            SQLizerEngine sqlizer = new SQLizerEngine.Builder().type(ptype).
+                                table(tables[t]).column(column).postFilter(post_filter).
+                                engine(OPTIMIZING_ENGINE).dialect(dialects[d]).
+                                singleValued(true).notNull(t == 0).build();
+                            if( !select(connection, parseField(ptype, tables[t], column, test_case, null, post_filter), null).
+                                equals(select(connection, sqlizer.parse(test_case), null)) )
+                                failed = "single valued "+tables[t]+", dialect "+dialects[d];
+                        }
+                    }
+                    // canonical form of the input must select the same ids
+                    int[] normalized = { FAST_ENGINE, OPTIMIZING_ENGINE };
+                    for( int d = 0; d < dialects.length && failed == null; d++ ) {
+                        for( int e = 0; e < normalized.length && failed == null; e++ ) {
+                            SQLizerEngine sqlizer = new SQLizerEngine.Builder().type(ptype).
+                                table(table).column(column).postFilter(post_filter).
+                                engine(normalized[e]).dialect(dialects[d]).normalize(true).build();
+                            PreparedSQL prepared = sqlizer.prepare(test_case);
+                            if( !expected.equals(select(connection, sqlizer.parse(test_case), null)) ||
+                                !expected.equals(select(connection, prepared.getSQL(), prepared)) )
+                                failed = "normalized, engine "+normalized[e]+", dialect "+dialects[d];
+                        }
+                    }
+                    // conditions selected by separate queries and combined in memory
+                    for( int d = 0; d < dialects.length && failed == null; d++ ) {
+                        for( int e = 0; e < normalized.length && failed == null; e++ ) {
+                            SQLizerEngine sqlizer = new SQLizerEngine.Builder().type(ptype).
+                                table(table).column(column).postFilter(post_filter).
+                                engine(normalized[e]).dialect(dialects[d]).build();
+                            Set<Long> ids = new TreeSet<Long>();
+                            for( long id : new SQLizerExecutor(sqlizer, pool).select(source, test_case) )
+                                ids.add(id);
+                            if( !expected.equals(ids) )
+                                failed = "SQLizerExecutor, engine "+normalized[e]+", dialect "+dialects[d];
+                        }
+                    }
+                    if( failed == null )
+                        System.out.println("Ok. "+expected.size()+" ids.");
+                } catch (Exception ex) {
+                    failed = ex.getMessage();
+                } finally {
+                    setDialect(SQLDialect.ORACLE);
+                    setEngine(FAST_ENGINE);
+                }
+                if( failed != null )
+                    System.out.println("Failed.\nTest ["+test_case+"]\n"+failed+"\n");
+            }
+            dbfanout(connection, source, pool, cases);
+        } finally {
+            pool.shutdown();
+            connection.close();
+        }
+    } // end of dbtest(...)
+
+    // Builder of SQLizerEngine matching input against a given column, name_lc and name of
+    // RecordA, see FANOUT test cases.
+    private static SQLizerEngine.Builder fanout(String table, String column) {
+        return new SQLizerEngine.Builder().table(table).columns(column, "name_lc").
+            joinedColumn("RecordA", "name");
+    }
+
+    // Checks FANOUT and FANOPT test cases, which must select the same ids from Record and
+    // RecordA as the single column of RecordF, holding all of their values.
+    private static void dbfanout(java.sql.Connection connection, javax.sql.DataSource source,
+                                 java.util.concurrent.ExecutorService pool, ArrayList<String[]> cases)
+        throws Exception
+    {
+        System.out.println("Multi-column fields.");
+        SQLDialect[] dialects = { SQLDialect.ORACLE, SQLDialect.H2 };
+        int[]        engines  = { FAST_ENGINE, OPTIMIZING_ENGINE };
+        int counter = 1;
+        for( String[] test : cases ) {
+            if( !test[0].startsWith("FAN") || test[2].equals("ERROR") )
+                continue;
+            String test_case = test[1];
+            System.out.print(pad(""+(counter++), 5));
+            String failed = null;
+            try {
+                Set<Long> expected = select(connection, parseStringField("RecordF", "name", test_case, null), null);
+                for( int d = 0; d < dialects.length && failed == null; d++ ) {
+                    for( int e = 0; e < engines.length && failed == null; e++ ) {
+                        SQLizerEngine sqlizer = fanout("Record", "name").engine(engines[e]).
+                            dialect(dialects[d]).build();
+                        PreparedSQL prepared = sqlizer.prepare(test_case);
+                        Set<Long> executed = new TreeSet<Long>();
+                        for( long id : new SQLizerExecutor(sqlizer, pool).select(source, test_case) )
+                            executed.add(id);
+                        if( !expected.equals(select(connection, sqlizer.parse(test_case), null)) ||
+                            !expected.equals(select(connection, prepared.getSQL(), prepared)) ||
+                            !expected.equals(executed) )
+                            failed = "engine "+engines[e]+", dialect "+dialects[d];
+                    }
+                }
+                if( failed == null )
+                    System.out.println("Ok. "+expected.size()+" ids.");
+            } catch (Exception ex) {
+                failed = ex.getMessage();
+            }
+            if( failed != null )
+                System.out.println("Failed.\nTest ["+test_case+"]\n"+failed+"\n");
+        }
+    } // end of dbfanout(...)
+
+    /**
+     * Compiles lines read from the file, or stdin, writing SQL or 'ERROR: ...' for every
+     * line to stdout. Arguments are
+     *
+     *   batch [-numeric|-domain] [-netdb] [-optimize] [-normalize] [-table name]
+     *         [-column name] [-threads n] [-store store_file] [file]
+     *
+     * With -store valid lines are written into SQLizerStore file instead, see
+     * SQLizerStore.write(...), and number of entries is printed. Returns number of
+     * invalid lines.
+     */
+    private static int batch(String[] args) throws Exception {
+        SQLizerEngine.Builder builder = new SQLizerEngine.Builder().table("Record").column("name");
+        int threads = Runtime.getRuntime().availableProcessors();
+        String file = null;
+        String store = null;
+        for( int i = 1; i < args.length; i++ ) {
+            if( args[i].equals("-numeric") )
+                builder.type(NUMERIC);
+            else if( args[i].equals("-domain") )
+                builder.type(DOMAIN_NAME).postFilter(new NetDBPostFilter());
+            else if( args[i].equals("-netdb") )
+                builder.postFilter(new NetDBPostFilter());
+            else if( args[i].equals("-optimize") )
+                builder.engine(OPTIMIZING_ENGINE);
+            else if( args[i].equals("-normalize") )
+                builder.normalize(true);
+            else if( args[i].equals("-table") && i + 1 < args.length )
+                builder.table(args[++i]);
+            else if( args[i].equals("-column") && i + 1 < args.length )
+                builder.column(args[++i]);
+            else if( args[i].equals("-threads") && i + 1 < args.length )
+                threads = Integer.parseInt(args[++i]);
+            else if( args[i].equals("-store") && i + 1 < args.length )
+                store = args[++i];
+            else if( !args[i].startsWith("-") && file == null )
+                file = args[i];
+            else
+                throw new Exception("Usage: batch [-numeric|-domain] [-netdb] [-optimize] [-normalize] "+
+                                    "[-table name] [-column name] [-threads n] [-store store_file] [file]");
+        }
+
+        if( store != null ) {
+            ArrayList<String> lines = new ArrayList<String>();
+            BufferedReader reader = new BufferedReader(file == null ?
+                                                       new InputStreamReader(System.in) :
+                                                       new FileReader(file));
+            try {
+                for( String line; ( line = reader.readLine() ) != null; )
+                    lines.add(line);
+            } finally {
+                reader.close();
+            }
+            int written = SQLizerStore.write(builder.build(), lines, new File(store));
+            System.out.println(written+" entries written to "+store+".");
+            return new HashSet<String>(lines).size() - written;
+        }
+
+        BufferedReader reader = new BufferedReader(file == null ?
+                                                   new InputStreamReader(System.in) :
+                                                   new FileReader(file));
+        Writer writer = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+        java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(threads);
+        try {
+            return new SQLizerBatch(builder.build(), pool).parse(reader, writer);
+        } finally {
+            pool.shutdown();
+            reader.close();
+        }
+    } // end of batch(...)
+
+    // values found in quotes or numbers after '=', '<', 'BETWEEN', ... in expected SQL, with
+    // LIKE wildcards replaced by letters
+    private static final Pattern literal_p =
+        Pattern.compile("'((?:[^']|'')*)'|(?:[=<>]|BETWEEN|AND|IN \\(|,) (-?\\d+(?:\\.\\d+)?)");
+
+    private static void createTestTables(java.sql.Connection connection, ArrayList<String[]> cases)
+        throws Exception
+    {
+        TreeSet<String> strings = new TreeSet<String>();
+        TreeSet<java.math.BigDecimal> numbers = new TreeSet<java.math.BigDecimal>();
+        for( String[] test : cases ) {
+            Matcher m = literal_p.matcher(test[2]);
+            while( m.find() ) {
+                if( m.group(2) != null ) {
+                    numbers.add(new java.math.BigDecimal(m.group(2)));
+                    continue;
+                }
+                StringBuilder value = new StringBuilder();
+                String literal = m.group(1).replace("''", "'");
+                for( int i = 0; i < literal.length(); i++ ) {
+                    char c = literal.charAt(i);
+                    if( c == '\\' && i + 1 < literal.length() )
+                        value.append(literal.charAt(++i));
+                    else if( c == '%' )
+                        value.append("xy");
+                    else if( c == '_' )
+                        value.append('z');
+                    else
+                        value.append(c);
+                }
+                strings.add(value.toString());
+            }
+        }
+
+        java.sql.Statement statement = connection.createStatement();
+        // REVERSE(column) of REVERSED test cases, which H2 has no function for
+        statement.execute("create alias REVERSE as 'String reverse(String s) { return s == null ? "+
+                          "null : new StringBuilder(s).reverse().toString(); }'");
+        statement.execute("create table Record (id int, name varchar(256), name_lc varchar(256))");
+        statement.execute("create table RecordN (id int, name decimal(30,6), name_lc decimal(30,6))");
+        // the same values with single row per id, matched by FieldPredicate
+        statement.execute("create table RecordS (id int, name varchar(256), name_lc varchar(256))");
+        statement.execute("create table RecordNS (id int, name decimal(30,6), name_lc decimal(30,6))");
+        // the same with one more id, whose value is NULL
+        statement.execute("create table RecordSV (id int, name varchar(256), name_lc varchar(256))");
+        statement.execute("create table RecordNSV (id int, name decimal(30,6), name_lc decimal(30,6))");
+        statement.close();
+
+        // every id gets one to three values, so some of the attributes are multi valued
+        Random random = new Random(1);
+        java.sql.PreparedStatement insert =
+            connection.prepareStatement("insert into Record values (?, ?, ?)");
+        int id = 1;
+        for( String value : strings ) {
+            insert.setInt(1, id);
+            insert.setString(2, value);
+            insert.setString(3, value.toLowerCase());
+            insert.executeUpdate();
+            if( random.nextInt(3) == 0 )
+                id++;
+        }
+        insert.close();
+
+        insert = connection.prepareStatement("insert into RecordN values (?, ?, ?)");
+        id = 1;
+        for( java.math.BigDecimal value : numbers ) {
+            insert.setInt(1, id);
+            insert.setBigDecimal(2, value);
+            insert.setBigDecimal(3, value);
+            insert.executeUpdate();
+            if( random.nextInt(2) == 0 )
+                id++;
+        }
+        insert.close();
+
+        statement = connection.createStatement();
+        statement.execute("insert into RecordS select rownum(), name, name_lc from Record");
+        statement.execute("insert into RecordNS select rownum(), name, name_lc from RecordN");
+        statement.execute("insert into RecordSV select * from RecordS");
+        statement.execute("insert into RecordSV values (0, null, null)");
+        statement.execute("insert into RecordNSV select * from RecordNS");
+        statement.execute("insert into RecordNSV values (0, null, null)");
+        // aliases of every other id, RecordF holds values of all columns of FANOUT cases
+        statement.execute("create table RecordA (id int, name varchar(256))");
+        statement.execute("insert into RecordA select (select max(id) from Record) + 1 - id, name "+
+                          "from Record where mod(id, 2) = 0");
+        statement.execute("create table RecordF as select id, name from Record union all "+
+                          "select id, name_lc from Record union all select id, name from RecordA");
+        statement.close();
+    } // end of createTestTables(...)
+
+    // Returns ids of the rows of single valued table, whose values match FieldPredicate
+    // compiled the same way as SQL for a given column and post filter.
+    private static Set<Long> match(java.sql.Connection connection, int type, String column,
+                                   String str, Object post_filter)
+        throws Exception
+    {
+        // with lower case column values are matched as values of the original one
+        boolean lower_case = post_filter instanceof NetDBPostFilter &&
+            NetDBPostFilter.columnFilter(column) != ColumnFilter.IDENTITY;
+        FieldPredicate         predicate = null;
+        FieldPredicate.Numeric numeric   = null;
+        if( type == NUMERIC )
+            numeric = FieldPredicate.compileNumeric(str);
+        else
+            predicate = FieldPredicate.compile(type, str, lower_case);
+
+        Set<Long> ids = new TreeSet<Long>();
+        java.sql.Statement statement = connection.createStatement();
+        try {
+            java.sql.ResultSet rs =
+                statement.executeQuery("select id, "+(lower_case ? "name" : column)+" from "+
+                                       (type == NUMERIC ? "RecordNS" : "RecordS"));
+            while( rs.next() ) {
+                boolean matches;
+                if( type == NUMERIC ) {
+                    // integers are matched as long values, the rest as decimals
+                    java.math.BigDecimal number = rs.getBigDecimal(2);
+                    matches = number.stripTrailingZeros().scale() <= 0 ?
+                        numeric.test(number.longValueExact()) : numeric.test(number);
+                } else
+                    matches = predicate.test(rs.getString(2));
+                if( matches )
+                    ids.add(rs.getLong(1));
+            }
+        } finally {
+            statement.close();
+        }
+        return ids;
+    } // end of match(...)
+
+    // Returns ids selected by given SQL.
+    private static Set<Long> select(java.sql.Connection connection, String sql, PreparedSQL prepared)
+        throws Exception
+    {
+        Set<Long> ids = new TreeSet<Long>();
+        java.sql.PreparedStatement statement =
+            connection.prepareStatement("select * from "+sql+" ids");
+        try {
+            if( prepared != null )
+                prepared.bind(statement, 1);
+            java.sql.ResultSet rs = statement.executeQuery();
+            while( rs.next() )
+                ids.add(rs.getLong(1));
+        } finally {
+            statement.close();
+        }
+        return ids;
+    } // end of select(...)
+
     private static String pad(String str, int min_length) {
         if( str.length() >= min_length )
             return str;
@@ -475,6 +1615,157 @@ NUMERIC ;1 or nothing;
 STRING ;/^a\/c/i;                                                               -> ;( select id from Record where REGEXP_LIKE(name, '^a/c', 'i') );
 STRING ;/^a\/c/;                                                                -> ;( select id from Record where REGEXP_LIKE(name, '^a/c', '') );
 STRING ;/^.*[[:digit:]]$/i;                                                     -> ;( select id from Record where REGEXP_LIKE(name, '^.*[[:digit:]]$', 'i') );
+STRING ;a or b or c or d;                                                       -> ;(  (  (  ( select id from Record where name = 'a' )  UNION  ( select id from Record where name = 'b' )  )  UNION  ( select id from Record where name = 'c' )  )  UNION  ( select id from Record where name = 'd' )  );
+STRING ;(a or b;                                                                -> ;ERROR;
+STRING ;a) b;                                                                   -> ;( select id from Record where name = 'a' );
+STRING ;R&D;                                                                    -> ;( select id from Record where name = 'R&D' );
+STRING ;a\/b;                                                                   -> ;( select id from Record where name = 'a/b' );
+STRING ;/a\\/;                                                                  -> ;( select id from Record where REGEXP_LIKE(name, 'a\\', '') );
+STRING ;a&dbl or &v;                                                            -> ;(  ( select id from Record where name = 'a&dbl' )  UNION  ( select id from Record where name = '&v' )  );
+STRING ;"\/x\\" and \\\/;                                                       -> ;(  ( select id from Record where name = '/x\' )  INTERSECT  ( select id from Record where name = '\/' )  );
+STRING ;/a\/\\\/b/i;                                                            -> ;( select id from Record where REGEXP_LIKE(name, 'a/\\/b', 'i') );
+OPTIMIZED ;a or b or c or d;                                                    -> ;( select id from Record where name IN ('a', 'b', 'c', 'd') );
+OPTIMIZED ;not not "The Truth";                                                 -> ;( select id from Record where name = 'The Truth' );
+OPTIMIZED ;not a and not b;                                                     -> ;( select id from Record MINUS  ( select id from Record where name IN ('a', 'b') )  );
+OPTIMIZED ;a and not c;                                                         -> ;(  ( select id from Record where name = 'a' )  MINUS  ( select id from Record where name = 'c' )  );
+OPTIMIZED ;b* or x or /^y/i or z;                                               -> ;( select id from Record where name LIKE 'b%' ESCAPE '\' OR name IN ('x', 'z') OR REGEXP_LIKE(name, '^y', 'i') );
+OPTIMIZED ;not a or not b;                                                      -> ;( select id from Record MINUS  (  ( select id from Record where name = 'a' )  INTERSECT  ( select id from Record where name = 'b' )  )  );
+BIND ;a or D'Bob*;                                                              -> ;(  ( select id from Record where name = ? )  UNION  ( select id from Record where name LIKE ? ESCAPE '\' )  )  ['a', 'D'Bob%'];
+BIND ;"it's" and not /o'k\//i;                                                  -> ;(  ( select id from Record where name = ? )  INTERSECT  ( select id from Record MINUS  ( select id from Record where REGEXP_LIKE(name, ?, 'i') )  )  )  ['it's', 'o'k/'];
+BIND ;(x and y;                                                                 -> ;ERROR;
+NUMERIC ;100..200;                                                              -> ;( select id from Record where name BETWEEN 100 AND 200 );
+NUMERIC ;>= 5;                                                                  -> ;( select id from Record where name >= 5 );
+NUMERIC ;<10 or >100;                                                           -> ;(  ( select id from Record where name < 10 )  UNION  ( select id from Record where name > 100 )  );
+NUMERIC ;<=-3 and not >-10;                                                     -> ;(  ( select id from Record where name <= -3 )  INTERSECT  ( select id from Record MINUS  ( select id from Record where name > -10 )  )  );
+NUMERIC ;1,2,3;                                                                 -> ;( select id from Record where name IN (1, 2, 3) );
+NUMERIC ;not 1,2;                                                               -> ;( select id from Record MINUS  ( select id from Record where name IN (1, 2) )  );
+NUMERIC ;9223372036854775807 or -9223372036854775808;                           -> ;(  ( select id from Record where name = 9223372036854775807 )  UNION  ( select id from Record where name = -9223372036854775808 )  );
+NUMERIC ;1.5..2.25 or 0.50;                                                     -> ;(  ( select id from Record where name BETWEEN 1.5 AND 2.25 )  UNION  ( select id from Record where name = 0.50 )  );
+NUMERIC ;+007 or -0;                                                            -> ;(  ( select id from Record where name = 7 )  UNION  ( select id from Record where name = 0 )  );
+NUMERIC ;9223372036854775808;                                                   -> ;ERROR;
+NUMERIC ;1..;                                                                   -> ;ERROR;
+NUMERIC ;>=;                                                                    -> ;ERROR;
+NUMERIC ;1,,2;                                                                  -> ;ERROR;
+NUMERIC ;>= 1,2;                                                                -> ;ERROR;
+NUMERIC ;1.;                                                                    -> ;ERROR;
+NUMERIC ;> (5);                                                                 -> ;ERROR;
+NBIND ;1..5 or >= 3000000000;                                                   -> ;(  ( select id from Record where name BETWEEN ? AND ? )  UNION  ( select id from Record where name >= ? )  )  [1, 5, 3000000000];
+NBIND ;1.5,3000000000,7;                                                        -> ;( select id from Record where name IN (?, ?, ?) )  [1.5, 3000000000, 7];
+NOPT ;1,2 or 3 or 5..9;                                                         -> ;( select id from Record where name IN (1, 2, 3) OR name BETWEEN 5 AND 9 );
+NOPT ;>= 10 and not 12,15;                                                      -> ;(  ( select id from Record where name >= 10 )  MINUS  ( select id from Record where name IN (12, 15) )  );
+NBIND ;1 or not 42;                                                             -> ;(  ( select id from Record where name = ? )  UNION  ( select id from Record MINUS  ( select id from Record where name = ? )  )  )  [1, 42];
+PGSQL ;a and not /^b/i;                                                         -> ;(  ( select id from Record where name = 'a' )  INTERSECT  ( select id from Record EXCEPT  ( select id from Record where name ~* '^b' )  )  );
+PGSQL ;not /x/;                                                                 -> ;( select id from Record EXCEPT  ( select id from Record where name ~ 'x' )  );
+PGOPT ;a* and not /^b/i;                                                        -> ;( select distinct id from Record t where name LIKE 'a%' ESCAPE '\' AND NOT EXISTS ( select 1 from Record where id = t.id AND ( name ~* '^b' ) ) );
+PGOPT ;not (a or b);                                                            -> ;( select distinct id from Record t where NOT EXISTS ( select 1 from Record where id = t.id AND ( name IN ('a', 'b') ) ) );
+PGOPT ;(a and b) and not c;                                                     -> ;( select distinct id from Record t where name = 'a' AND EXISTS ( select 1 from Record where id = t.id AND ( name = 'b' ) ) AND NOT EXISTS ( select 1 from Record where id = t.id AND ( name = 'c' ) ) );
+OPTIMIZED ;/^abc$/;                                                             -> ;( select id from Record where name = 'abc' );
+OPTIMIZED ;/^abc/;                                                              -> ;( select id from Record where name LIKE 'abc%' ESCAPE '\' );
+OPTIMIZED ;/^ab.c.*x/;                                                          -> ;( select id from Record where name LIKE 'ab%' ESCAPE '\' AND REGEXP_LIKE(name, '^ab.c.*x', '') );
+OPTIMIZED ;/abc/;                                                               -> ;( select id from Record where name LIKE '%abc%' ESCAPE '\' );
+OPTIMIZED ;/a_c%$/;                                                             -> ;( select id from Record where name LIKE '%a\_c\%' ESCAPE '\' );
+OPTIMIZED ;/^ab[0-9]+$/;                                                        -> ;( select id from Record where name LIKE 'ab%' ESCAPE '\' AND REGEXP_LIKE(name, '^ab[0-9]+$', '') );
+OPTIMIZED ;/^abc?d/;                                                            -> ;( select id from Record where name LIKE 'ab%' ESCAPE '\' AND REGEXP_LIKE(name, '^abc?d', '') );
+OPTIMIZED ;/^a\.b\\c/;                                                          -> ;( select id from Record where name LIKE 'a.b\\c%' ESCAPE '\' );
+OPTIMIZED ;/^O'Neil$/;                                                          -> ;( select id from Record where name = 'O''Neil' );
+OPTIMIZED ;/^ab|cd/;                                                            -> ;( select id from Record where REGEXP_LIKE(name, '^ab|cd', '') );
+OPTIMIZED ;/^abc$/i;                                                            -> ;( select id from Record where REGEXP_LIKE(name, '^abc$', 'i') );
+OPTIMIZED ;/^12-/i;                                                             -> ;( select id from Record where name LIKE '12-%' ESCAPE '\' );
+OPTIMIZED ;/^x[0-9]/ or y;                                                      -> ;( select id from Record where name LIKE 'x%' ESCAPE '\' AND REGEXP_LIKE(name, '^x[0-9]', '') OR name = 'y' );
+MATCH ;a*c and not abc;                                                         -> ;a ac abc abbc Ac => ac abbc;
+MATCH ;?b* or "x y";                                                            -> ;ab b xb xbz xy => ab xb xbz;
+MATCH ;a\*b or 50\%;                                                            -> ;a*b ab 50% 500 => a*b 50%;
+MATCH ;%a_;                                                                     -> ;xab ab xa%_ => xab ab;
+MATCH ;/^a[[:digit:]]+$/ or /B/i;                                               -> ;a1 a12 a1x ab xb => a1 a12 ab xb;
+MATCH ;o'le or not /e/;                                                         -> ;o'le ole x => o'le x;
+MATCH ;(a or b;                                                                 -> ;ERROR;
+NMATCH ;1 or 2 and not 3;                                                       -> ;1 2 3 4 => 1 2;
+NMATCH ;not (10 or 20);                                                         -> ;10 20 30 => 30;
+NMATCH ;10..20 and not 15;                                                      -> ;9 10 15 20 21 => 10 20;
+NMATCH ;<2.5 or >=4;                                                            -> ;1 2.5 3 4 4.5 => 1 4 4.5;
+NMATCH ;-1,0,1;                                                                 -> ;-2 -1 0 0.5 1 => -1 0 1;
+VALIDATE ;abc and (d or e);                                                     -> ;valid;
+VALIDATE ;a b c;                                                                -> ;syntax at 2 b;
+VALIDATE ;not and c;                                                            -> ;syntax at 4 and;
+VALIDATE ;"abc and d;                                                           -> ;lexical at 10 end;
+VALIDATE ;a and (b or c;                                                        -> ;syntax at 13 end;
+VALIDATE ;a and;                                                                -> ;syntax at 5 end;
+VALIDATE ;ab\x or d;                                                            -> ;lexical at 3 x;
+VALIDATE ;/abc;                                                                 -> ;lexical at 4 end;
+VALIDATE ;ab\;                                                                  -> ;lexical at 3 end;
+VALIDATE ;abc);                                                                 -> ;valid;
+VALIDATE ;a and ();                                                             -> ;syntax at 7 );
+NVALIDATE ;>= 5;                                                                -> ;valid;
+NVALIDATE ;1..x;                                                                -> ;number at 0 1..x;
+NVALIDATE ;1 or < or 2;                                                         -> ;number at 5 < or;
+NVALIDATE ;12 or 13;                                                            -> ;valid;
+NVALIDATE ;12 or ab;                                                            -> ;number at 6 ab;
+NVALIDATE ;99999999999999999999;                                                -> ;number at 0 99999999999999999999;
+NVALIDATE ;"12";                                                                -> ;number at 0 "12";
+NVALIDATE ;-2147483648;                                                         -> ;valid;
+STRING ;a or b or c or d or e or f or g or h or i or j or k or l or m or n or o or p or q or r and x and y or z; -> ;(  (  (  (  (  (  (  (  (  (  (  (  (  (  (  (  (  (  ( select id from Record where name = 'a' )  UNION  ( select id from Record where name = 'b' )  )  UNION  ( select id from Record where name = 'c' )  )  UNION  ( select id from Record where name = 'd' )  )  UNION  ( select id from Record where name = 'e' )  )  UNION  ( select id from Record where name = 'f' )  )  UNION  ( select id from Record where name = 'g' )  )  UNION  ( select id from Record where name = 'h' )  )  UNION  ( select id from Record where name = 'i' )  )  UNION  ( select id from Record where name = 'j' )  )  UNION  ( select id from Record where name = 'k' )  )  UNION  ( select id from Record where name = 'l' )  )  UNION  ( select id from Record where name = 'm' )  )  UNION  ( select id from Record where name = 'n' )  )  UNION  ( select id from Record where name = 'o' )  )  UNION  ( select id from Record where name = 'p' )  )  UNION  ( select id from Record where name = 'q' )  UNION  ( select id from Record where name = 'r' )  )  INTERSECT  ( select id from Record where name = 'x' )  INTERSECT  ( select id from Record where name = 'y' )  )  UNION  ( select id from Record where name = 'z' )  );
+SINGLE ;not a;                                                                  -> ;( select id from Record where ( name IS NULL OR name <> 'a' ) );
+SINGLE ;not a and not b*;                                                       -> ;( select id from Record where ( name IS NULL OR name <> 'a' ) AND ( name IS NULL OR name NOT LIKE 'b%' ESCAPE '\' ) );
+SINGLE ;not (a or b or c);                                                      -> ;( select id from Record where ( name IS NULL OR NOT ( name IN ('a', 'b', 'c') ) ) );
+SINGLE ;a* and not abc;                                                         -> ;( select id from Record where name LIKE 'a%' ESCAPE '\' AND ( name IS NULL OR name <> 'abc' ) );
+SINGLE ;not /^ab/i;                                                             -> ;( select id from Record where ( name IS NULL OR NOT ( REGEXP_LIKE(name, '^ab', 'i') ) ) );
+SINGLE ;not (a and not b);                                                      -> ;( select id from Record MINUS  ( select id from Record where name = 'a' AND ( name IS NULL OR name <> 'b' ) )  );
+SNOTNULL ;not (a and not b);                                                    -> ;( select id from Record where NOT ( name = 'a' AND name <> 'b' ) );
+SNOTNULL ;not a and not /x/;                                                    -> ;( select id from Record where name <> 'a' AND name NOT LIKE '%x%' ESCAPE '\' );
+SNOTNULL ;not (a* or b) or c;                                                   -> ;( select id from Record where ( NOT ( name LIKE 'a%' ESCAPE '\' OR name = 'b' ) ) OR name = 'c' );
+NORMAL ;a or b;                                                                 -> ;(  ( select id from Record where name = 'a' )  UNION  ( select id from Record where name = 'b' )  );
+NORMAL ;b OR (a);                                                               -> ;(  ( select id from Record where name = 'a' )  UNION  ( select id from Record where name = 'b' )  );
+NORMAL ;a or a;                                                                 -> ;( select id from Record where name = 'a' );
+NORMAL ;not not b or a;                                                         -> ;(  ( select id from Record where name = 'a' )  UNION  ( select id from Record where name = 'b' )  );
+NORMAL ;a** or a*;                                                              -> ;( select id from Record where name LIKE 'a%' ESCAPE '\' );
+NORMAL ;a\%%** or a\%%*;                                                        -> ;( select id from Record where name LIKE 'a\%%' ESCAPE '\' );
+NORMAL ;c or (a or b);                                                          -> ;(  ( select id from Record where name = 'a' )  UNION  ( select id from Record where name = 'b' )  UNION  ( select id from Record where name = 'c' )  );
+NORMAL ;(c and b) or (b and c) or a;                                            -> ;(  (  ( select id from Record where name = 'b' )  INTERSECT  ( select id from Record where name = 'c' )  )  UNION  ( select id from Record where name = 'a' )  );
+NORMAL ;not (b or a) and not (a or b);                                          -> ;( select id from Record MINUS  (  ( select id from Record where name = 'a' )  UNION  ( select id from Record where name = 'b' )  )  );
+NORMAL ;b and a and b;                                                          -> ;(  ( select id from Record where name = 'a' )  INTERSECT  ( select id from Record where name = 'b' )  );
+NORMAL ;a or;                                                                   -> ;ERROR;
+KEY ;b or a;                                                                    -> ;( name = 'a' OR name = 'b' );
+KEY ;a and (c or b) and not not d;                                              -> ;( ( name = 'b' OR name = 'c' ) AND name = 'a' AND name = 'd' );
+KEY ;"a**" or a*;                                                               -> ;name LIKE 'a%' ESCAPE '\';
+KEY ;/x/i and b;                                                                -> ;( REGEXP_LIKE(name, 'x', 'i') AND name = 'b' );
+KEY ;not (b or a);                                                              -> ;NOT ( name = 'a' OR name = 'b' );
+KEY ;(a;                                                                        -> ;ERROR;
+STRING ;/(a+)+$/;                                                               -> ;( select id from Record where REGEXP_LIKE(name, 'a+$', '') );
+STRING ;/^((a*))*b.*.*c/i;                                                       -> ;( select id from Record where REGEXP_LIKE(name, '^a*b.*c', 'i') );
+STRING ;/a+a+ or (b|c)*d/;                                                      -> ;( select id from Record where REGEXP_LIKE(name, 'aa+ or (b|c)*d', '') );
+STRING ;/^[0-9]+-[0-9]+$/ or /([a-z]+\.)+[a-z]+/;                               -> ;(  ( select id from Record where REGEXP_LIKE(name, '^[0-9]+-[0-9]+$', '') )  UNION  ( select id from Record where REGEXP_LIKE(name, '([a-z]+\.)+[a-z]+', '') )  );
+STRING ;/(a)\1+/;                                                               -> ;( select id from Record where REGEXP_LIKE(name, '(a)\1+', '') );
+STRING ;/(a|aa)+$/;                                                             -> ;ERROR;
+STRING ;/(\w+\s?)+$/;                                                           -> ;ERROR;
+STRING ;/.*a.*b.*c.*d/;                                                         -> ;( select id from Record where REGEXP_LIKE(name, '.*a.*b.*c.*d', '') );
+STRING ;/a{2}{3}/;                                                              -> ;( select id from Record where REGEXP_LIKE(name, 'a{2}{3}', '') );
+STRING ;/x**y/;                                                                  -> ;ERROR;
+STRING ;/[[:foo:]]/;                                                            -> ;ERROR;
+BIND ;/(o'k+)+/;                                                                -> ;( select id from Record where REGEXP_LIKE(name, ?, '') )  ['(o'k+)+'];
+OPTIMIZED ;/^(ab+)+$/ or /^(c*)+d/;                                             -> ;( select id from Record where REGEXP_LIKE(name, '^(ab+)+$', '') OR REGEXP_LIKE(name, '^c*d', '') );
+MATCH ;/^(a+)+$/;                                                               -> ;a aa ab b => a aa;
+VALIDATE ;/(a|aa)+$/;                                                           -> ;limit at 0 /(a|aa)+$/;
+VALIDATE ;/(.*a){12}/;                                                          -> ;valid;
+VALIDATE ;/(.*a)+/;                                                             -> ;limit at 0 /(.*a)+/;
+VALIDATE ;/a{2}{3}/;                                                            -> ;valid;
+VALIDATE ;/a+{2}/;                                                              -> ;valid;
+VALIDATE ;/a{2}+/;                                                              -> ;syntax at 5 +;
+VALIDATE ;x or /a)/;                                                            -> ;syntax at 7 );
+VALIDATE ;/(ab/;                                                                -> ;syntax at 1 (;
+VALIDATE ;/[b-a]/;                                                              -> ;syntax at 2 b;
+VALIDATE ;/(a)\2/;                                                              -> ;syntax at 4 \;
+VALIDATE ;/^$*a/;                                                                -> ;syntax at 3 *;
+VALIDATE ;/(a+){2}/;                                                            -> ;valid;
+FANOUT ;a;                                                                      -> ;( select id from Record where name = 'a' OR name_lc = 'a' OR id IN ( select id from RecordA where name = 'a' ) );
+FANOUT ;Ab* and not b;                                                          -> ;(  ( select id from Record where name LIKE 'Ab%' ESCAPE '\' OR name_lc LIKE 'Ab%' ESCAPE '\' OR id IN ( select id from RecordA where name LIKE 'Ab%' ESCAPE '\' ) )  INTERSECT  ( select id from Record MINUS  ( select id from Record where name = 'b' OR name_lc = 'b' OR id IN ( select id from RecordA where name = 'b' ) )  )  );
+FANOUT ;a or b or /^c/;                                                         -> ;(  (  ( select id from Record where name = 'a' OR name_lc = 'a' OR id IN ( select id from RecordA where name = 'a' ) )  UNION  ( select id from Record where name = 'b' OR name_lc = 'b' OR id IN ( select id from RecordA where name = 'b' ) )  )  UNION  ( select id from Record where REGEXP_LIKE(name, '^c', '') OR REGEXP_LIKE(name_lc, '^c', '') OR id IN ( select id from RecordA where REGEXP_LIKE(name, '^c', '') ) )  );
+FANOUT ;(a or "b c") and not /x$/i;                                             -> ;(  (  ( select id from Record where name = 'a' OR name_lc = 'a' OR id IN ( select id from RecordA where name = 'a' ) )  UNION  ( select id from Record where name = 'b c' OR name_lc = 'b c' OR id IN ( select id from RecordA where name = 'b c' ) )  )  INTERSECT  ( select id from Record MINUS  ( select id from Record where REGEXP_LIKE(name, 'x$', 'i') OR REGEXP_LIKE(name_lc, 'x$', 'i') OR id IN ( select id from RecordA where REGEXP_LIKE(name, 'x$', 'i') ) )  )  );
+FANOUT ;o'k?;                                                                   -> ;( select id from Record where name LIKE 'o''k_' ESCAPE '\' OR name_lc LIKE 'o''k_' ESCAPE '\' OR id IN ( select id from RecordA where name LIKE 'o''k_' ESCAPE '\' ) );
+FANOUT ;(a;                                                                     -> ;ERROR;
+FANOPT ;a or b or c*;                                                           -> ;( select id from Record where name IN ('a', 'b') OR name_lc IN ('a', 'b') OR id IN ( select id from RecordA where name IN ('a', 'b') ) OR name LIKE 'c%' ESCAPE '\' OR name_lc LIKE 'c%' ESCAPE '\' OR id IN ( select id from RecordA where name LIKE 'c%' ESCAPE '\' ) );
+FANOPT ;a* and not b;                                                           -> ;(  ( select id from Record where name LIKE 'a%' ESCAPE '\' OR name_lc LIKE 'a%' ESCAPE '\' OR id IN ( select id from RecordA where name LIKE 'a%' ESCAPE '\' ) )  MINUS  ( select id from Record where name = 'b' OR name_lc = 'b' OR id IN ( select id from RecordA where name = 'b' ) )  );
+FANOPT ;not a and not b;                                                        -> ;( select id from Record MINUS  ( select id from Record where name IN ('a', 'b') OR name_lc IN ('a', 'b') OR id IN ( select id from RecordA where name IN ('a', 'b') ) )  );
+FANOPT ;/^ab/ or a;                                                             -> ;( select id from Record where name LIKE 'ab%' ESCAPE '\' OR name_lc LIKE 'ab%' ESCAPE '\' OR id IN ( select id from RecordA where name LIKE 'ab%' ESCAPE '\' ) OR name = 'a' OR name_lc = 'a' OR id IN ( select id from RecordA where name = 'a' ) );
 COLUMN ;lower(name);                                                            -> ;;
 NETDB  ;aBc;                                                                    -> ;( select id from Record where lower(name) = 'abc' );
 NETDB  ;/(A|b)/;                                                                -> ;( select id from Record where REGEXP_LIKE(name, '(A|b)', '') );
@@ -484,5 +1775,22 @@ COLUMN ;name_lc;
 NETDB  ;aBc;                                                                    -> ;( select id from Record where name_lc = 'abc' );
 NETDB  ;/(A|b)/;                                                                -> ;( select id from Record where REGEXP_LIKE(name, '(A|b)', '') );
 NETDB  ;/(a|B)/i;                                                               -> ;( select id from Record where REGEXP_LIKE(name, '(a|B)', 'i') );
+NETOPT ;/^Abc$/i;                                                               -> ;( select id from Record where name_lc = 'abc' );
+NETOPT ;/^AB[0-9]/i;                                                            -> ;( select id from Record where name_lc LIKE 'ab%' ESCAPE '\' AND REGEXP_LIKE(name, '^AB[0-9]', 'i') );
+NETOPT ;/xY$/i;                                                                 -> ;( select id from Record where name_lc LIKE '%xy' ESCAPE '\' );
+NETOPT ;/^Abc$/;                                                                -> ;( select id from Record where name = 'Abc' );
+NETOPT ;/(A|b)/i;                                                               -> ;( select id from Record where REGEXP_LIKE(name, '(A|b)', 'i') );
+COLUMN ;lower(name);                                                            -> ;;
+DOMAIN ;*.Stanford.EDU;                                                         -> ;( select id from Record where lower(name) LIKE '%.stanford.edu.' ESCAPE '\' );
+REVERSED ;*.Stanford.EDU;                                                       -> ;( select id from Record where REVERSE(lower(name)) LIKE '.ude.drofnats.%' ESCAPE '\' );
+REVERSED ;cs.stanford.edu;                                                      -> ;( select id from Record where lower(name) = 'cs.stanford.edu.' );
+REVERSED ;www or *.cs.*;                                                        -> ;(  ( select id from Record where lower(name) LIKE 'www.%' ESCAPE '\' )  UNION  ( select id from Record where lower(name) LIKE '%.cs.%' ESCAPE '\' )  );
+DOMAIN ;?ww.stanford.edu and not *.cs.stanford.edu;                             -> ;(  ( select id from Record where lower(name) LIKE '_ww.stanford.edu.' ESCAPE '\' )  INTERSECT  ( select id from Record MINUS  ( select id from Record where lower(name) LIKE '%.cs.stanford.edu.' ESCAPE '\' )  )  );
+REVERSED ;?ww.stanford.edu and not *.cs.stanford.edu;                           -> ;(  ( select id from Record where REVERSE(lower(name)) LIKE '.ude.drofnats.ww_' ESCAPE '\' )  INTERSECT  ( select id from Record MINUS  ( select id from Record where REVERSE(lower(name)) LIKE '.ude.drofnats.sc.%' ESCAPE '\' )  )  );
+DOMAIN ;*50\%.edu or *o'k.edu;                                                  -> ;(  ( select id from Record where lower(name) LIKE '%50\%.edu.' ESCAPE '\' )  UNION  ( select id from Record where lower(name) LIKE '%o''k.edu.' ESCAPE '\' )  );
+REVERSED ;*50\%.edu or *o'k.edu;                                                -> ;(  ( select id from Record where REVERSE(lower(name)) LIKE '.ude.\%05%' ESCAPE '\' )  UNION  ( select id from Record where REVERSE(lower(name)) LIKE '.ude.k''o%' ESCAPE '\' )  );
+COLUMN ;name;                                                                   -> ;;
+DOMAIN ;*.Stanford.EDU;                                                         -> ;( select id from Record where name LIKE '%.Stanford.EDU.' ESCAPE '\' );
+REVERSED ;*.Stanford.EDU;                                                       -> ;( select id from Record where REVERSE(name) LIKE '.UDE.drofnatS.%' ESCAPE '\' );
 END REGRESSION TEST DATA
 */
@@ -0,0 +1,468 @@
+/************************************************************************
+ *
+ * Field2SQLBench.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+import java.io.*;
+import java.lang.management.*;
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Benchmarks of the SQL generation. Every benchmark compiles its corpus of input strings
+ * over and over, first during warmup and then during several measured iterations of
+ * fixed duration. For every engine and benchmark it reports mean number of input strings
+ * compiled per second, its spread over iterations and number of bytes allocated per input
+ * string, if JVM can count allocated bytes.
+ *
+ *   make bench
+ *   java ... stanford.netdb.utils.Field2SQLBench [-warmup ms] [-time ms] [-iterations n]
+ *                                                [-engine fast|antlr|optimizing|sqlizer]
+ *                                                [benchmark name substring]
+ *
+ * In replay mode inputs are read from the file, e.g. from the log of real searches, and
+ * compiled over and over by a given number of threads, first during warmup and then for
+ * fixed duration. It reports inputs compiled per second, percentiles of compile time
+ * measured around every call within 1/64 of the time, bytes allocated per second and
+ * per input and number of errors of every category, so that production load can be reproduced and engines
+ * compared. Every line of the file is either 'type&lt;TAB&gt;input', where type is one of
+ * numeric, string or domain, or just input of string field.
+ *
+ *   java ... stanford.netdb.utils.Field2SQLBench -replay file [-threads n] [-warmup ms]
+ *                                                [-duration ms] [-engine fast|antlr|optimizing]
+ */
+final class Field2SQLBench {
+
+    private static final String[] EQUALITY = {
+        "smith", "jones", "\"Bob Dilan\"", "D'Bob", "a1b2c3", "jar-jar", "x", "host17"
+    };
+
+    private static final String[] LIKE = {
+        "smi*", "*son", "b?b", "\"Bob *\"", "first_name", "a%b", "*", "jo*n?s"
+    };
+
+    private static final String[] REGEX = {
+        "/^smi/", "/son$/i", "/(a|b)+c/", "/^[[:digit:]]+$/", "/a\\/b/", "/x.*y.*z/i"
+    };
+
+    private static final String[] NUMERIC = {
+        "42", "1 or 2 or 3", "1 and not 2", "10 or 20 or 30 or 40 or 50 or 60 or 70 or 80",
+        "(1 or 2) and (3 or not 4)", "not not 7"
+    };
+
+    private static final String[] MIXED = {
+        "a and b", "a and b or c", "a and (b or c )", "not \"Bob*\"",
+        "Bob or not D'Bob", "\"Give me liberty\" or \"give me death\" or * and \"good ol\\\" cookie\"",
+        "first_name and not last\\_name", "smith or /^jo/i or x*"
+    };
+
+    private static final String[] INVALID = {
+        "not and c", "a b c", "a and and", "(a or b", "a and \"b", "/abc", "a \\", ""
+    };
+
+    private static final String[] DOMAIN = {
+        "stanford", "www.stanford.edu", "*.stanford.edu", "cs or ee or me", "host17.slac",
+        "not *.example.com"
+    };
+
+    private static String[] nested() {
+        String[] nested = new String[4];
+        for( int n = 0; n < nested.length; n++ ) {
+            int depth = 4 << n;
+            StringBuilder str = new StringBuilder();
+            for( int i = 0; i < depth; i++ )
+                str.append(i % 3 == 0 ? "not ( " : "( ").append("v").append(i).append(i % 2 == 0 ? " or " : " and ");
+            str.append("last");
+            for( int i = 0; i < depth; i++ )
+                str.append(" )");
+            nested[n] = str.toString();
+        }
+        return nested;
+    }
+
+    private static String[] quoted() {
+        String[] quoted = new String[3];
+        for( int n = 0; n < quoted.length; n++ ) {
+            StringBuilder str = new StringBuilder("\"");
+            for( int i = 0; i < ( 64 << ( 2 * n ) ); i++ )
+                str.append(i % 11 == 10 ? ' ' : (char)('a' + i % 26));
+            quoted[n] = str.append("\"").toString();
+        }
+        return quoted;
+    }
+
+    // single benchmark: corpus of input strings compiled for a given field
+    private static final class Benchmark {
+        final String   name;
+        final int      type;
+        final String   column;
+        final Object   post_filter;
+        final String[] corpus;
+
+        Benchmark(String name, int type, String column, Object post_filter, String[] corpus) {
+            this.name        = name;
+            this.type        = type;
+            this.column      = column;
+            this.post_filter = post_filter;
+            this.corpus      = corpus;
+        }
+    }
+
+    private static List<Benchmark> benchmarks() {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        FieldPostFilter plain = new FieldPostFilter();
+        NetDBPostFilter netdb = new NetDBPostFilter();
+        benchmarks.add(new Benchmark("equality",       Field2SQL.STRING,      "name",     plain, EQUALITY));
+        benchmarks.add(new Benchmark("like",           Field2SQL.STRING,      "name",     plain, LIKE));
+        benchmarks.add(new Benchmark("regex",          Field2SQL.STRING,      "name",     plain, REGEX));
+        benchmarks.add(new Benchmark("numeric",        Field2SQL.NUMERIC,     "id",       plain, NUMERIC));
+        benchmarks.add(new Benchmark("mixed",          Field2SQL.STRING,      "name",     plain, MIXED));
+        benchmarks.add(new Benchmark("nested",         Field2SQL.STRING,      "name",     plain, nested()));
+        benchmarks.add(new Benchmark("quoted",         Field2SQL.STRING,      "name",     plain, quoted()));
+        benchmarks.add(new Benchmark("invalid",        Field2SQL.STRING,      "name",     plain, INVALID));
+        benchmarks.add(new Benchmark("mixed-netdb",    Field2SQL.STRING,      "name_lc",  netdb, MIXED));
+        benchmarks.add(new Benchmark("domain-netdb",   Field2SQL.DOMAIN_NAME, "name",     netdb, DOMAIN));
+        return benchmarks;
+    }
+
+    private static final String[] ENGINE_NAMES = { "fast", "antlr", "optimizing", "sqlizer" };
+
+    public static void main(String[] args) throws Exception {
+        long warmup     = 2000;
+        long time       = 1000;
+        int  iterations = 5;
+        String only_engine = null;
+        String only_name   = null;
+        String replay      = null;
+        long   duration    = 10000;
+        int    threads     = Runtime.getRuntime().availableProcessors();
+        for( int i = 0; i < args.length; i++ ) {
+            if(      args[i].equals("-warmup")     && i + 1 < args.length )
+                warmup      = Long.parseLong(args[++i]);
+            else if( args[i].equals("-time")       && i + 1 < args.length )
+                time        = Long.parseLong(args[++i]);
+            else if( args[i].equals("-iterations") && i + 1 < args.length )
+                iterations  = Integer.parseInt(args[++i]);
+            else if( args[i].equals("-engine")     && i + 1 < args.length )
+                only_engine = args[++i];
+            else if( args[i].equals("-replay")     && i + 1 < args.length )
+                replay      = args[++i];
+            else if( args[i].equals("-duration")   && i + 1 < args.length )
+                duration    = Long.parseLong(args[++i]);
+            else if( args[i].equals("-threads")    && i + 1 < args.length )
+                threads     = Integer.parseInt(args[++i]);
+            else
+                only_name   = args[i];
+        }
+
+        if( replay != null ) {
+            int engine = only_engine == null ? 0 : Arrays.asList(ENGINE_NAMES).indexOf(only_engine);
+            if( engine < 0 || engine == 3 )
+                throw new IllegalArgumentException("Unsupported engine "+only_engine);
+            replay(replay, engine, threads, warmup, duration);
+            return;
+        }
+
+        System.out.println(pad("Benchmark", 14)+pad("Engine", 12)+pad("ops/s", 14)+
+                           pad("+-", 12)+"B/op");
+        for( int e = 0; e < ENGINE_NAMES.length; e++ ) {
+            if( only_engine != null && !only_engine.equals(ENGINE_NAMES[e]) )
+                continue;
+            for( Benchmark benchmark : benchmarks() ) {
+                if( only_name != null && benchmark.name.indexOf(only_name) < 0 )
+                    continue;
+                run(benchmark, e, warmup, time, iterations);
+            }
+        }
+    } // end of main(...)
+
+    private static void run(Benchmark benchmark, int engine, long warmup, long time, int iterations)
+        throws Exception
+    {
+        SQLizerEngine sqlizer = new SQLizerEngine.Builder().type(benchmark.type).table("Record").
+            column(benchmark.column).postFilter(benchmark.post_filter).build();
+        if( engine == 0 )
+            Field2SQL.setEngine(Field2SQL.FAST_ENGINE);
+        else if( engine == 1 )
+            Field2SQL.setEngine(Field2SQL.ANTLR_ENGINE);
+        else if( engine == 2 )
+            Field2SQL.setEngine(Field2SQL.OPTIMIZING_ENGINE);
+
+        try {
+            long deadline = System.currentTimeMillis() + warmup;
+            while( System.currentTimeMillis() < deadline )
+                compile(benchmark, sqlizer, engine, 64);
+
+            double[] rates = new double[iterations];
+            long ops   = 0;
+            long bytes = 0;
+            for( int i = 0; i < iterations; i++ ) {
+                long iteration_ops = 0;
+                long allocated = allocatedBytes();
+                long start = System.nanoTime();
+                long end   = start + time * 1000000L;
+                long now;
+                do {
+                    compile(benchmark, sqlizer, engine, 64);
+                    iteration_ops += 64 * benchmark.corpus.length;
+                } while( ( now = System.nanoTime() ) < end );
+                long iteration_bytes = allocatedBytes() - allocated;
+                rates[i] = iteration_ops * 1e9 / ( now - start );
+                ops   += iteration_ops;
+                bytes += iteration_bytes;
+            }
+
+            double mean = 0;
+            for( int i = 0; i < iterations; i++ )
+                mean += rates[i] / iterations;
+            double deviation = 0;
+            for( int i = 0; i < iterations; i++ )
+                deviation += ( rates[i] - mean ) * ( rates[i] - mean ) / iterations;
+            deviation = Math.sqrt(deviation);
+
+            System.out.println(pad(benchmark.name, 14)+pad(ENGINE_NAMES[engine], 12)+
+                               pad(String.format("%.0f", mean), 14)+
+                               pad(String.format("%.0f", deviation), 12)+
+                               ( allocated_bytes == null ? "n/a" : String.format("%.0f", (double)bytes / ops)));
+        } finally {
+            Field2SQL.setEngine(Field2SQL.FAST_ENGINE);
+        }
+    }
+
+    private static void replay(String file, int engine, int threads, long warmup, long duration)
+        throws Exception
+    {
+        // field type and input of every line of the log
+        ArrayList<String> inputs = new ArrayList<String>();
+        ArrayList<Integer> types = new ArrayList<Integer>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while( ( line = reader.readLine() ) != null ) {
+                int tab = line.indexOf('\t');
+                String type = tab < 0 ? "string" : line.substring(0, tab).trim().toLowerCase();
+                if( type.equals("numeric") )
+                    types.add(Field2SQL.NUMERIC);
+                else if( type.equals("string") )
+                    types.add(Field2SQL.STRING);
+                else if( type.equals("domain") || type.equals("domain_name") )
+                    types.add(Field2SQL.DOMAIN_NAME);
+                else
+                    throw new IllegalArgumentException("Unknown field type '"+type+"' in line "+
+                                                       (inputs.size() + 1)+" of "+file);
+                inputs.add(line.substring(tab + 1));
+            }
+        } finally {
+            reader.close();
+        }
+        if( inputs.isEmpty() )
+            throw new IllegalArgumentException("No inputs in "+file);
+
+        int[] corpus_types = new int[types.size()];
+        for( int i = 0; i < corpus_types.length; i++ )
+            corpus_types[i] = types.get(i);
+        String[] corpus = inputs.toArray(new String[inputs.size()]);
+
+        Field2SQL.setEngine(engine == 1 ? Field2SQL.ANTLR_ENGINE :
+                            ( engine == 2 ? Field2SQL.OPTIMIZING_ENGINE : Field2SQL.FAST_ENGINE ));
+        try {
+            replay(corpus_types, corpus, threads, warmup, new long[LATENCY_BUCKETS],
+                   new long[SQLizerMetrics.CATEGORIES]);
+
+            long[] latency = new long[LATENCY_BUCKETS];
+            long[] errors  = new long[SQLizerMetrics.CATEGORIES];
+            long[] result  = replay(corpus_types, corpus, threads, duration, latency, errors);
+            long ops   = result[0];
+            long bytes = result[1];
+            double seconds = result[2] / 1e9;
+
+            System.out.println("Replay of "+corpus.length+" inputs by "+threads+" threads, "+
+                               ENGINE_NAMES[engine]+" engine, "+duration+" ms.");
+            System.out.println(pad("ops/s", 12)+String.format("%.0f", ops / seconds));
+            System.out.println(pad("latency", 12)+"p50 "+percentile(latency, 0.5)+
+                               " ns, p99 "+percentile(latency, 0.99)+
+                               " ns, p999 "+percentile(latency, 0.999)+" ns");
+            System.out.println(pad("allocated", 12)+
+                               ( allocated_bytes == null ? "n/a" :
+                                 String.format("%.1f MB/s, %.0f B/op", bytes / seconds / 1e6,
+                                               (double)bytes / ops)));
+            long failed = 0;
+            StringBuilder mix = new StringBuilder();
+            for( int c = 0; c < SQLizerMetrics.CATEGORIES; c++ ) {
+                failed += errors[c];
+                if( errors[c] > 0 )
+                    mix.append(", ").append(SQLizerMetrics.categoryName(c)).append(' ').append(errors[c]);
+            }
+            System.out.println(pad("errors", 12)+failed+
+                               String.format(" (%.2f%%)", 100.0 * failed / ops)+mix);
+        } finally {
+            Field2SQL.setEngine(Field2SQL.FAST_ENGINE);
+        }
+    }
+
+    // Compiles the corpus by a given number of threads for a given time, every thread
+    // starting at different input. Adds compile times to the latency histogram and errors
+    // to their categories. Returns number of compiled inputs, bytes allocated and
+    // nanoseconds spent.
+    private static long[] replay(final int[] types, final String[] corpus, int threads,
+                                 long time, final long[] latency, final long[] errors)
+        throws Exception
+    {
+        final AtomicLong    ops   = new AtomicLong();
+        final AtomicLong    bytes = new AtomicLong();
+        final AtomicBoolean stop  = new AtomicBoolean(false);
+        FieldPostFilter plain = new FieldPostFilter();
+        NetDBPostFilter netdb = new NetDBPostFilter();
+        final Object[] post_filters = { plain, plain, netdb }; // by field type
+
+        Thread[] workers = new Thread[threads];
+        for( int t = 0; t < threads; t++ ) {
+            final int first = (int)( (long)corpus.length * t / threads );
+            workers[t] = new Thread("replay-"+t) {
+                public void run() {
+                    // counted by this thread only, added to the totals once it stops
+                    long[] thread_latency = new long[LATENCY_BUCKETS];
+                    long[] thread_errors  = new long[SQLizerMetrics.CATEGORIES];
+                    long allocated = allocatedBytes();
+                    long count = 0;
+                    long sum   = 0;
+                    int  i     = first;
+                    while( !stop.get() ) {
+                        int type = types[i];
+                        long started = System.nanoTime();
+                        try {
+                            sum += Field2SQL.parseField(type, "Record",
+                                                        type == Field2SQL.NUMERIC ? "id" : "name",
+                                                        corpus[i], null, post_filters[type]).length();
+                        } catch (SQLizerException ex) {
+                            thread_errors[ex.getCategory()]++;
+                        } catch (Exception ex) {
+                            thread_errors[SQLizerMetrics.OTHER]++;
+                        }
+                        thread_latency[latencyBucket(System.nanoTime() - started)]++;
+                        count++;
+                        if( ++i == corpus.length )
+                            i = 0;
+                    }
+                    bytes.addAndGet(allocatedBytes() - allocated);
+                    ops.addAndGet(count);
+                    sink.add(sum);
+                    synchronized( latency ) {
+                        for( int b = 0; b < LATENCY_BUCKETS; b++ )
+                            latency[b] += thread_latency[b];
+                        for( int c = 0; c < SQLizerMetrics.CATEGORIES; c++ )
+                            errors[c] += thread_errors[c];
+                    }
+                }
+            };
+        }
+
+        long start = System.nanoTime();
+        for( int t = 0; t < threads; t++ )
+            workers[t].start();
+        Thread.sleep(time);
+        stop.set(true);
+        long end = System.nanoTime();
+        for( int t = 0; t < threads; t++ )
+            workers[t].join();
+        return new long[] { ops.get(), bytes.get(), end - start };
+    }
+
+    // Latency histogram: times below 64 ns are counted exactly, longer ones in 64 buckets
+    // between every two powers of two, i.e. within 1/64 of the time.
+    private static final int LATENCY_BUCKETS = 64 * 58;
+
+    private static int latencyBucket(long ns) {
+        if( ns < 64 )
+            return (int)Math.max(ns, 0);
+        int exponent = 63 - Long.numberOfLeadingZeros(ns); // 6 or more
+        return ( exponent - 5 ) * 64 + (int)( ( ns >>> ( exponent - 6 ) ) & 63 );
+    }
+
+    // Lowest time counted in a given bucket.
+    private static long latencyValue(int bucket) {
+        if( bucket < 64 )
+            return bucket;
+        int exponent = bucket / 64 + 5;
+        return ( 64L + bucket % 64 ) << ( exponent - 6 );
+    }
+
+    // Returns time, which given fraction of calls does not exceed, within 1/64.
+    private static long percentile(long[] latency, double fraction) {
+        long total = 0;
+        for( int b = 0; b < latency.length; b++ )
+            total += latency[b];
+        long rank = (long)Math.ceil(total * fraction);
+        long seen = 0;
+        for( int b = 0; b < latency.length; b++ ) {
+            seen += latency[b];
+            if( seen >= rank && latency[b] > 0 )
+                return latencyValue(b);
+        }
+        return 0;
+    }
+
+    // sink for length of generated SQL, so that JIT can not drop compilation, every thread
+    // adds its own sum once
+    static final LongAdder sink = new LongAdder();
+
+    private static void compile(Benchmark benchmark, SQLizerEngine sqlizer, int engine, int repeat) {
+        String[] corpus = benchmark.corpus;
+        long sum = 0;
+        for( int r = 0; r < repeat; r++ ) {
+            for( int i = 0; i < corpus.length; i++ ) {
+                try {
+                    String sql;
+                    if( engine == 3 )
+                        sql = sqlizer.parse(corpus[i]);
+                    else
+                        sql = Field2SQL.parseField(benchmark.type, "Record", benchmark.column,
+                                                   corpus[i], null, benchmark.post_filter);
+                    sum += sql.length();
+                } catch (Exception ex) {
+                    sum++;
+                }
+            }
+        }
+        sink.add(sum);
+    }
+
+    // ThreadMXBean.getThreadAllocatedBytes(...) is not part of java.lang.management
+    private static Method allocated_bytes = null;
+    private static ThreadMXBean thread_bean = ManagementFactory.getThreadMXBean();
+    static {
+        try {
+            Method method = Class.forName("com.sun.management.ThreadMXBean").
+                getMethod("getThreadAllocatedBytes", long.class);
+            method.invoke(thread_bean, Thread.currentThread().getId());
+            allocated_bytes = method;
+        } catch (Throwable ex) {
+            allocated_bytes = null;
+        }
+    }
+
+    // Returns number of bytes allocated by current thread or 0 if unknown.
+    private static long allocatedBytes() {
+        if( allocated_bytes == null )
+            return 0;
+        try {
+            return ((Long)allocated_bytes.invoke(thread_bean, Thread.currentThread().getId())).longValue();
+        } catch (Exception ex) {
+            return 0;
+        }
+    }
+
+    private static String pad(String str, int min_length) {
+        StringBuilder padded = new StringBuilder(str);
+        while( padded.length() < min_length )
+            padded.append(' ');
+        return padded.toString();
+    }
+}
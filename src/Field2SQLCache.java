@@ -0,0 +1,315 @@
+/************************************************************************
+ *
+ * Field2SQLCache.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+import java.util.*;
+
+/**
+ * Size bounded cache of generated SQL. Methods of this class mirror static methods of
+ * {@link Field2SQL} and return exactly the same results, but each distinct combination
+ * of (type, table, column, input string, field display name, post filter) is parsed only
+ * once for the selected engine, dialect and limits, subsequent calls are served from the
+ * cache. Invalid inputs are cached as well and the same error is thrown again without
+ * invoking the parser. Failures of post filter or expression builder are thrown, but not
+ * cached.<br><br>
+ *
+ * Entries are evicted in least recently used order once the cache is full and, if
+ * time to live is given, when they are older than that. Post filters are compared by
+ * identity, i.e. the same instance of post filter must be used in order to get cache hits.
+ * Results produced by a post filter, which output depends on anything else but its arguments,
+ * should not be cached.<br><br>
+ *
+ * Instances of this class are thread safe and intended to be shared.
+ *
+ *  Field2SQLCache cache = new Field2SQLCache(1000);<br>
+ *  String sql = cache.parseStringField(table, column, input_str, field_display_name);<br>
+ */
+public class Field2SQLCache {
+
+    private int  max_entries;   // maximum number of cached entries
+    private long ttl;           // time to live in milliseconds, 0 means forever
+
+    private long hits      = 0;
+    private long misses    = 0;
+    private long evictions = 0;
+
+    private LinkedHashMap<Key, Result> entries;
+
+    /**
+     * Creates cache holding up to max_entries entries, which are evicted in least recently
+     * used order.
+     *
+     * @param max_entries   maximum number of entries to keep
+     */
+    public Field2SQLCache(int max_entries) {
+        this(max_entries, 0);
+    }
+
+    /**
+     * Creates cache holding up to max_entries entries, which are evicted in least recently
+     * used order or when they are older than ttl milliseconds.
+     *
+     * @param max_entries   maximum number of entries to keep
+     * @param ttl           time to live of each entry in milliseconds, 0 to keep entries until
+     *                      they are evicted by newer ones
+     */
+    public Field2SQLCache(int max_entries, long ttl) {
+        if( max_entries <= 0 )
+            throw new IllegalArgumentException("max_entries must be positive.");
+        if( ttl < 0 )
+            throw new IllegalArgumentException("ttl must not be negative.");
+
+        this.max_entries = max_entries;
+        this.ttl         = ttl;
+        this.entries     = new LinkedHashMap<Key, Result>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Key, Result> eldest) {
+                if( size() > Field2SQLCache.this.max_entries ) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Cached version of {@link Field2SQL#buildField(int, String, String, String, String, FieldPostFilter) Field2SQL.buildField(...)}
+     */
+    public String buildField(int type,   String table, String column,
+                             String str, String field_display_name,
+                             FieldPostFilter expr_builder)
+        throws Exception
+    {
+        Key key = new Key(type, table, column, str, field_display_name, null, expr_builder);
+        Result entry = lookup(key);
+        if( entry == null ) {
+            try {
+                entry = new Result(Field2SQL.buildField(type, table, column, str,
+                                                        field_display_name, expr_builder), null);
+            } catch (SQLizerException ex) {
+                entry = new Result(null, invalid(ex));
+            }
+            store(key, entry);
+        }
+        return entry.result();
+    }
+
+    /**
+     * Cached version of {@link Field2SQL#parseField(int, String, String, String, String, Object) Field2SQL.parseField(...)}
+     */
+    public String parseField(int type,   String table, String column,
+                             String str, String field_display_name,
+                             Object post_filter)
+        throws Exception
+    {
+        Key key = new Key(type, table, column, str, field_display_name, post_filter, null);
+        Result entry = lookup(key);
+        if( entry == null ) {
+            try {
+                entry = new Result(Field2SQL.parseField(type, table, column, str,
+                                                        field_display_name, post_filter), null);
+            } catch (SQLizerException ex) {
+                entry = new Result(null, invalid(ex));
+            }
+            store(key, entry);
+        }
+        return entry.result();
+    }
+
+    /**
+     * Cached version of {@link Field2SQL#parseField(int, String, String, String, String) Field2SQL.parseField(...)}
+     */
+    public String parseField(int type,   String table, String column,
+                             String str, String field_display_name)
+        throws Exception
+    {
+        Key key = new Key(type, table, column, str, field_display_name, null, null);
+        Result entry = lookup(key);
+        if( entry == null ) {
+            try {
+                entry = new Result(Field2SQL.parseField(type, table, column, str,
+                                                        field_display_name), null);
+            } catch (SQLizerException ex) {
+                entry = new Result(null, invalid(ex));
+            }
+            store(key, entry);
+        }
+        return entry.result();
+    }
+
+    /**
+     * Cached version of {@link Field2SQL#parseStringField(String, String, String, String) Field2SQL.parseStringField(...)}
+     */
+    public String parseStringField(String table, String column,
+                                   String str,   String field_display_name)
+        throws Exception
+    {
+        return parseField(Field2SQL.STRING, table, column, str, field_display_name);
+    }
+
+    /**
+     * Cached version of {@link Field2SQL#parseIntField(String, String, String, String) Field2SQL.parseIntField(...)}
+     */
+    public String parseIntField(String table, String column,
+                                String str,   String field_display_name)
+        throws Exception
+    {
+        return parseField(Field2SQL.NUMERIC, table, column, str, field_display_name);
+    }
+
+    /**
+     * Number of calls served from the cache.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Number of calls which required parsing of the input string.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Number of entries evicted to keep size of the cache within its limit.
+     * Expired entries are not counted.
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Current number of cached entries.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes all entries from the cache. Counters are not reset.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    private synchronized Result lookup(Key key) {
+        Result entry = entries.get(key);
+        if( entry != null && ttl > 0 && System.currentTimeMillis() - entry.created > ttl ) {
+            entries.remove(key);
+            entry = null;
+        }
+
+        if( entry == null )
+            misses++;
+        else
+            hits++;
+
+        return entry;
+    }
+
+    // Returns error of invalid input, or throws error thrown by post filter or expression
+    // builder, which does not depend on the input alone and is not cached.
+    private static SQLizerException invalid(SQLizerException ex) throws SQLizerException {
+        if( ex.getCause() != null )
+            throw ex;
+        return ex;
+    }
+
+    private synchronized void store(Key key, Result entry) {
+        entries.put(key, entry);
+    }
+
+    // Cached result of parsing, either sql or error of invalid input. SQLizerException has
+    // no stack trace, so the same one is thrown again.
+    private static class Result {
+        String           sql;
+        SQLizerException error;
+        long             created;
+
+        Result(String sql, SQLizerException error) {
+            this.sql     = sql;
+            this.error   = error;
+            this.created = System.currentTimeMillis();
+        }
+
+        String result() throws Exception {
+            if( sql == null )
+                throw error;
+            return sql;
+        }
+    }
+
+    // Cache key. Filters are compared by identity.
+    private static class Key {
+        int    type;
+        String table;
+        String column;
+        String str;
+        String field_display_name;
+        Object post_filter;
+        Object expr_builder;
+        int    engine;
+        Object dialect;
+        Object limits;
+        int    hash;
+
+        Key(int type,   String table, String column,
+            String str, String field_display_name,
+            Object post_filter, Object expr_builder)
+        {
+            this.type               = type;
+            this.table              = table;
+            this.column             = column;
+            this.str                = str;
+            this.field_display_name = field_display_name;
+            this.post_filter        = post_filter;
+            this.expr_builder       = expr_builder;
+            this.engine             = Field2SQL.getEngine();
+            this.dialect            = Field2SQL.getDialect();
+            this.limits             = Field2SQL.getLimits();
+
+            int h = type;
+            h = 31 * h + hash(table);
+            h = 31 * h + hash(column);
+            h = 31 * h + hash(str);
+            h = 31 * h + hash(field_display_name);
+            h = 31 * h + System.identityHashCode(post_filter);
+            h = 31 * h + System.identityHashCode(expr_builder);
+            h = 31 * h + engine;
+            h = 31 * h + System.identityHashCode(dialect);
+            h = 31 * h + System.identityHashCode(limits);
+            this.hash = h;
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            if( !(o instanceof Key) )
+                return false;
+            Key k = (Key)o;
+            return hash == k.hash && type == k.type &&
+                post_filter == k.post_filter && expr_builder == k.expr_builder &&
+                engine == k.engine && dialect == k.dialect && limits == k.limits &&
+                same(str, k.str) && same(column, k.column) && same(table, k.table) &&
+                same(field_display_name, k.field_display_name);
+        }
+
+        private static int hash(String s) {
+            return s == null ? 0 : s.hashCode();
+        }
+
+        private static boolean same(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
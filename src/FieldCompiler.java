@@ -0,0 +1,468 @@
+/************************************************************************
+ *
+ * FieldCompiler.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+/**
+ * Hand written replacement for StringsLexer, StringsParser and FieldTreeParser.
+ * It recognizes the same language as field.g
+ *
+ *   expr  : block ( (AND|OR) block )* (END)?
+ *   block : NOT block | STRING | REGEX | LPAREN expr RPAREN
+ *
+ * but writes SQL in a single pass over tokens of the source string as they are read
+ * by FieldLexer, without building token objects or AST. Generated SQL is identical to
+ * the one produced by FieldTreeParser. Just like ANTLR generated parser it reads tokens
+ * only when it needs them, so anything which follows top level ')' is ignored.
+ *
+ * Alternatively source string can be parsed into tree of FieldNode objects, which can be
+ * optimized by FieldOptimizer before SQL is generated.
+ *
+ * Instances are not thread safe, but can be reused to compile several strings.
+ */
+final class FieldCompiler {
+
+    private static final int NONE = -1; // next token is not read yet
+
+    private String  table;
+    private String  column;
+    private boolean match_numbers;
+    private ConditionBuilder conditions;
+
+    private FieldLexer    lexer;        // tokens of the string being compiled
+    private int           token;        // kind of the current token
+    private SQLBuffer     sql;          // generated sql
+
+    // if not null, nanoseconds spent reading tokens are added to timings[SQLizerMetrics.LEX]
+    long[] timings;
+
+    // depth of the parse tree of the last string compiled by compile(...), see SQLizerMetrics
+    int depth;
+
+    // limits checked while parsing, see SQLizerLimits
+    SQLizerLimits limits = SQLizerLimits.NONE;
+
+    // if not null, conditions on the other columns the input is matched against, see
+    // SQLizerEngine.Builder.columns(...)
+    ConditionBuilder[] fanout;
+
+    private int terms;   // terms read so far
+    private int nesting; // brackets and NOT operators enclosing the current token
+
+    FieldCompiler(String table, String column, boolean match_numbers,
+                  ConditionBuilder conditions)
+    {
+        this.table         = table;
+        this.column        = column;
+        this.match_numbers = match_numbers;
+        this.conditions    = conditions;
+    }
+
+    String compile(String src) throws Exception {
+        SQLBuffer sql = new SQLBuffer(src.length() * 16, false);
+        compile(src, sql);
+        return sql.toString();
+    }
+
+    /**
+     * Writes SQL for the source string into a given buffer.
+     */
+    void compile(String src, SQLBuffer sql) throws Exception {
+        start(src);
+        this.sql = sql;
+        try {
+            int length = sql.length();
+            depth = expr();
+            limits.checkSQLLength(sql.length() - length);
+        } finally {
+            this.sql = null;
+        }
+    }
+
+    /**
+     * Parses source string into FieldNode tree, optimizes it and generates SQL.
+     */
+    String compileOptimized(String src) throws Exception {
+        SQLBuffer sql = new SQLBuffer(src.length() * 16, false);
+        compileOptimized(src, sql);
+        return sql.toString();
+    }
+
+    /**
+     * Same as compileOptimized(String), but writes SQL into a given buffer.
+     */
+    void compileOptimized(String src, SQLBuffer sql) throws Exception {
+        int length = sql.length();
+        FieldOptimizer.optimize(parse(src)).appendSQL(sql, table);
+        limits.checkSQLLength(sql.length() - length);
+    }
+
+    /**
+     * Parses source string into FieldNode tree. Chains of the same operator are
+     * parsed into single node.
+     */
+    FieldNode parse(String src) throws Exception {
+        start(src);
+        return parseExpr();
+    }
+
+    /**
+     * Checks syntax of the source string without generating SQL or building tree. Post
+     * filter is not called, so conditions should have none.
+     */
+    void validate(String src) throws Exception {
+        start(src);
+        checkExpr();
+    }
+
+    private void start(String src) {
+        this.lexer   = new FieldLexer(src, match_numbers);
+        this.token   = NONE;
+        this.terms   = 0;
+        this.nesting = 0;
+    }
+
+    // expr : block ( (AND|OR) block )* (END)?
+    private void checkExpr() throws Exception {
+        checkBlock();
+        while( la() == FieldLexer.AND || la() == FieldLexer.OR ) {
+            consume();
+            checkBlock();
+        }
+
+        if( la() == FieldLexer.END )
+            consume();
+        else if( token != FieldLexer.RPAREN )
+            throw unexpected();
+    }
+
+    // block : NOT block | STRING | REGEX | LPAREN expr RPAREN
+    private void checkBlock() throws Exception {
+        switch( la() ) {
+        case FieldLexer.NOT:
+            enter();
+            consume();
+            checkBlock();
+            nesting--;
+            break;
+
+        case FieldLexer.STRING:
+            term();
+            // numbers are checked by the lexer, escapes of strings only by conditions
+            if( !match_numbers )
+                conditions.stringCondition(lexer.src, lexer.start, lexer.end);
+            consume();
+            break;
+
+        case FieldLexer.REGEX:
+            term();
+            conditions.regexCondition(lexer.src, lexer.start, lexer.end, limits.max_regex_cost);
+            consume();
+            break;
+
+        case FieldLexer.LPAREN:
+            enter();
+            consume();
+            checkExpr();
+            if( la() != FieldLexer.RPAREN )
+                throw expecting();
+            consume();
+            nesting--;
+            break;
+
+        default:
+            throw unexpected();
+        }
+    }
+
+    // expr : block ( (AND|OR) block )* (END)?
+    private FieldNode parseExpr() throws Exception {
+        FieldNode node = parseBlock();
+
+        while( la() == FieldLexer.AND || la() == FieldLexer.OR ) {
+            int kind = token == FieldLexer.AND ? FieldNode.AND : FieldNode.OR;
+            consume();
+            FieldNode right = parseBlock();
+            if( node.kind == kind && node.children.size() > 1 )
+                node.children.add(right);
+            else
+                node = FieldNode.node(kind, node, right);
+        }
+
+        if( la() == FieldLexer.END )
+            consume();
+        else if( token != FieldLexer.RPAREN )
+            throw unexpected();
+
+        return node;
+    }
+
+    // block : NOT block | STRING | REGEX | LPAREN expr RPAREN
+    private FieldNode parseBlock() throws Exception {
+        FieldNode node;
+        switch( la() ) {
+        case FieldLexer.NOT:
+            enter();
+            consume();
+            node = FieldNode.node(FieldNode.NOT, parseBlock());
+            nesting--;
+            return node;
+
+        case FieldLexer.STRING:
+            term();
+            if( match_numbers )
+                conditions.numericCondition(lexer.src, lexer.start, lexer.end);
+            else
+                conditions.stringCondition(lexer.src, lexer.start, lexer.end);
+            consume();
+            return leaf();
+
+        case FieldLexer.REGEX:
+            term();
+            conditions.regexCondition(lexer.src, lexer.start, lexer.end, limits.max_regex_cost);
+            consume();
+            return leaf();
+
+        case FieldLexer.LPAREN:
+            enter();
+            consume();
+            node = parseExpr();
+            if( la() != FieldLexer.RPAREN )
+                throw expecting();
+            consume();
+            nesting--;
+            return node;
+
+        default:
+            throw unexpected();
+        }
+    }
+
+    // expr : block ( (AND|OR) block )* (END)?
+    // Returns depth of the parsed expression.
+    private int expr() throws Exception {
+        int start = sql.length();
+        int depth = block();
+
+        int operators = 0;
+        int brackets  = 0;
+        int previous  = NONE;
+        while( la() == FieldLexer.AND || la() == FieldLexer.OR ) {
+            // past Field2SQL.FLAT_CHAIN operators runs of the same operator share brackets
+            if( operators >= Field2SQL.FLAT_CHAIN && token == previous )
+                sql.setLength(sql.length() - 3); // " ) " of the previous operand
+            else
+                brackets++;
+            previous = token;
+            sql.append(token == FieldLexer.AND ? " INTERSECT " : " UNION ");
+            consume();
+            depth = Math.max(depth, block()) + 1;
+            sql.append(" ) ");
+            operators++;
+        }
+
+        // tree is left deep, so all of the opening brackets go in front of the first block
+        if( brackets > 0 ) {
+            StringBuilder opening = new StringBuilder(brackets * 3);
+            for( int i = 0; i < brackets; i++ )
+                opening.append(" ( ");
+            sql.insert(start, opening);
+        }
+
+        if( la() == FieldLexer.END )
+            consume();
+        else if( token != FieldLexer.RPAREN )
+            throw unexpected();
+        return depth;
+    }
+
+    // block : NOT block | STRING | REGEX | LPAREN expr RPAREN
+    private int block() throws Exception {
+        int depth = 1;
+        switch( la() ) {
+        case FieldLexer.NOT:
+            enter();
+            consume();
+            sql.append(" ( select id from ").append(table).append(sql.dialect().except());
+            depth += block();
+            sql.append(" ) ");
+            nesting--;
+            break;
+
+        case FieldLexer.STRING:
+            term();
+            if( match_numbers )
+                conditions.numericCondition(lexer.src, lexer.start, lexer.end);
+            else
+                conditions.stringCondition(lexer.src, lexer.start, lexer.end);
+            sql.append(" ( select id from ").append(table).append(" where ");
+            if( fanout == null )
+                conditions.appendCondition(sql);
+            else
+                leaf().appendCondition(sql);
+            sql.append(" ) ");
+            consume();
+            break;
+
+        case FieldLexer.REGEX:
+            term();
+            conditions.regexCondition(lexer.src, lexer.start, lexer.end, limits.max_regex_cost);
+            sql.append(" ( select id from ").append(table).append(" where ");
+            if( fanout == null )
+                conditions.appendCondition(sql);
+            else
+                leaf().appendCondition(sql);
+            sql.append(" ) ");
+            consume();
+            break;
+
+        case FieldLexer.LPAREN:
+            enter();
+            consume();
+            depth = expr();
+            if( la() != FieldLexer.RPAREN )
+                throw expecting();
+            consume();
+            nesting--;
+            break;
+
+        default:
+            throw unexpected();
+        }
+        return depth;
+    }
+
+    private SQLizerException unexpected() {
+        boolean ended = token == FieldLexer.EOF || token == FieldLexer.END;
+        return new SQLizerException(ended ? "unexpected end of input" : "unexpected token: "+lexer.text(),
+                                    lexer.start, ended ? null : lexer.text(), SQLizerMetrics.SYNTAX);
+    }
+
+    private SQLizerException expecting() {
+        boolean ended = token == FieldLexer.EOF || token == FieldLexer.END;
+        return new SQLizerException("expecting ')', found '"+lexer.text()+"'",
+                                    lexer.start, ended ? null : lexer.text(), SQLizerMetrics.SYNTAX);
+    }
+
+    // Counts the current token, which is string or regular expression, against limits.
+    private void term() throws SQLizerException {
+        limits.checkTerms(++terms, lexer);
+    }
+
+    // Counts the current token, which is bracket or NOT operator, against limits.
+    private void enter() throws SQLizerException {
+        limits.checkDepth(++nesting, lexer);
+    }
+
+    /**
+     * Checks limits of the source string reading only its tokens and returns the number
+     * of operators of its longest chain. Used by ANTLR_ENGINE, so the scan stops at the
+     * first syntax error, which is left to StringsParser. Brackets are counted the same way
+     * as by compile(...).
+     */
+    static int scan(String src, SQLizerLimits limits) throws SQLizerException {
+        FieldLexer lexer = new FieldLexer(src, false);
+        int[] chains = new int[16]; // operators of the chain at every level of brackets
+        int[] nots   = new int[16]; // NOT operators at every level, which wait for operand
+        int level    = 0;
+        int pending  = 0; // NOT operators at all of the levels, which wait for operand
+        int terms    = 0;
+        int longest  = 0;
+        try {
+            while( true ) {
+                switch( lexer.next() ) {
+                case FieldLexer.NOT:
+                    limits.checkDepth(level + pending + 1, lexer);
+                    nots[level]++;
+                    pending++;
+                    break;
+
+                case FieldLexer.LPAREN:
+                    limits.checkDepth(level + pending + 1, lexer);
+                    if( ++level == chains.length ) {
+                        chains = java.util.Arrays.copyOf(chains, level * 2);
+                        nots   = java.util.Arrays.copyOf(nots, level * 2);
+                    }
+                    chains[level] = 0;
+                    nots[level]   = 0;
+                    break;
+
+                case FieldLexer.RPAREN:
+                    if( level == 0 )
+                        return longest;
+                    // brackets are operand of NOT operators waiting at the enclosing level
+                    level--;
+                    pending    -= nots[level];
+                    nots[level] = 0;
+                    break;
+
+                case FieldLexer.STRING:
+                case FieldLexer.REGEX:
+                    limits.checkTerms(++terms, lexer);
+                    if( lexer.kind == FieldLexer.REGEX )
+                        RegexGuard.check(lexer.src, lexer.start, lexer.end, limits.max_regex_cost);
+                    pending    -= nots[level];
+                    nots[level] = 0;
+                    break;
+
+                case FieldLexer.AND:
+                case FieldLexer.OR:
+                    longest = Math.max(longest, ++chains[level]);
+                    break;
+
+                default:
+                    return longest;
+                }
+            }
+        } catch (SQLizerException ex) {
+            if( ex.getCategory() == SQLizerMetrics.LIMIT )
+                throw ex;
+            return longest;
+        } catch (Exception ex) {
+            return longest;
+        }
+    }
+
+    // Returns LEAF of the condition just built for the current token or, if the input is
+    // matched against several columns, SCAN of the same condition on every one of them.
+    private FieldNode leaf() throws Exception {
+        FieldNode leaf = FieldNode.leaf(conditions);
+        if( fanout == null )
+            return leaf;
+        FieldNode scan = FieldNode.node(FieldNode.SCAN, leaf);
+        for( int i = 0; i < fanout.length; i++ ) {
+            if( lexer.kind == FieldLexer.REGEX )
+                fanout[i].regexCondition(lexer.src, lexer.start, lexer.end, limits.max_regex_cost);
+            else if( match_numbers )
+                fanout[i].numericCondition(lexer.src, lexer.start, lexer.end);
+            else
+                fanout[i].stringCondition(lexer.src, lexer.start, lexer.end);
+            scan.children.add(FieldNode.leaf(fanout[i]));
+        }
+        return scan;
+    }
+
+    private void consume() {
+        token = NONE;
+    }
+
+    // Returns kind of the current token reading it if necessary.
+    private int la() throws Exception {
+        if( token == NONE ) {
+            if( timings == null )
+                token = lexer.next();
+            else {
+                long started = System.nanoTime();
+                token = lexer.next();
+                timings[SQLizerMetrics.LEX] += System.nanoTime() - started;
+            }
+        }
+        return token;
+    }
+}
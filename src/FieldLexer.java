@@ -0,0 +1,234 @@
+/************************************************************************
+ *
+ * FieldLexer.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+/**
+ * Hand written replacement for StringsLexer. Tokens are not objects, the lexer only
+ * records kind of the current token and its start and end offsets in the source string.
+ *
+ * Unlike StringsLexer it works on the source string as it was given by user, rather than
+ * on the output of Field2SQL.escape(...). Effect of escape(...) is reproduced directly:
+ * ';' and '&' are ordinary characters, '\\' followed by '\\' or '/' is a pair of
+ * characters which is never split, and the end of the source string is reported as END
+ * token followed by EOF.
+ *
+ * Numeric fields accept numeric terms only, see ConditionBuilder.isNumericTerm(...).
+ * Comparison operator followed by whitespace and a number is single term, e.g. '&gt;= 5'.
+ */
+final class FieldLexer {
+
+    // token kinds
+    static final int EOF    = 0;
+    static final int STRING = 1;
+    static final int REGEX  = 2;
+    static final int AND    = 3;
+    static final int OR     = 4;
+    static final int NOT    = 5;
+    static final int LPAREN = 6;
+    static final int RPAREN = 7;
+    static final int END    = 8;
+
+    // characters allowed in strings and regular expressions, see CCSET in field.g
+    private static final boolean[] ccset = new boolean[128];
+    static {
+        String chars = "'~!@#$%^&*_+<>?`-=,.[]{}|:;";
+        for( int i = 0; i < chars.length(); i++ )
+            ccset[chars.charAt(i)] = true;
+        for( char c = 'a'; c <= 'z'; c++ )
+            ccset[c] = true;
+        for( char c = 'A'; c <= 'Z'; c++ )
+            ccset[c] = true;
+        for( char c = '0'; c <= '9'; c++ )
+            ccset[c] = true;
+    }
+
+    final String src;         // source string
+    int          kind;        // kind of the current token
+    int          start;       // offset of the first character of the current token
+    int          end;         // offset following the last character of the current token
+
+    private int     pos = 0;        // current position in src
+    private boolean ended = false;  // END token was returned
+    private boolean match_numbers;
+
+    FieldLexer(String src, boolean match_numbers) {
+        this.src           = src;
+        this.match_numbers = match_numbers;
+    }
+
+    /**
+     * Text of the current token.
+     */
+    String text() {
+        return src.substring(start, end);
+    }
+
+    /**
+     * Reads next token and returns its kind.
+     */
+    int next() throws Exception {
+        int length = src.length();
+        while( pos < length && isWhitespace(src.charAt(pos)) )
+            pos++;
+
+        start = pos;
+        kind  = token();
+        end   = pos;
+        return kind;
+    }
+
+    private int token() throws Exception {
+        if( pos == src.length() ) {
+            if( ended )
+                return EOF;
+            ended = true;
+            return END;
+        }
+
+        char c = src.charAt(pos);
+        switch( c ) {
+        case '(': pos++; return LPAREN;
+        case ')': pos++; return RPAREN;
+        case '/': return regex();
+        case '"': return quotedString();
+        default:
+            if( c == '\\' || isCCSET(c) )
+                return string();
+            throw unexpectedChar(c);
+        }
+    }
+
+    // STRING : (ESC|CCSET) (ESC|CCSET|'/')*
+    private int string() throws Exception {
+        int length = src.length();
+        while( pos < length ) {
+            char c = src.charAt(pos);
+            if( c == '\\' )
+                escape();
+            else if( isCCSET(c) || ( c == '/' && pos > start ) )
+                pos++;
+            else
+                break;
+        }
+
+        int token_length = pos - start;
+        if( token_length == 3 && src.regionMatches(true, start, "and", 0, 3) )
+            return AND;
+        if( token_length == 2 && src.regionMatches(true, start, "or", 0, 2) )
+            return OR;
+        if( token_length == 3 && src.regionMatches(true, start, "not", 0, 3) )
+            return NOT;
+
+        if( match_numbers ) {
+            // comparison operator is joined with the number which follows it
+            if( ConditionBuilder.comparisonEnd(src, start, pos) == pos ) {
+                int next = pos;
+                while( next < length && isWhitespace(src.charAt(next)) )
+                    next++;
+                if( next > pos && next < length && isCCSET(src.charAt(next)) )
+                    for( pos = next; pos < length && isCCSET(src.charAt(pos)); )
+                        pos++;
+            }
+            if( !ConditionBuilder.isNumericTerm(src, start, pos) )
+                throw notNumber();
+        }
+
+        return STRING;
+    }
+
+    // STRING : '"' (ESC|CCSET|'('|')'|'/'|' '|'\t')* '"'
+    private int quotedString() throws Exception {
+        int length = src.length();
+        pos++;
+        while( pos < length ) {
+            char c = src.charAt(pos);
+            if( c == '\\' )
+                escape();
+            else if( isCCSET(c) || c == '(' || c == ')' || c == '/' || c == ' ' || c == '\t' )
+                pos++;
+            else
+                break;
+        }
+        match('"');
+
+        if( match_numbers )
+            throw notNumber();
+
+        return STRING;
+    }
+
+    // REGEX : '/' (CCSET|'\\'|'('|')'|' '|'\t')* '/' ('i'|)
+    private int regex() throws Exception {
+        int length = src.length();
+        pos++;
+        while( pos < length ) {
+            char c = src.charAt(pos);
+            if( c == '\\' && pos + 1 < length &&
+                ( src.charAt(pos + 1) == '\\' || src.charAt(pos + 1) == '/' ) )
+                pos += 2;
+            else if( isCCSET(c) || c == '\\' || c == '(' || c == ')' || c == ' ' || c == '\t' )
+                pos++;
+            else
+                break;
+        }
+        match('/');
+        if( pos < length && src.charAt(pos) == 'i' )
+            pos++;
+
+        if( match_numbers )
+            throw notNumber();
+
+        return REGEX;
+    }
+
+    // ESC : '\\' ( '*'|'%'|'?'|'_'|'\\'|'"'|'/' )
+    private void escape() throws Exception {
+        pos++;
+        if( pos < src.length() ) {
+            char c = src.charAt(pos);
+            if( c == '*' || c == '%' || c == '?' || c == '_' || c == '\\' || c == '"' || c == '/' ) {
+                pos++;
+                return;
+            }
+            throw unexpectedChar(c);
+        }
+        throw new SQLizerException("unexpected end of input", pos, null, SQLizerMetrics.LEXICAL);
+    }
+
+    private void match(char expected) throws Exception {
+        if( pos < src.length() && src.charAt(pos) == expected ) {
+            pos++;
+            return;
+        }
+        throw new SQLizerException("expecting '"+expected+"', found "+
+                                   (pos < src.length() ? "'"+src.charAt(pos)+"'" : "end of input"),
+                                   pos, pos < src.length() ? String.valueOf(src.charAt(pos)) : null,
+                                   SQLizerMetrics.LEXICAL);
+    }
+
+    private SQLizerException unexpectedChar(char c) {
+        return new SQLizerException("unexpected char: '"+c+"'", pos, String.valueOf(c),
+                                    SQLizerMetrics.LEXICAL);
+    }
+
+    // Same message as NumberFormatException thrown by Long.parseLong(...).
+    private SQLizerException notNumber() {
+        return new SQLizerException("For input string: \""+src.substring(start, pos)+"\"",
+                                    start, src.substring(start, pos), SQLizerMetrics.NUMBER);
+    }
+
+    static boolean isCCSET(char c) {
+        return c < 128 && ccset[c];
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+}
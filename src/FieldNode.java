@@ -0,0 +1,341 @@
+/************************************************************************
+ *
+ * FieldNode.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+import java.util.*;
+
+/**
+ * Node of the parsed source string. Every node stands for a set of ids.
+ *
+ *   AND   - intersection of its operands
+ *   OR    - union of its operands
+ *   NOT   - all ids of the table except those of its operand
+ *   MINUS - ids of the first operand except those of the rest of operands
+ *   LEAF  - ids of the rows which match single condition
+ *   SCAN  - ids of the rows which match any of the conditions of its children
+ *   ALL   - ids of the rows which match all of the conditions of its children
+ *   NEGATION - ids of the rows which do not match the condition of its child
+ *
+ * Children of SCAN and ALL are LEAF, SCAN, ALL or NEGATION nodes. NEGATION is built
+ * only for conditions on single valued columns, where it selects the same ids as NOT,
+ * see FieldOptimizer.
+ * Leaves keep parts of the condition built by ConditionBuilder, so that conditions can
+ * be combined, e.g. into IN lists.
+ */
+final class FieldNode {
+
+    static final int AND   = 0;
+    static final int OR    = 1;
+    static final int NOT   = 2;
+    static final int MINUS = 3;
+    static final int LEAF  = 4;
+    static final int SCAN  = 5;
+    static final int ALL   = 6;
+    static final int NEGATION = 7;
+
+    int kind;
+
+    // operands of AND, OR, NOT and MINUS or conditions of SCAN and ALL
+    ArrayList<FieldNode> children;
+
+    // condition of LEAF, see ConditionBuilder, column of NEGATION is checked by 'IS NULL'
+    // unless it is null
+    int     operator;
+    String  column;
+    String  value;
+    String[] values;
+    boolean quoted;
+    String  regex_modes;
+    String  prefix_column;
+    String  prefix;
+
+    // column of LEAF has the same value in all of the rows with the same id
+    boolean single_valued;
+
+    // column of LEAF may hold NULL
+    boolean nullable = true;
+
+    // table of the column of LEAF, if it is not the table ids are selected from
+    String join_table;
+
+    // canonical text of the node, see FieldNormalizer
+    String key;
+
+    private FieldNode(int kind) {
+        this.kind = kind;
+        if( kind != LEAF )
+            this.children = new ArrayList<FieldNode>(2);
+    }
+
+    /**
+     * Creates node of a given kind with given children.
+     */
+    static FieldNode node(int kind, FieldNode... children) {
+        FieldNode node = new FieldNode(kind);
+        for( int i = 0; i < children.length; i++ )
+            node.children.add(children[i]);
+        return node;
+    }
+
+    /**
+     * Creates LEAF from the last condition built by ConditionBuilder.
+     */
+    static FieldNode leaf(ConditionBuilder condition) {
+        FieldNode node   = new FieldNode(LEAF);
+        node.operator    = condition.operator;
+        node.column      = condition.m_column;
+        node.value       = condition.m_value;
+        node.values      = condition.m_values;
+        node.quoted      = condition.quoted;
+        node.regex_modes   = condition.regex_modes;
+        node.prefix_column = condition.prefix_column;
+        node.prefix        = condition.prefix;
+        node.single_valued = condition.single_valued;
+        node.nullable      = condition.nullable;
+        node.join_table    = condition.join_table;
+        return node;
+    }
+
+    FieldNode child(int i) {
+        return children.get(i);
+    }
+
+    /**
+     * True for LEAF, SCAN, ALL and NEGATION, which select ids of the rows matching a condition.
+     */
+    boolean isCondition() {
+        return kind == LEAF || kind == SCAN || kind == ALL || kind == NEGATION;
+    }
+
+    /**
+     * True if condition of this node depends only on single valued columns.
+     */
+    boolean isSingleValued() {
+        if( kind == LEAF )
+            return single_valued;
+        for( int i = 0; i < children.size(); i++ )
+            if( !child(i).isSingleValued() )
+                return false;
+        return true;
+    }
+
+    /**
+     * Appends SQL selecting ids of this node from a given table.
+     */
+    void appendSQL(SQLBuffer sql, String table) {
+        switch( kind ) {
+        case LEAF:
+        case SCAN:
+        case ALL:
+        case NEGATION:
+            sql.append(" ( select id from ").append(table).append(" where ");
+            appendCondition(sql);
+            sql.append(" ) ");
+            break;
+
+        case NOT:
+            if( sql.dialect().antiJoin() && child(0).isCondition() ) {
+                appendJoin(sql, table, null, child(0));
+                break;
+            }
+            sql.append(" ( select id from ").append(table).append(sql.dialect().except());
+            child(0).appendSQL(sql, table);
+            sql.append(" ) ");
+            break;
+
+        case AND:
+        case MINUS:
+            if( sql.dialect().antiJoin() && appendSemiJoin(sql, table) )
+                break;
+            appendSetOperation(sql, table);
+            break;
+
+        default:
+            appendSetOperation(sql, table);
+        }
+    }
+
+    // Appends SQL of children joined by INTERSECT, UNION or MINUS.
+    private void appendSetOperation(SQLBuffer sql, String table) {
+        String operator = kind == AND ? " INTERSECT " :
+            ( kind == OR ? " UNION " : sql.dialect().except() );
+        sql.append(" ( ");
+        for( int i = 0; i < children.size(); i++ ) {
+            if( i > 0 )
+                sql.append(operator);
+            child(i).appendSQL(sql, table);
+        }
+        sql.append(" ) ");
+    }
+
+    /**
+     * Appends 'where' condition of LEAF, SCAN, ALL or NEGATION. Equality conditions and
+     * lists of numbers of SCAN on the same column are combined into IN lists.
+     */
+    void appendCondition(SQLBuffer sql) {
+        if( kind == LEAF ) {
+            if( join_table != null )
+                sql.append("id IN ( select id from ").append(join_table).append(" where ");
+            ConditionBuilder.appendCondition(sql, operator, column, value, values, quoted,
+                                             regex_modes, prefix_column, prefix);
+            if( join_table != null )
+                sql.append(" )");
+            return;
+        }
+
+        if( kind == NEGATION ) {
+            if( column != null )
+                sql.append("( ").append(column).append(" IS NULL OR ");
+            FieldNode condition = child(0);
+            if( condition.kind == LEAF && condition.operator == ConditionBuilder.EQUALS ) {
+                sql.append(condition.column).append(" <> ");
+                sql.appendValue(condition.value, condition.quoted);
+            } else if( condition.kind == LEAF && condition.operator == ConditionBuilder.LIKE ) {
+                sql.append(condition.column).append(" NOT LIKE ");
+                sql.appendValue(condition.value, condition.quoted);
+                sql.append(" ESCAPE '\\'");
+            } else {
+                sql.append("NOT ");
+                appendNested(sql, condition);
+            }
+            if( column != null )
+                sql.append(" )");
+            return;
+        }
+
+        if( kind == ALL ) {
+            for( int i = 0; i < children.size(); i++ ) {
+                if( i > 0 )
+                    sql.append(" AND ");
+                appendConjunct(sql, child(i));
+            }
+            return;
+        }
+
+        boolean[] done = new boolean[children.size()];
+        for( int i = 0; i < children.size(); i++ ) {
+            if( done[i] )
+                continue;
+            if( i > 0 )
+                sql.append(" OR ");
+
+            FieldNode leaf = child(i);
+            if( leaf.kind != LEAF || leaf.operator == ConditionBuilder.EXPRESSION ) {
+                appendNested(sql, leaf);
+                continue;
+            }
+
+            int equalities = 1;
+            if( isEquality(leaf, leaf) )
+                for( int j = i + 1; j < children.size(); j++ )
+                    if( isEquality(child(j), leaf) )
+                        equalities++;
+
+            if( equalities == 1 ) {
+                leaf.appendCondition(sql);
+                continue;
+            }
+
+            if( leaf.join_table != null )
+                sql.append("id IN ( select id from ").append(leaf.join_table).append(" where ");
+            sql.append(leaf.column).append(" IN (");
+            for( int j = i; j < children.size(); j++ ) {
+                FieldNode other = child(j);
+                if( !isEquality(other, leaf) )
+                    continue;
+                if( j > i )
+                    sql.append(", ");
+                if( other.operator == ConditionBuilder.IN ) {
+                    for( int k = 0; k < other.values.length; k++ ) {
+                        if( k > 0 )
+                            sql.append(", ");
+                        sql.appendValue(other.values[k], false);
+                    }
+                } else
+                    sql.appendValue(other.value, other.quoted);
+                done[j] = true;
+            }
+            sql.append(")");
+            if( leaf.join_table != null )
+                sql.append(" )");
+        }
+    }
+
+    // Appends AND or MINUS of conditions as single select, see appendJoin(...). Returns false
+    // if operands are not conditions.
+    private boolean appendSemiJoin(SQLBuffer sql, String table) {
+        FieldNode positive = kind == AND ? this : child(0);
+        if( kind == MINUS && ( children.size() != 2 || !child(1).isCondition() ) )
+            return false;
+        if( positive.isCondition() ) {
+            appendJoin(sql, table, Collections.singletonList(positive), child(1));
+            return true;
+        }
+        if( positive.kind != AND )
+            return false;
+        for( int i = 0; i < positive.children.size(); i++ )
+            if( !positive.child(i).isCondition() )
+                return false;
+        appendJoin(sql, table, positive.children, kind == MINUS ? child(1) : null);
+        return true;
+    }
+
+    // Appends ids of the rows matching the first of required conditions, or of all rows if
+    // there are none, which have rows matching the rest of them and no rows matching excluded
+    // condition, if it is not null.
+    private static void appendJoin(SQLBuffer sql, String table, List<FieldNode> required,
+                                   FieldNode excluded)
+    {
+        sql.append(" ( select distinct id from ").append(table).append(" t where ");
+        int count = required == null ? 0 : required.size();
+        if( count > 0 )
+            appendConjunct(sql, required.get(0));
+        for( int i = 1; i < count; i++ ) {
+            sql.append(" AND EXISTS");
+            appendCorrelated(sql, table, required.get(i));
+        }
+        if( excluded != null ) {
+            sql.append(count > 0 ? " AND NOT EXISTS" : "NOT EXISTS");
+            appendCorrelated(sql, table, excluded);
+        }
+        sql.append(" ) ");
+    }
+
+    // Appends subquery selecting rows of the id of the outer row, which match a given condition.
+    private static void appendCorrelated(SQLBuffer sql, String table, FieldNode condition) {
+        sql.append(" ( select 1 from ").append(table).append(" where id = t.id AND ( ");
+        condition.appendCondition(sql);
+        sql.append(" ) )");
+    }
+
+    // True for '=' and 'IN' conditions on the column of a given leaf, which can be merged
+    // into IN list.
+    private static boolean isEquality(FieldNode node, FieldNode leaf) {
+        return node.kind == LEAF && node.column.equals(leaf.column) &&
+            ( node.join_table == null ? leaf.join_table == null : node.join_table.equals(leaf.join_table) ) &&
+            ( node.operator == ConditionBuilder.EQUALS || node.operator == ConditionBuilder.IN );
+    }
+
+    // Appends condition of a given node as operand of AND.
+    private static void appendConjunct(SQLBuffer sql, FieldNode condition) {
+        if( condition.kind == SCAN ||
+            ( condition.kind == LEAF && condition.operator == ConditionBuilder.EXPRESSION ) )
+            appendNested(sql, condition);
+        else
+            condition.appendCondition(sql);
+    }
+
+    // Appends condition of a given node in brackets.
+    private static void appendNested(SQLBuffer sql, FieldNode condition) {
+        sql.append("( ");
+        condition.appendCondition(sql);
+        sql.append(" )");
+    }
+}
@@ -0,0 +1,118 @@
+/************************************************************************
+ *
+ * FieldNormalizer.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+import java.util.*;
+
+/**
+ * Rewrites parsed source string into canonical form, so that equivalent inputs give
+ * identical SQL:
+ *
+ *   not not a            ->  a
+ *   (a or b) or c        ->  a or b or c,  same for 'and'
+ *   b or a               ->  a or b,       same for 'and'
+ *   a or a               ->  a,            same for 'and'
+ *   a** or a*            ->  a*
+ *
+ * SCAN, which the input matched against several columns has for every term, is ordered
+ * like OR of its conditions.
+ *
+ * Operands of AND and OR are ordered and compared by their key, which is built from the
+ * conditions of the leaves, i.e. after post filter is applied, rather than from the source
+ * string. So case of operators, brackets, quotes and escapes, which do not change the
+ * condition, do not change the key either. Keys of the nodes are kept in FieldNode.key.
+ */
+final class FieldNormalizer {
+
+    private FieldNormalizer() {
+    }
+
+    static FieldNode normalize(FieldNode node) {
+        switch( node.kind ) {
+        case FieldNode.NOT:
+            FieldNode operand = normalize(node.child(0));
+            if( operand.kind == FieldNode.NOT )
+                return operand.child(0);
+            FieldNode negation = FieldNode.node(FieldNode.NOT, operand);
+            negation.key = "NOT "+operand.key;
+            return negation;
+
+        case FieldNode.AND:
+        case FieldNode.OR:
+        case FieldNode.SCAN: // the same condition on several columns, see FieldCompiler.fanout
+            // nested operators of the same kind are flattened, duplicates dropped
+            TreeMap<String, FieldNode> operands = new TreeMap<String, FieldNode>();
+            for( int i = 0; i < node.children.size(); i++ ) {
+                FieldNode child = normalize(node.child(i));
+                if( child.kind == node.kind ) {
+                    for( int j = 0; j < child.children.size(); j++ )
+                        operands.put(child.child(j).key, child.child(j));
+                } else
+                    operands.put(child.key, child);
+            }
+            if( operands.size() == 1 )
+                return operands.firstEntry().getValue();
+
+            FieldNode result = FieldNode.node(node.kind);
+            result.children.addAll(operands.values());
+            StringBuilder key = new StringBuilder("(");
+            for( String operand_key : operands.keySet() ) {
+                if( key.length() > 1 )
+                    key.append(node.kind == FieldNode.AND ? " AND" : " OR");
+                key.append(' ').append(operand_key);
+            }
+            result.key = key.append(" )").toString();
+            return result;
+
+        case FieldNode.LEAF:
+            if( node.operator == ConditionBuilder.LIKE )
+                node.value = wildcards(node.value);
+            SQLBuffer sql = new SQLBuffer(64, false);
+            boolean nested = node.operator == ConditionBuilder.EXPRESSION ||
+                node.operator == ConditionBuilder.PREFIXED_REGEXP_LIKE;
+            if( nested )
+                sql.append("( ");
+            node.appendCondition(sql);
+            if( nested )
+                sql.append(" )");
+            node.key = sql.toString();
+            return node;
+
+        default:
+            throw new IllegalArgumentException("Node of kind "+node.kind+" is already optimized.");
+        }
+    }
+
+    /**
+     * Returns key of the canonical form of a given tree.
+     */
+    static String key(FieldNode node) {
+        return normalize(node).key;
+    }
+
+    // Replaces runs of '%' wildcards of LIKE value with single one, escaped '%' are kept.
+    private static String wildcards(String value) {
+        if( value.indexOf("%%") < 0 )
+            return value;
+        StringBuilder result = new StringBuilder(value.length());
+        boolean wildcard = false;
+        for( int i = 0; i < value.length(); i++ ) {
+            char c = value.charAt(i);
+            if( c == '\\' && i + 1 < value.length() ) {
+                result.append(c).append(value.charAt(++i));
+                wildcard = false;
+            } else if( c != '%' || !wildcard ) {
+                result.append(c);
+                wildcard = c == '%';
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,225 @@
+/************************************************************************
+ *
+ * FieldOptimizer.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+import java.util.*;
+
+/**
+ * Rewrites parsed source string into equivalent one, which needs fewer set operations.
+ * Every rewrite keeps results exact for multi-value attributes, i.e. when an id has
+ * several rows in the table:
+ *
+ *   not not a            ->  a
+ *   a or (b or c)        ->  a or b or c,  same for 'and'
+ *   not a and not b      ->  not (a or b)
+ *   not a or not b       ->  not (a and b)
+ *   a or b or c          ->  select id from table where a OR b OR c
+ *   a and not b          ->  a MINUS b
+ *   s and t and m        ->  select id from table where s AND t AND m
+ *
+ * Conditions joined by 'and' are merged only when all of them but one are on single
+ * valued columns, see FieldNode.single_valued, since otherwise a row matching 'a' and
+ * another row matching 'b' make their id match 'a and b'. For the same reason only
+ * conditions on single valued columns are negated in place
+ *
+ *   not s                ->  select id from table where s_column <> 's'
+ *
+ * which is then merged with other conditions like any other one. If the column may hold
+ * NULL, 'IS NULL' is checked as well, since MINUS keeps ids whose column is NULL.
+ */
+final class FieldOptimizer {
+
+    private FieldOptimizer() {
+    }
+
+    static FieldNode optimize(FieldNode node) {
+        switch( node.kind ) {
+        case FieldNode.NOT:
+            FieldNode operand = optimize(node.child(0));
+            if( operand.kind == FieldNode.NOT || operand.kind == FieldNode.NEGATION )
+                return operand.child(0);
+            FieldNode negation = negate(operand);
+            return negation != null ? negation : FieldNode.node(FieldNode.NOT, operand);
+
+        case FieldNode.AND:
+        case FieldNode.OR:
+            ArrayList<FieldNode> operands = new ArrayList<FieldNode>();
+            for( int i = 0; i < node.children.size(); i++ )
+                operands.add(optimize(node.child(i)));
+            return combine(node.kind, operands);
+
+        default:
+            return node;
+        }
+    }
+
+    // Returns NEGATION of a given condition on single valued columns or null if it can not
+    // be written as condition. Condition on a nullable column is unknown for rows where the
+    // column is NULL, which must match the negation. That is checked by 'IS NULL' only if
+    // all of the leaves are on that column, none is negated and none is an expression.
+    private static FieldNode negate(FieldNode condition) {
+        if( !condition.isCondition() || !condition.isSingleValued() )
+            return null;
+        ArrayList<FieldNode> leaves = new ArrayList<FieldNode>();
+        boolean negated = leaves(condition, leaves);
+        String column = null;
+        for( int i = 0; i < leaves.size(); i++ ) {
+            FieldNode leaf = leaves.get(i);
+            if( leaf.operator == ConditionBuilder.EXPRESSION )
+                return null;
+            if( leaf.nullable ) {
+                if( negated || ( column != null && !column.equals(leaf.column) ) )
+                    return null;
+                column = leaf.column;
+            }
+        }
+        for( int i = 0; column != null && i < leaves.size(); i++ )
+            if( !column.equals(leaves.get(i).column) )
+                return null;
+
+        FieldNode negation = FieldNode.node(FieldNode.NEGATION, condition);
+        negation.column = column;
+        return negation;
+    }
+
+    // Adds leaves of a given condition to the list, returns true if any of them is negated.
+    private static boolean leaves(FieldNode condition, ArrayList<FieldNode> leaves) {
+        if( condition.kind == FieldNode.LEAF ) {
+            leaves.add(condition);
+            return false;
+        }
+        boolean negated = condition.kind == FieldNode.NEGATION;
+        for( int i = 0; i < condition.children.size(); i++ )
+            negated |= leaves(condition.child(i), leaves);
+        return negated;
+    }
+
+    // Joins already optimized operands with AND or OR.
+    private static FieldNode combine(int kind, ArrayList<FieldNode> optimized) {
+        int dual = kind == FieldNode.AND ? FieldNode.OR : FieldNode.AND;
+
+        // flatten nested operators of the same kind
+        ArrayList<FieldNode> operands = new ArrayList<FieldNode>();
+        for( int i = 0; i < optimized.size(); i++ ) {
+            FieldNode operand = optimized.get(i);
+            if( operand.kind == kind )
+                operands.addAll(operand.children);
+            else
+                operands.add(operand);
+        }
+
+        // De Morgan: negated operands are pulled under single negation
+        int first_negated = -1;
+        ArrayList<FieldNode> negated = new ArrayList<FieldNode>();
+        for( int i = 0; i < operands.size(); i++ ) {
+            if( operands.get(i).kind == FieldNode.NOT ) {
+                if( first_negated < 0 )
+                    first_negated = i;
+                negated.add(operands.get(i).child(0));
+            }
+        }
+        if( negated.size() > 1 ) {
+            ArrayList<FieldNode> rest = new ArrayList<FieldNode>();
+            for( int i = 0; i < operands.size(); i++ ) {
+                if( i == first_negated )
+                    rest.add(FieldNode.node(FieldNode.NOT, combine(dual, negated)));
+                else if( operands.get(i).kind != FieldNode.NOT )
+                    rest.add(operands.get(i));
+            }
+            operands = rest;
+        }
+
+        // conditions joined by 'or' are checked by single scan
+        if( kind == FieldNode.OR ) {
+            int first_leaf = -1;
+            FieldNode scan = FieldNode.node(FieldNode.SCAN);
+            for( int i = 0; i < operands.size(); i++ ) {
+                FieldNode operand = operands.get(i);
+                if( operand.isCondition() ) {
+                    if( first_leaf < 0 )
+                        first_leaf = i;
+                    if( operand.kind == FieldNode.SCAN )
+                        scan.children.addAll(operand.children);
+                    else
+                        scan.children.add(operand);
+                }
+            }
+            if( scan.children.size() > 1 ) {
+                ArrayList<FieldNode> rest = new ArrayList<FieldNode>();
+                for( int i = 0; i < operands.size(); i++ ) {
+                    if( i == first_leaf )
+                        rest.add(scan);
+                    else if( !operands.get(i).isCondition() )
+                        rest.add(operands.get(i));
+                }
+                operands = rest;
+            }
+        }
+
+        // conditions on single valued columns joined by 'and' are checked by single scan,
+        // together with at most one condition on multi valued columns
+        if( kind == FieldNode.AND ) {
+            int first_condition = -1;
+            boolean multi_valued = false;
+            boolean[] merged = new boolean[operands.size()];
+            FieldNode all = FieldNode.node(FieldNode.ALL);
+            for( int i = 0; i < operands.size(); i++ ) {
+                FieldNode operand = operands.get(i);
+                if( !operand.isCondition() )
+                    continue;
+                if( !operand.isSingleValued() ) {
+                    if( multi_valued )
+                        continue;
+                    multi_valued = true;
+                }
+                merged[i] = true;
+                if( first_condition < 0 )
+                    first_condition = i;
+                if( operand.kind == FieldNode.ALL )
+                    all.children.addAll(operand.children);
+                else
+                    all.children.add(operand);
+            }
+            if( all.children.size() > 1 ) {
+                ArrayList<FieldNode> rest = new ArrayList<FieldNode>();
+                for( int i = 0; i < operands.size(); i++ ) {
+                    if( i == first_condition )
+                        rest.add(all);
+                    else if( !merged[i] )
+                        rest.add(operands.get(i));
+                }
+                operands = rest;
+            }
+        }
+
+        if( operands.size() == 1 )
+            return operands.get(0);
+
+        // intersection with complement is difference
+        if( kind == FieldNode.AND ) {
+            FieldNode complement = null;
+            FieldNode positive = FieldNode.node(FieldNode.AND);
+            for( int i = 0; i < operands.size(); i++ ) {
+                if( operands.get(i).kind == FieldNode.NOT )
+                    complement = operands.get(i).child(0);
+                else
+                    positive.children.add(operands.get(i));
+            }
+            if( complement != null )
+                return FieldNode.node(FieldNode.MINUS,
+                                      positive.children.size() == 1 ? positive.child(0) : positive,
+                                      complement);
+        }
+
+        FieldNode result = FieldNode.node(kind);
+        result.children.addAll(operands);
+        return result;
+    }
+}
@@ -0,0 +1,411 @@
+/************************************************************************
+ *
+ * FieldPredicate.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+import java.math.BigDecimal;
+import java.util.function.*;
+import java.util.regex.*;
+
+/**
+ * Search field compiled into predicate, which matches values in memory the same way
+ * SQL generated by Field2SQL matches values of the column, e.g.<br><br>
+ *
+ *  &nbsp;&nbsp;&nbsp;&nbsp;FieldPredicate name = FieldPredicate.compile(Field2SQL.STRING, "smi* and not /^smith$/i", true);<br>
+ *  &nbsp;&nbsp;&nbsp;&nbsp;List&lt;String&gt; found = names.parallelStream().filter(name).collect(Collectors.toList());<br><br>
+ *
+ * Every value is matched on its own, i.e. 'a and b' matches values matching both 'a'
+ * and 'b', as it does in SQL for the table with single row per id. Wildcards are compiled
+ * into matchers once, so that testing a value neither builds nor compiles regular
+ * expressions. Regular expressions are matched by java.util.regex with POSIX character
+ * classes, '$' and '.' translated to their Oracle meaning.<br><br>
+ *
+ * Instances are immutable and can be shared by any number of threads, e.g. used by
+ * parallel streams.
+ */
+public class FieldPredicate implements Predicate<String> {
+
+    private final Node    root;
+    private final boolean lower_case; // values other than regular expressions are matched in lower case
+
+    private FieldPredicate(Node root, boolean lower_case) {
+        this.root       = root;
+        this.lower_case = lower_case;
+    }
+
+    /**
+     * Same as {@link #compile(int, String, boolean) compile(type, str, false)}.
+     */
+    public static FieldPredicate compile(int type, String str) throws Exception {
+        return compile(type, str, false);
+    }
+
+    /**
+     * Compiles search field into predicate.
+     *
+     * @param type        either Field2SQL.STRING or Field2SQL.DOMAIN_NAME
+     * @param str         string to be parsed
+     * @param lower_case  if true then values are matched as by NetDBPostFilter on lower(column)
+     *                    column, i.e. in lower case unless they are matched by regular expression
+     */
+    public static FieldPredicate compile(int type, String str, boolean lower_case) throws Exception {
+        if( type != Field2SQL.STRING && type != Field2SQL.DOMAIN_NAME )
+            throw new IllegalArgumentException("Unsupported type "+type+", use compileNumeric(...)");
+        return new FieldPredicate(parse(type, str, lower_case), lower_case);
+    }
+
+    /**
+     * Compiles Field2SQL.NUMERIC search field into predicate on numbers.
+     */
+    public static Numeric compileNumeric(String str) throws Exception {
+        return new Numeric(parse(Field2SQL.NUMERIC, str, false));
+    }
+
+    /**
+     * True if value matches the search field. null matches no value, like NULL in SQL.
+     */
+    public boolean test(String value) {
+        return root.test(value, lower_case && value != null ? value.toLowerCase() : value);
+    }
+
+    /**
+     * Numeric search field compiled into predicate, see
+     * {@link FieldPredicate#compileNumeric(String) compileNumeric(...)}. Ranges, comparisons
+     * and lists are matched as by SQL, decimal values by {@link #test(BigDecimal) test(BigDecimal)}.
+     */
+    public static final class Numeric implements LongPredicate {
+        private final Node root;
+
+        private Numeric(Node root) {
+            this.root = root;
+        }
+
+        public boolean test(long value) {
+            return root.test(value, null);
+        }
+
+        /**
+         * True if decimal value matches the search field. null matches no value.
+         */
+        public boolean test(BigDecimal value) {
+            return value == null ? root.test(null, null) : root.test(0, value);
+        }
+    }
+
+    private static final String COLUMN = "value";
+
+    // Parses search field with the same compiler as Field2SQL, which gives leaves with
+    // conditions before they are written as SQL.
+    private static Node parse(int type, String str, boolean lower_case) throws Exception {
+        try {
+            boolean match_numbers = type == Field2SQL.NUMERIC;
+            ColumnFilter filter = lower_case ?
+                NetDBPostFilter.columnFilter("lower("+COLUMN+")") : ColumnFilter.IDENTITY;
+            ConditionBuilder conditions =
+                new ConditionBuilder(COLUMN, COLUMN, match_numbers, type == Field2SQL.DOMAIN_NAME,
+                                     filter, null);
+            conditions.bind_values = true;
+            FieldCompiler compiler = new FieldCompiler(COLUMN, COLUMN, match_numbers, conditions);
+            compiler.limits = Field2SQL.getLimits();
+            return new Node(compiler.parse(str));
+        } catch (Exception ex) {
+            throw Field2SQL.error(ex, type, str, null, false);
+        }
+    }
+
+    // Node of compiled search field. LEAF matches value by one of the matchers.
+    private static final class Node {
+        private final int     kind;     // FieldNode.AND, OR, NOT or LEAF
+        private final Node[]  children;
+        private final int     operator; // ConditionBuilder.EQUALS, LIKE, REGEXP_LIKE or numeric one
+        private final String  value;    // value of EQUALS
+        private final BigDecimal[] decimals; // numbers of numeric condition
+        private final long[]  numbers;  // the same numbers if all of them are 64 bit integers
+        private final Wildcard wildcard; // pattern of LIKE
+        private final Pattern regex;    // pattern of REGEXP_LIKE
+
+        Node(FieldNode node) {
+            this.kind     = node.kind;
+            this.operator = node.operator;
+            if( node.kind != FieldNode.LEAF ) {
+                this.children = new Node[node.children.size()];
+                for( int i = 0; i < children.length; i++ )
+                    children[i] = new Node(node.child(i));
+                this.value    = null;
+                this.decimals = null;
+                this.numbers  = null;
+                this.wildcard = null;
+                this.regex    = null;
+                return;
+            }
+
+            this.children = null;
+            this.value    = node.value;
+            this.decimals = node.quoted ? null : decimals(node.values != null ? node.values :
+                                                          new String[] { node.value });
+            this.numbers  = decimals == null ? null : numbers(decimals);
+            this.wildcard = node.operator == ConditionBuilder.LIKE ? new Wildcard(node.value) : null;
+            this.regex    = node.operator == ConditionBuilder.REGEXP_LIKE ?
+                compileRegex(node.value, node.regex_modes) : null;
+        }
+
+        // value is the value being matched, lower is the same value in lower case if values
+        // are matched in lower case
+        boolean test(String value, String lower) {
+            switch( kind ) {
+            case FieldNode.AND:
+                for( int i = 0; i < children.length; i++ )
+                    if( !children[i].test(value, lower) )
+                        return false;
+                return true;
+
+            case FieldNode.OR:
+                for( int i = 0; i < children.length; i++ )
+                    if( children[i].test(value, lower) )
+                        return true;
+                return false;
+
+            case FieldNode.NOT:
+                return !children[0].test(value, lower);
+
+            default:
+                if( value == null )
+                    return false;
+                switch( operator ) {
+                case ConditionBuilder.EQUALS:
+                    return this.value.equals(lower);
+                case ConditionBuilder.LIKE:
+                    return wildcard.matches(lower);
+                default:
+                    return regex.matcher(value).find();
+                }
+            }
+        }
+
+        // decimal is the value being matched or null if it is the integer value
+        boolean test(long value, BigDecimal decimal) {
+            switch( kind ) {
+            case FieldNode.AND:
+                for( int i = 0; i < children.length; i++ )
+                    if( !children[i].test(value, decimal) )
+                        return false;
+                return true;
+
+            case FieldNode.OR:
+                for( int i = 0; i < children.length; i++ )
+                    if( children[i].test(value, decimal) )
+                        return true;
+                return false;
+
+            case FieldNode.NOT:
+                return !children[0].test(value, decimal);
+
+            default:
+                switch( operator ) {
+                case ConditionBuilder.LESS:
+                    return compare(value, decimal, 0) < 0;
+                case ConditionBuilder.LESS_EQUAL:
+                    return compare(value, decimal, 0) <= 0;
+                case ConditionBuilder.GREATER:
+                    return compare(value, decimal, 0) > 0;
+                case ConditionBuilder.GREATER_EQUAL:
+                    return compare(value, decimal, 0) >= 0;
+                case ConditionBuilder.BETWEEN:
+                    return compare(value, decimal, 0) >= 0 && compare(value, decimal, 1) <= 0;
+                default:
+                    // EQUALS or IN
+                    for( int i = 0; i < decimals.length; i++ )
+                        if( compare(value, decimal, i) == 0 )
+                            return true;
+                    return false;
+                }
+            }
+        }
+
+        // Compares the value being matched with i-th number of the condition.
+        private int compare(long value, BigDecimal decimal, int i) {
+            if( decimal == null && numbers != null )
+                return Long.compare(value, numbers[i]);
+            return ( decimal != null ? decimal : BigDecimal.valueOf(value) ).compareTo(decimals[i]);
+        }
+
+        private static BigDecimal[] decimals(String[] values) {
+            BigDecimal[] decimals = new BigDecimal[values.length];
+            for( int i = 0; i < values.length; i++ )
+                decimals[i] = new BigDecimal(values[i]);
+            return decimals;
+        }
+
+        // Returns numbers as long values or null if any of them is not 64 bit integer.
+        private static long[] numbers(BigDecimal[] decimals) {
+            long[] numbers = new long[decimals.length];
+            for( int i = 0; i < decimals.length; i++ ) {
+                try {
+                    numbers[i] = decimals[i].longValueExact();
+                } catch (ArithmeticException ex) {
+                    return null;
+                }
+            }
+            return numbers;
+        }
+    }
+
+    // Pattern of LIKE condition with '\' escape. Patterns with single '%' at the start or at
+    // the end or both are matched by startsWith(...), endsWith(...) and indexOf(...).
+    private static final class Wildcard {
+        private static final int GENERAL  = 0;
+        private static final int PREFIX   = 1; // 'abc%'
+        private static final int SUFFIX   = 2; // '%abc'
+        private static final int CONTAINS = 3; // '%abc%'
+
+        private static final char ONE = 0; // '_'
+        private static final char ANY = 1; // '%'
+
+        private final int     kind;
+        private final String  literal; // literal part of PREFIX, SUFFIX and CONTAINS
+        private final char[]  chars;   // pattern with escapes removed
+        private final boolean[] wild;  // chars[i] is ONE or ANY
+        private final int     length;  // length of the pattern in chars
+
+        Wildcard(String pattern) {
+            int length = 0;
+            char[]    chars = new char[pattern.length()];
+            boolean[] wild  = new boolean[pattern.length()];
+            int ones = 0;
+            for( int i = 0; i < pattern.length(); i++ ) {
+                char c = pattern.charAt(i);
+                if( c == '\\' && i + 1 < pattern.length() ) {
+                    chars[length++] = pattern.charAt(++i);
+                } else if( c == '%' || c == '_' ) {
+                    // consecutive '%' match the same strings as single one
+                    if( c == '%' && length > 0 && wild[length - 1] && chars[length - 1] == ANY )
+                        continue;
+                    wild[length]    = true;
+                    chars[length++] = c == '%' ? ANY : ONE;
+                    if( c == '_' )
+                        ones++;
+                } else
+                    chars[length++] = c;
+            }
+            this.chars = chars;
+            this.wild  = wild;
+
+            int any = 0;
+            for( int i = 0; i < length; i++ )
+                if( wild[i] && chars[i] == ANY )
+                    any++;
+            boolean first = length > 0 && wild[0] && chars[0] == ANY;
+            boolean last  = length > 1 && wild[length - 1] && chars[length - 1] == ANY;
+
+            int kind = GENERAL;
+            if( ones == 0 && any == 1 && first )
+                kind = SUFFIX;
+            else if( ones == 0 && any == 1 && last )
+                kind = PREFIX;
+            else if( ones == 0 && any == 2 && first && last )
+                kind = CONTAINS;
+            this.kind = kind;
+
+            int from = kind == SUFFIX || kind == CONTAINS ? 1 : 0;
+            int to   = kind == PREFIX || kind == CONTAINS ? length - 1 : length;
+            this.literal = kind == GENERAL ? null : new String(chars, from, to - from);
+            this.length  = length;
+        }
+
+        boolean matches(String value) {
+            switch( kind ) {
+            case PREFIX:
+                return value.startsWith(literal);
+            case SUFFIX:
+                return value.endsWith(literal);
+            case CONTAINS:
+                return value.indexOf(literal) >= 0;
+            default:
+                return matchesGeneral(value);
+            }
+        }
+
+        // Matches pattern going back to the last '%' on mismatch.
+        private boolean matchesGeneral(String value) {
+            int p = 0;
+            int s = 0;
+            int any  = -1; // position of the last '%' in the pattern
+            int mark = 0;  // position in the value matched by that '%' so far
+            while( s < value.length() ) {
+                if( p < length && wild[p] && chars[p] == ANY ) {
+                    any  = p++;
+                    mark = s;
+                } else if( p < length && ( wild[p] || chars[p] == value.charAt(s) ) ) {
+                    p++;
+                    s++;
+                } else if( any >= 0 ) {
+                    p = any + 1;
+                    s = ++mark;
+                } else
+                    return false;
+            }
+            while( p < length && wild[p] && chars[p] == ANY )
+                p++;
+            return p == length;
+        }
+    }
+
+    // Compiles regular expression of REGEXP_LIKE. POSIX character classes become \p{...},
+    // characters special to java.util.regex only are escaped in brackets and '$' matches
+    // at the end of the value only.
+    static Pattern compileRegex(String regex, String regex_modes) {
+        StringBuilder java = new StringBuilder(regex.length() + 8);
+        boolean bracket = false;
+        for( int i = 0; i < regex.length(); i++ ) {
+            char c = regex.charAt(i);
+            if( !bracket ) {
+                if( c == '\\' && i + 1 < regex.length() ) {
+                    java.append(c).append(regex.charAt(++i));
+                } else if( c == '$' ) {
+                    java.append("\\z");
+                } else if( c == '[' ) {
+                    bracket = true;
+                    java.append(c);
+                    // ']' right after '[' or '[^' is literal
+                    if( i + 1 < regex.length() && regex.charAt(i + 1) == '^' )
+                        java.append(regex.charAt(++i));
+                    if( i + 1 < regex.length() && regex.charAt(i + 1) == ']' ) {
+                        java.append("\\]");
+                        i++;
+                    }
+                } else
+                    java.append(c);
+            } else {
+                int end;
+                if( c == '[' && i + 1 < regex.length() && regex.charAt(i + 1) == ':' &&
+                    ( end = regex.indexOf(":]", i + 2) ) > i + 2 ) {
+                    java.append(posixClass(regex.substring(i + 2, end)));
+                    i = end + 1;
+                } else if( c == ']' ) {
+                    bracket = false;
+                    java.append(c);
+                } else if( c == '\\' || c == '[' || c == '&' ) {
+                    java.append('\\').append(c);
+                } else
+                    java.append(c);
+            }
+        }
+
+        int flags = Pattern.UNIX_LINES;
+        if( regex_modes.indexOf('i') >= 0 )
+            flags |= Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+        return Pattern.compile(java.toString(), flags);
+    }
+
+    private static String posixClass(String name) {
+        if( name.equals("xdigit") )
+            return "\\p{XDigit}";
+        return "\\p{"+Character.toUpperCase(name.charAt(0))+name.substring(1)+"}";
+    }
+}
@@ -19,6 +19,23 @@ public class NetDBPostFilter extends PostFilter {
     public static Pattern column1_p = Pattern.compile("^\\s*lower\\((.+)\\)\\s*$");
     public static Pattern column2_p = Pattern.compile("^\\s*(.*)_lc\\s*$");
 
+    // expression of reversed column, in which "%s" stands for the column name, or null
+    final String reversed_column;
+
+    public NetDBPostFilter() {
+        this(null);
+    }
+
+    /**
+     * Filter which also matches suffix searches, e.g. '*.stanford.edu', by prefix of the
+     * reversed values, see ColumnFilter.reversedColumn(...). In reversed_column "%s" is
+     * replaced by the column name, e.g. "REVERSE(%s)", if database has function based index
+     * on REVERSE(lower(name)), or "%s_rev", if name_lc_rev column holds reversed name_lc.
+     */
+    public NetDBPostFilter(String reversed_column) {
+        this.reversed_column = reversed_column;
+    }
+
     /**
      * If column name is lower(column_name) or column_name_lc then field will be
      * transformed to lower case if it is not REGEXP_LIKE expression.
@@ -55,4 +72,64 @@ public class NetDBPostFilter extends PostFilter {
         } else
             return column;
     }
+
+    /**
+     * Returns ColumnFilter equivalent to this filter for a given column, in which
+     * column name is matched against column1_p and column2_p only once.
+     */
+    static ColumnFilter columnFilter(String column) {
+        return columnFilter(column, null);
+    }
+
+    /**
+     * The same with reversed column given by reversed_column expression, if it is not null.
+     */
+    static ColumnFilter columnFilter(String column, String reversed_column) {
+        String reversed = reversed_column == null ? null : reversed_column.replace("%s", column);
+        Matcher column1_m = column1_p.matcher(column);
+        Matcher column2_m = column2_p.matcher(column);
+        if( column1_m.matches() )
+            return new LowerCaseColumn(column1_m.group(1).trim(), reversed);
+        else if( column2_m.matches() )
+            return new LowerCaseColumn(column2_m.group(1).trim(), reversed);
+        else if( reversed != null )
+            return new ReversedColumn(reversed);
+        else
+            return ColumnFilter.IDENTITY;
+    }
+
+    // Column, whose values are reversed by reversed_column expression.
+    private static class ReversedColumn extends ColumnFilter {
+        private final String reversed_column;
+
+        ReversedColumn(String reversed_column) {
+            this.reversed_column = reversed_column;
+        }
+
+        public String reversedColumn(String table, String column) {
+            return reversed_column;
+        }
+    }
+
+    // Column holding lower case values of regex_column.
+    private static final class LowerCaseColumn extends ReversedColumn {
+        private final String regex_column;
+
+        LowerCaseColumn(String regex_column, String reversed_column) {
+            super(reversed_column);
+            this.regex_column = regex_column;
+        }
+
+        public String filterColumn(String expr, String table, String column, String field) {
+            return expr.equals("REGEXP_LIKE") ? regex_column : column;
+        }
+
+        public String filterValue(String expr, String table, String column, String field) {
+            return expr.equals("REGEXP_LIKE") ? field : field.toLowerCase();
+        }
+
+        public String lowerCaseColumn(String table, String column) {
+            return column;
+        }
+    }
 }
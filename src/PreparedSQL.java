@@ -0,0 +1,129 @@
+/************************************************************************
+ *
+ * PreparedSQL.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * SQL generated by {@link Field2SQL#prepareField(int, String, String, String, String, Object) Field2SQL.prepareField(...)}.
+ * Field values are not written into SQL, instead every one of them is replaced with '?'
+ * placeholder and kept in the list of parameters in order of appearance, e.g. input
+ * string<br><br>
+ *
+ *  a or D'Bob*<br><br>
+ *
+ * gives<br><br>
+ *
+ *  &nbsp;&nbsp;&nbsp;&nbsp;( ( select id from Record where name = ? ) UNION ( select id from Record where name LIKE ? ESCAPE '\' ) )<br><br>
+ *
+ * with parameters "a" and "D'Bob%". Searches of the same shape produce the same SQL, so
+ * database can reuse parsed statement, and values never need to be quoted.<br><br>
+ *
+ * Parameters of string fields are instances of String, parameters of numeric fields
+ * are instances of Integer, Long if they do not fit in 32 bits, or BigDecimal if they
+ * have decimal point. Instances of this class are immutable.
+ */
+public class PreparedSQL {
+
+    private String   sql;
+    private Object[] parameters;
+
+    PreparedSQL(String sql, List<Object> parameters) {
+        this.sql        = sql;
+        this.parameters = parameters.toArray();
+    }
+
+    /**
+     * Returns SQL with '?' in place of each of the parameters.
+     */
+    public String getSQL() {
+        return sql;
+    }
+
+    /**
+     * Returns number of parameters.
+     */
+    public int getParameterCount() {
+        return parameters.length;
+    }
+
+    /**
+     * Returns value of the parameter, either String, Integer, Long or BigDecimal.
+     *
+     * @param i  index of the parameter, starting from 0
+     */
+    public Object getParameter(int i) {
+        return parameters[i];
+    }
+
+    /**
+     * Returns SQL type of the parameter, one of java.sql.Types.VARCHAR, INTEGER, BIGINT
+     * or DECIMAL.
+     *
+     * @param i  index of the parameter, starting from 0
+     */
+    public int getParameterType(int i) {
+        if( parameters[i] instanceof Integer )
+            return Types.INTEGER;
+        if( parameters[i] instanceof Long )
+            return Types.BIGINT;
+        if( parameters[i] instanceof java.math.BigDecimal )
+            return Types.DECIMAL;
+        return Types.VARCHAR;
+    }
+
+    /**
+     * Returns unmodifiable list of parameters in order of appearance in SQL.
+     */
+    public List<Object> getParameters() {
+        return Collections.unmodifiableList(Arrays.asList(parameters));
+    }
+
+    /**
+     * Sets parameters of a given statement, which was prepared from SQL of this object
+     * or from statement which embeds it.
+     *
+     * @param statement  statement to set parameters of
+     * @param index      index of the statement parameter which corresponds to the first
+     *                   parameter of this object, starting from 1
+     * @return index of the statement parameter which follows the last parameter of this object
+     */
+    public int bind(PreparedStatement statement, int index) throws SQLException {
+        for( int i = 0; i < parameters.length; i++, index++ ) {
+            if( parameters[i] instanceof Integer )
+                statement.setInt(index, ((Integer)parameters[i]).intValue());
+            else if( parameters[i] instanceof Long )
+                statement.setLong(index, ((Long)parameters[i]).longValue());
+            else if( parameters[i] instanceof java.math.BigDecimal )
+                statement.setBigDecimal(index, (java.math.BigDecimal)parameters[i]);
+            else
+                statement.setString(index, (String)parameters[i]);
+        }
+        return index;
+    }
+
+    /**
+     * Returns SQL followed by the list of parameters. Intended for logging.
+     */
+    public String toString() {
+        StringBuilder str = new StringBuilder(sql.length() + parameters.length * 8);
+        str.append(sql).append(" [");
+        for( int i = 0; i < parameters.length; i++ ) {
+            if( i > 0 )
+                str.append(", ");
+            if( parameters[i] instanceof Number )
+                str.append(parameters[i]);
+            else
+                str.append('\'').append(parameters[i]).append('\'');
+        }
+        return str.append(']').toString();
+    }
+}
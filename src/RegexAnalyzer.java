@@ -0,0 +1,151 @@
+/************************************************************************
+ *
+ * RegexAnalyzer.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+/**
+ * Finds literal part of the regular expression, which lets REGEXP_LIKE condition be
+ * replaced with equivalent '=' or LIKE condition, or be preceded by LIKE condition, which
+ * can use index on the column.
+ *
+ *   ^abc$          ->  EQUALS     'abc'
+ *   ^abc, ^abc.*   ->  PREFIX     LIKE 'abc%'
+ *   abc            ->  CONTAINS   LIKE '%abc%'
+ *   abc$           ->  SUFFIX     LIKE '%abc'
+ *   ^abc[0-9]+     ->  PREFILTER  LIKE 'abc%' AND REGEXP_LIKE(...)
+ *
+ * Regular expression is analyzed in the form in which it is written into SQL, i.e. with
+ * quotes doubled unless it is a bind parameter. Literal characters are those which are not
+ * special in POSIX extended regular expressions and special characters escaped with '\'.
+ * Anything which is not understood ends the literal part, so regular expressions with
+ * alternation, e.g. ^a|b, are never rewritten.
+ */
+final class RegexAnalyzer {
+
+    static final int NONE      = 0;
+    static final int EQUALS    = 1;
+    static final int PREFIX    = 2;
+    static final int CONTAINS  = 3;
+    static final int SUFFIX    = 4;
+    static final int PREFILTER = 5;
+
+    int    kind;       // one of the above
+    String literal;    // literal part, quotes doubled as in the regular expression
+
+    private static final String SPECIAL = ".[]()*+?{}|^$\\";
+
+    /**
+     * Analyzes regular expression. Quotes in it are doubled if doubled_quotes is true.
+     */
+    RegexAnalyzer(String regex, boolean doubled_quotes) {
+        this.kind = NONE;
+        if( hasAlternation(regex) )
+            return;
+
+        int length = regex.length();
+        int i = 0;
+        boolean anchored = length > 0 && regex.charAt(0) == '^';
+        if( anchored )
+            i++;
+
+        StringBuilder literal = new StringBuilder();
+        int last_length = 0;  // length of the last literal character in literal
+        while( i < length ) {
+            char c = regex.charAt(i);
+            if( c == '\\' ) {
+                if( i + 1 >= length || Character.isLetterOrDigit(regex.charAt(i + 1)) )
+                    break;
+                literal.append(regex.charAt(i + 1));
+                last_length = 1;
+                i += 2;
+            } else if( c == '\'' && doubled_quotes && i + 1 < length && regex.charAt(i + 1) == '\'' ) {
+                literal.append("''");
+                last_length = 2;
+                i += 2;
+            } else if( SPECIAL.indexOf(c) >= 0 ) {
+                break;
+            } else {
+                literal.append(c);
+                last_length = 1;
+                i++;
+            }
+        }
+        String rest = regex.substring(i);
+
+        // quantifier applies to the last literal character only
+        if( rest.length() > 0 && "*?{".indexOf(rest.charAt(0)) >= 0 && last_length > 0 )
+            literal.setLength(literal.length() - last_length);
+
+        if( literal.length() == 0 )
+            return;
+        this.literal = literal.toString();
+
+        if( anchored ) {
+            if( rest.equals("") || rest.equals(".*") )
+                kind = PREFIX;
+            else if( rest.equals("$") )
+                kind = EQUALS;
+            else
+                kind = PREFILTER;
+        } else {
+            if( rest.equals("") )
+                kind = CONTAINS;
+            else if( rest.equals("$") )
+                kind = SUFFIX;
+        }
+    }
+
+    /**
+     * Returns literal part as value of LIKE condition with a given kind of wildcards,
+     * escaping LIKE wildcards with '\'.
+     */
+    String likeValue() {
+        StringBuilder value = new StringBuilder(literal.length() + 4);
+        if( kind == CONTAINS || kind == SUFFIX )
+            value.append('%');
+        for( int i = 0; i < literal.length(); i++ ) {
+            char c = literal.charAt(i);
+            if( c == '\\' || c == '%' || c == '_' )
+                value.append('\\');
+            value.append(c);
+        }
+        if( kind == PREFIX || kind == CONTAINS || kind == PREFILTER )
+            value.append('%');
+        return value.toString();
+    }
+
+    /**
+     * True if literal part matches the same strings regardless of case.
+     */
+    boolean caseless() {
+        return literal.toLowerCase().equals(literal.toUpperCase());
+    }
+
+    // True if regular expression has '|' outside of brackets.
+    private static boolean hasAlternation(String regex) {
+        boolean bracket = false;
+        for( int i = 0; i < regex.length(); i++ ) {
+            char c = regex.charAt(i);
+            if( c == '\\' && !bracket )
+                i++;
+            else if( c == '[' && !bracket ) {
+                bracket = true;
+                // ']' right after '[' or '[^' is literal
+                if( i + 1 < regex.length() && regex.charAt(i + 1) == '^' )
+                    i++;
+                if( i + 1 < regex.length() && regex.charAt(i + 1) == ']' )
+                    i++;
+            } else if( c == ']' && bracket )
+                bracket = false;
+            else if( c == '|' && !bracket )
+                return true;
+        }
+        return false;
+    }
+}
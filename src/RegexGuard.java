@@ -0,0 +1,582 @@
+/************************************************************************
+ *
+ * RegexGuard.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+import java.util.*;
+
+/**
+ * Checks regular expression of the /.../ token before it is written into SQL. It must be
+ * POSIX extended regular expression as supported by Oracle REGEXP_LIKE, i.e. brackets
+ * and bracket expressions must be balanced, character classes known, quantifiers must
+ * follow something to repeat, only bounds, e.g. a+{2} or a{2}{3}, may follow another
+ * quantifier, and back references must refer to a group.<br><br>
+ *
+ * Database matches regular expressions by backtracking, so some of them take time
+ * exponential in the length of the value, which is tried for every row. Cost of the
+ * regular expression estimates how the time grows with the length of the value:
+ *
+ *   abc, ^a[0-9]+$, (ab+)+        1   linear
+ *   .*a.*, a+a+, (a)\1            2   every pair of positions, loops matching the same
+ *   .*a.*b.*                      3   characters one after another, back references
+ *   (a+){5}                       5   bounded repetition of ambiguous group
+ *   (a|aa)+, (\w+\s?)+, (.*a)+    EXPONENTIAL, loop over group, which can split the
+ *                                 same characters between iterations in several ways
+ *
+ * Before cost is estimated, constructs which have cheaper equivalent are rewritten, unless
+ * regular expression has back references, which depend on numbering of groups:
+ *
+ *   (a+)+, (a*)+, (a+)*, (a?)*  ->  a+, a*, a*, a*
+ *   .*.*, a*a+, a+a+            ->  .*, a+, aa+
+ */
+final class RegexGuard {
+
+    static final int EXPONENTIAL = Integer.MAX_VALUE;
+
+    private static final int CHARS = 129; // ASCII characters and one for all others
+    private static final int OTHER = 128;
+
+    // kinds of nodes
+    private static final int ATOM          = 0; // character, '.', escape or bracket expression
+    private static final int ANCHOR        = 1; // '^', '$', '\A', '\Z' or '\z'
+    private static final int GROUP         = 2;
+    private static final int ALTERNATION   = 3;
+    private static final int SEQUENCE      = 4;
+    private static final int REPEAT        = 5;
+    private static final int BACKREFERENCE = 6;
+
+    private static final String[] CLASSES = {
+        "alnum", "alpha", "blank", "cntrl", "digit", "graph", "lower", "print", "punct",
+        "space", "upper", "xdigit"
+    };
+
+    private static final class Node {
+        final int kind;
+        final int start;  // offsets of the node in the regular expression
+        int       end;
+        final ArrayList<Node> children = new ArrayList<Node>(2);
+        final BitSet first = new BitSet(CHARS); // characters which can start the match
+        final BitSet last  = new BitSet(CHARS); // characters which can end the match
+        final BitSet chars = new BitSet(CHARS); // characters which can be matched
+        boolean nullable;     // matches empty string
+        int     min, max;     // of REPEAT, max is -1 if unbounded
+        boolean greedy = true;
+        int     degree;       // cost, 0 if nothing is repeated
+
+        Node(int kind, int start) {
+            this.kind  = kind;
+            this.start = start;
+        }
+
+        Node child(int i) {
+            return children.get(i);
+        }
+
+        // True for REPEAT which can match its body any number of times.
+        boolean isLoop() {
+            return kind == REPEAT && max < 0;
+        }
+    }
+
+    private final String  regex;
+    private final int     offset;   // offset of the regular expression in the source string
+    private final boolean caseless;
+    private int     position;
+    private ArrayList<Node> groups = new ArrayList<Node>(); // opened so far, null until closed
+    private boolean backreferences;
+
+    private RegexGuard(String regex, int offset, boolean caseless) {
+        this.regex    = regex;
+        this.offset   = offset;
+        this.caseless = caseless;
+    }
+
+    /**
+     * Checks the regular expression of /.../ or /.../i token found between start and end
+     * offsets of the source string. Returns regular expression rewritten into cheaper
+     * equivalent, as written between slashes, or null if it is not rewritten. Throws
+     * SQLizerException of SYNTAX category if it is not valid and of LIMIT category if its
+     * cost is over a given maximum. Nothing is checked if the maximum is 0.
+     */
+    static String check(String src, int start, int end, int max_cost) throws SQLizerException {
+        if( max_cost <= 0 )
+            return null;
+        boolean caseless = src.charAt(end - 1) == 'i';
+        int from = start + 1;
+        int to   = caseless ? end - 2 : end - 1;
+
+        String regex = src.substring(from, to);
+        String rewritten = null;
+        Node root;
+        while( true ) {
+            RegexGuard guard = new RegexGuard(regex, from, caseless);
+            root = guard.parse();
+            if( guard.backreferences )
+                break;
+            String cheaper = guard.rewrite(root);
+            if( cheaper.equals(regex) )
+                break;
+            regex = rewritten = cheaper;
+        }
+
+        int cost = Math.max(root.degree, 1);
+        if( cost > max_cost )
+            throw new SQLizerException(cost == EXPONENTIAL ?
+                                       "regular expression may take exponential time" :
+                                       "regular expression costs "+cost+", more than "+max_cost,
+                                       start, src.substring(start, end), SQLizerMetrics.LIMIT);
+        return rewritten;
+    }
+
+    private Node parse() throws SQLizerException {
+        position = 0;
+        Node root = alternation();
+        if( position < regex.length() )
+            throw error("unmatched ')'");
+        return root;
+    }
+
+    // alternation : sequence ( '|' sequence )*
+    private Node alternation() throws SQLizerException {
+        Node first = sequence();
+        if( position >= regex.length() || regex.charAt(position) != '|' )
+            return first;
+
+        Node node = new Node(ALTERNATION, first.start);
+        node.children.add(first);
+        while( position < regex.length() && regex.charAt(position) == '|' ) {
+            position++;
+            node.children.add(sequence());
+        }
+        for( int i = 0; i < node.children.size(); i++ ) {
+            Node alternative = node.child(i);
+            node.first.or(alternative.first);
+            node.last.or(alternative.last);
+            node.chars.or(alternative.chars);
+            node.nullable |= alternative.nullable;
+            node.degree = Math.max(node.degree, alternative.degree);
+        }
+        node.end = position;
+        return node;
+    }
+
+    // sequence : ( atom quantifier* )*
+    private Node sequence() throws SQLizerException {
+        Node node = new Node(SEQUENCE, position);
+        node.nullable = true;
+        while( position < regex.length() && regex.charAt(position) != '|' &&
+               regex.charAt(position) != ')' )
+        {
+            Node item = atom();
+            while( position < regex.length() && isQuantifier() )
+                item = repeat(item);
+            node.children.add(item);
+        }
+        node.end = position;
+
+        // loops one after another, which can match the same characters, try every split
+        // of the value between them
+        int chain = 0;
+        BitSet chain_chars = new BitSet(CHARS);
+        for( int i = 0; i < node.children.size(); i++ ) {
+            Node item = node.child(i);
+            if( node.nullable )
+                node.first.or(item.first);
+            node.nullable &= item.nullable;
+            node.chars.or(item.chars);
+            if( item.nullable )
+                node.last.or(item.last);
+            else {
+                node.last.clear();
+                node.last.or(item.last);
+            }
+
+            Node loop = item;
+            while( loop.kind == GROUP )
+                loop = loop.child(0);
+            if( loop.isLoop() ) {
+                chain = chain > 0 && chain_chars.intersects(item.chars) ? chain + 1 : 1;
+                chain_chars.clear();
+                chain_chars.or(item.chars);
+            } else if( !subset(item.chars, chain_chars) )
+                chain = 0;
+            node.degree = Math.max(node.degree, Math.max(chain, item.degree));
+        }
+        return node;
+    }
+
+    // atom : '(' alternation ')' | '[' bracket ']' | '\' char | '.' | '^' | '$' | char
+    private Node atom() throws SQLizerException {
+        char c = regex.charAt(position);
+        if( isQuantifier() )
+            throw error("nothing to repeat");
+
+        if( c == '(' ) {
+            Node node = new Node(GROUP, position++);
+            int group = groups.size();
+            groups.add(null);
+            Node body = alternation();
+            if( position >= regex.length() )
+                throw error(node.start, "unmatched '('");
+            groups.set(group, node);
+            node.end = ++position;
+            node.children.add(body);
+            node.first.or(body.first);
+            node.last.or(body.last);
+            node.chars.or(body.chars);
+            node.nullable = body.nullable;
+            node.degree   = body.degree;
+            return node;
+        }
+
+        if( c == '^' || c == '$' ) {
+            Node node = new Node(ANCHOR, position);
+            node.end = ++position;
+            node.nullable = true;
+            return node;
+        }
+
+        Node node = new Node(ATOM, position);
+        if( c == '.' ) {
+            node.chars.set(0, CHARS);
+            position++;
+        } else if( c == '[' )
+            bracket(node.chars);
+        else if( c == '\\' ) {
+            if( position + 1 >= regex.length() )
+                throw error("trailing '\\'");
+            char e = regex.charAt(position + 1);
+            position += 2;
+            if( e >= '1' && e <= '9' ) {
+                // matches the same characters as the group, which must be closed
+                Node group = e - '1' < groups.size() ? groups.get(e - '1') : null;
+                if( group == null )
+                    throw error(node.start, "invalid back reference");
+                backreferences = true;
+                Node reference = new Node(BACKREFERENCE, node.start);
+                reference.end = position;
+                reference.first.or(group.first);
+                reference.last.or(group.last);
+                reference.chars.or(group.chars);
+                reference.nullable = group.nullable;
+                reference.degree   = Math.max(group.degree, 2);
+                return reference;
+            }
+            if( e == 'A' || e == 'Z' || e == 'z' ) {
+                Node anchor = new Node(ANCHOR, node.start);
+                anchor.end = position;
+                anchor.nullable = true;
+                return anchor;
+            }
+            if( !escapeClass(e, node.chars) )
+                add(node.chars, e);
+        } else {
+            add(node.chars, c);
+            position++;
+        }
+        node.end = position;
+        node.first.or(node.chars);
+        node.last.or(node.chars);
+        return node;
+    }
+
+    // Adds characters of the bracket expression, which starts at the current position.
+    private void bracket(BitSet chars) throws SQLizerException {
+        int start = position++;
+        boolean negated = position < regex.length() && regex.charAt(position) == '^';
+        if( negated )
+            position++;
+        BitSet set = new BitSet(CHARS);
+        boolean first = true;
+        while( true ) {
+            if( position >= regex.length() )
+                throw error(start, "unmatched '['");
+            char c = regex.charAt(position);
+            if( c == ']' && !first ) {
+                position++;
+                break;
+            }
+            first = false;
+
+            int close;
+            if( c == '[' && position + 1 < regex.length() &&
+                ":=.".indexOf(regex.charAt(position + 1)) >= 0 &&
+                ( close = regex.indexOf(regex.charAt(position + 1)+"]", position + 2) ) >= 0 )
+            {
+                String name = regex.substring(position + 2, close);
+                if( regex.charAt(position + 1) == ':' ) {
+                    if( Arrays.asList(CLASSES).indexOf(name) < 0 )
+                        throw error("unknown character class [:"+name+":]");
+                    posixClass(name, set);
+                } else {
+                    for( int i = 0; i < name.length(); i++ )
+                        add(set, name.charAt(i));
+                }
+                position = close + 2;
+            } else if( position + 2 < regex.length() && regex.charAt(position + 1) == '-' &&
+                       regex.charAt(position + 2) != ']' )
+            {
+                char to = regex.charAt(position + 2);
+                if( to < c )
+                    throw error("invalid range "+c+"-"+to);
+                for( int i = c; i <= to && i < OTHER; i++ )
+                    add(set, (char)i);
+                if( to >= OTHER )
+                    set.set(OTHER);
+                position += 3;
+            } else {
+                add(set, c);
+                position++;
+            }
+        }
+        if( negated )
+            set.flip(0, CHARS);
+        chars.or(set);
+    }
+
+    // Applies quantifier at the current position to a given node.
+    private Node repeat(Node body) throws SQLizerException {
+        if( body.kind == ANCHOR )
+            throw error("nothing to repeat");
+        Node node = new Node(REPEAT, body.start);
+        char c = regex.charAt(position);
+        if( c == '{' ) {
+            int close = regex.indexOf('}', position);
+            String[] bounds = regex.substring(position + 1, close).split(",", -1);
+            node.min = Integer.parseInt(bounds[0]);
+            node.max = bounds.length == 1 ? node.min :
+                ( bounds[1].length() == 0 ? -1 : Integer.parseInt(bounds[1]) );
+            if( node.max >= 0 && node.max < node.min )
+                throw error("invalid repetition "+regex.substring(position, close + 1));
+            position = close + 1;
+        } else {
+            node.min = c == '+' ? 1 : 0;
+            node.max = c == '?' ? 1 : -1;
+            position++;
+        }
+        if( position < regex.length() && regex.charAt(position) == '?' ) {
+            node.greedy = false;
+            position++;
+        }
+        // bounds may repeat what is already repeated, e.g. a{2}{3}
+        if( position < regex.length() && isQuantifier() && regex.charAt(position) != '{' )
+            throw error("nothing to repeat");
+        node.end = position;
+
+        node.children.add(body);
+        node.first.or(body.first);
+        node.last.or(body.last);
+        node.chars.or(body.chars);
+        node.nullable = node.min == 0 || body.nullable;
+        node.degree   = body.degree;
+        if( node.max != 0 && node.max != 1 && isAmbiguous(body) )
+            node.degree = node.max < 0 ? EXPONENTIAL :
+                (int)Math.min(EXPONENTIAL, (long)Math.max(body.degree, 1) * node.max);
+        return node;
+    }
+
+    // True if a given body of the loop can match the same string as several iterations
+    // in more than one way: it matches empty string, it ends with a loop over characters,
+    // which can start the next iteration, or starts with a loop over characters, which can
+    // end the previous one, or it starts with alternatives, which can start the same way.
+    private static boolean isAmbiguous(Node body) {
+        if( body.nullable )
+            return true;
+        ArrayList<Node> edges = new ArrayList<Node>();
+        edge(body, true, edges);
+        for( int i = 0; i < edges.size(); i++ ) {
+            Node edge = edges.get(i);
+            if( edge.kind != ALTERNATION )
+                continue;
+            for( int a = 0; a < edge.children.size(); a++ )
+                for( int b = a + 1; b < edge.children.size(); b++ )
+                    if( edge.child(a).first.intersects(edge.child(b).first) )
+                        return true;
+        }
+        for( int i = 0; i < edges.size(); i++ )
+            if( edges.get(i).isLoop() && edges.get(i).chars.intersects(body.last) )
+                return true;
+        edges.clear();
+        edge(body, false, edges);
+        for( int i = 0; i < edges.size(); i++ )
+            if( edges.get(i).isLoop() && edges.get(i).chars.intersects(body.first) )
+                return true;
+        return false;
+    }
+
+    // Adds nodes, which can match the first (head is true) or the last characters of
+    // a given node.
+    private static void edge(Node node, boolean head, ArrayList<Node> edges) {
+        edges.add(node);
+        switch( node.kind ) {
+        case GROUP:
+        case ALTERNATION:
+            for( int i = 0; i < node.children.size(); i++ )
+                edge(node.child(i), head, edges);
+            break;
+
+        case SEQUENCE:
+            int count = node.children.size();
+            for( int i = 0; i < count; i++ ) {
+                Node item = node.child(head ? i : count - 1 - i);
+                edge(item, head, edges);
+                if( !item.nullable )
+                    break;
+            }
+            break;
+        }
+    }
+
+    // Writes the regular expression replacing constructs, which have cheaper equivalent.
+    private String rewrite(Node node) {
+        StringBuilder str = new StringBuilder();
+        if( node.kind == REPEAT && isSimple(node) ) {
+            Node inner = node.child(0);
+            while( inner.kind == GROUP || ( inner.kind == SEQUENCE && inner.children.size() == 1 ) )
+                inner = inner.child(0);
+            if( inner != node.child(0) && inner.kind == REPEAT && isSimple(inner) ) {
+                char q = regex.charAt(node.end - 1), p = regex.charAt(inner.end - 1);
+                return rewrite(inner.child(0))+( p == q && q != '*' ? q : '*' );
+            }
+        }
+
+        int at = node.start;
+        for( int i = 0; i < node.children.size(); i++ ) {
+            Node child = node.child(i);
+            str.append(regex, at, child.start);
+            at = child.end;
+            if( node.kind == SEQUENCE && i + 1 < node.children.size() ) {
+                Node next = node.child(i + 1);
+                if( isSimple(child) && isSimple(next) &&
+                    child.child(0).kind == ATOM && next.child(0).kind == ATOM &&
+                    regex.charAt(child.end - 1) != '?' && regex.charAt(next.end - 1) != '?' &&
+                    text(child.child(0)).equals(text(next.child(0))) )
+                {
+                    // X*X* -> X*, X*X+ and X+X* -> X+, X+X+ -> XX+
+                    boolean both = regex.charAt(child.end - 1) == '+' && regex.charAt(next.end - 1) == '+';
+                    if( both )
+                        str.append(text(child.child(0)));
+                    char q = regex.charAt(child.end - 1) == '+' || regex.charAt(next.end - 1) == '+' ? '+' : '*';
+                    str.append(text(child.child(0))).append(q);
+                    at = next.end;
+                    i++;
+                    continue;
+                }
+            }
+            str.append(rewrite(child));
+        }
+        str.append(regex, at, node.end);
+        return str.toString();
+    }
+
+    // True for greedy '*', '+' or '?' quantifier.
+    private boolean isSimple(Node node) {
+        return node.kind == REPEAT && node.greedy && node.end == node.child(0).end + 1 &&
+            "*+?".indexOf(regex.charAt(node.end - 1)) >= 0;
+    }
+
+    private String text(Node node) {
+        return regex.substring(node.start, node.end);
+    }
+
+    // True if the current character starts quantifier.
+    private boolean isQuantifier() {
+        char c = regex.charAt(position);
+        if( c == '*' || c == '+' || c == '?' )
+            return true;
+        if( c != '{' )
+            return false;
+        // '{' not followed by bounds is literal
+        int i = position + 1;
+        int digits = 0;
+        while( i < regex.length() && Character.isDigit(regex.charAt(i)) ) {
+            i++;
+            digits++;
+        }
+        if( digits == 0 || i >= regex.length() )
+            return false;
+        if( regex.charAt(i) == ',' ) {
+            i++;
+            while( i < regex.length() && Character.isDigit(regex.charAt(i)) )
+                i++;
+        }
+        return i < regex.length() && regex.charAt(i) == '}' && i - position <= 10;
+    }
+
+    // Adds characters of \d, \D, \w, \W, \s or \S, returns false for any other escape.
+    private static boolean escapeClass(char e, BitSet chars) {
+        BitSet set = new BitSet(CHARS);
+        char lower = Character.toLowerCase(e);
+        if( lower == 'd' )
+            posixClass("digit", set);
+        else if( lower == 'w' ) {
+            posixClass("alnum", set);
+            set.set('_');
+        } else if( lower == 's' )
+            posixClass("space", set);
+        else
+            return false;
+        if( e != lower )
+            set.flip(0, CHARS);
+        chars.or(set);
+        return true;
+    }
+
+    private static void posixClass(String name, BitSet set) {
+        for( int c = 0; c < OTHER; c++ ) {
+            boolean member;
+            if(      name.equals("alnum") )  member = Character.isLetterOrDigit(c);
+            else if( name.equals("alpha") )  member = Character.isLetter(c);
+            else if( name.equals("blank") )  member = c == ' ' || c == '\t';
+            else if( name.equals("cntrl") )  member = c < 32 || c == 127;
+            else if( name.equals("digit") )  member = c >= '0' && c <= '9';
+            else if( name.equals("graph") )  member = c > 32 && c < 127;
+            else if( name.equals("lower") )  member = c >= 'a' && c <= 'z';
+            else if( name.equals("print") )  member = c >= 32 && c < 127;
+            else if( name.equals("punct") )  member = c > 32 && c < 127 && !Character.isLetterOrDigit(c);
+            else if( name.equals("space") )  member = c == ' ' || ( c >= 9 && c <= 13 );
+            else if( name.equals("upper") )  member = c >= 'A' && c <= 'Z';
+            else                             member = Character.digit(c, 16) >= 0;
+            if( member )
+                set.set(c);
+        }
+        if( !name.equals("blank") && !name.equals("cntrl") && !name.equals("digit") &&
+            !name.equals("space") && !name.equals("xdigit") )
+            set.set(OTHER);
+    }
+
+    private void add(BitSet set, char c) {
+        if( c >= OTHER ) {
+            set.set(OTHER);
+            return;
+        }
+        set.set(c);
+        if( caseless && Character.isLetter(c) ) {
+            set.set(Character.toLowerCase(c));
+            set.set(Character.toUpperCase(c));
+        }
+    }
+
+    private static boolean subset(BitSet set, BitSet of) {
+        BitSet rest = (BitSet)set.clone();
+        rest.andNot(of);
+        return rest.isEmpty();
+    }
+
+    private SQLizerException error(String reason) {
+        return error(position, reason);
+    }
+
+    // Error at a given offset of the regular expression.
+    private SQLizerException error(int at, String reason) {
+        String token = at < regex.length() ? regex.substring(at, at + 1) : null;
+        return new SQLizerException("invalid regular expression, "+reason, offset + at, token,
+                                    SQLizerMetrics.SYNTAX);
+    }
+}
@@ -0,0 +1,99 @@
+/************************************************************************
+ *
+ * SQLBuffer.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Buffer in which SQL is generated. Values are either written into SQL as literals or,
+ * when bind parameters are used, replaced with '?' and collected in order of appearance.
+ * Constructs which differ between databases are written by SQLDialect of the buffer.
+ */
+final class SQLBuffer {
+
+    private StringBuilder     sql;
+    private ArrayList<Object> parameters;  // null if values are written as literals
+    private SQLDialect        dialect;
+
+    SQLBuffer(int capacity, boolean bind) {
+        this(capacity, bind, SQLDialect.ORACLE);
+    }
+
+    SQLBuffer(int capacity, boolean bind, SQLDialect dialect) {
+        this.sql     = new StringBuilder(capacity);
+        this.dialect = dialect;
+        if( bind )
+            this.parameters = new ArrayList<Object>();
+    }
+
+    SQLDialect dialect() {
+        return dialect;
+    }
+
+    SQLBuffer append(String str) {
+        sql.append(str);
+        return this;
+    }
+
+    SQLBuffer append(char c) {
+        sql.append(c);
+        return this;
+    }
+
+    /**
+     * Appends value of the condition. Quoted values are strings, others are numbers, which
+     * are bound as Integer, Long or, if they have decimal point, BigDecimal. String values
+     * must not have quotes doubled when bind parameters are used.
+     */
+    SQLBuffer appendValue(String value, boolean quoted) {
+        if( parameters != null ) {
+            sql.append('?');
+            parameters.add(quoted ? (Object)value : number(value));
+        } else if( quoted )
+            sql.append('\'').append(value).append('\'');
+        else
+            sql.append(value);
+        return this;
+    }
+
+    private static Object number(String value) {
+        if( value.indexOf('.') >= 0 )
+            return new BigDecimal(value);
+        long number = Long.parseLong(value);
+        if( number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE )
+            return Integer.valueOf((int)number);
+        return Long.valueOf(number);
+    }
+
+    boolean isBinding() {
+        return parameters != null;
+    }
+
+    List<Object> parameters() {
+        return parameters;
+    }
+
+    int length() {
+        return sql.length();
+    }
+
+    void insert(int offset, CharSequence str) {
+        sql.insert(offset, str);
+    }
+
+    void setLength(int length) {
+        sql.setLength(length);
+    }
+
+    public String toString() {
+        return sql.toString();
+    }
+}
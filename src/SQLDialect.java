@@ -0,0 +1,95 @@
+/************************************************************************
+ *
+ * SQLDialect.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+/**
+ * SQL dialect of the generated SQL. Dialects differ only in constructs which are not
+ * common to all databases:<br><br>
+ *
+ * <table>
+ * <tr><td></td><td>ORACLE</td><td>POSTGRESQL</td><td>H2</td></tr>
+ * <tr><td>set difference</td><td>MINUS</td><td>EXCEPT or NOT EXISTS</td><td>EXCEPT or NOT EXISTS</td></tr>
+ * <tr><td>regex</td><td>REGEXP_LIKE(c, re, 'i')</td><td>c ~ re, c ~* re</td><td>REGEXP_LIKE(c, re, 'i')</td></tr>
+ * </table><br>
+ *
+ * PostgreSQL and H2 dialects write difference of two selects from the same table, which
+ * the OPTIMIZING_ENGINE produces for e.g. 'a and not b', as anti-join<br><br>
+ *
+ *  &nbsp;&nbsp;&nbsp;&nbsp;select distinct id from table t where a AND NOT EXISTS ( select 1 from table where id = t.id AND ( b ) )<br><br>
+ *
+ * which is executed as a single anti-join rather than two scans and a sort. Intersection
+ * of such selects, e.g. 'a and b', is written the same way with 'EXISTS' semi-joins.
+ */
+public class SQLDialect {
+
+    /**
+     * Oracle 10 and higher. This is the default.
+     */
+    public static final SQLDialect ORACLE = new SQLDialect("Oracle", " MINUS ", false, false);
+
+    /**
+     * PostgreSQL 8.4 and higher.
+     */
+    public static final SQLDialect POSTGRESQL = new SQLDialect("PostgreSQL", " EXCEPT ", true, true);
+
+    /**
+     * H2 1.4 and higher, mostly for testing against in-memory database.
+     */
+    public static final SQLDialect H2 = new SQLDialect("H2", " EXCEPT ", false, true);
+
+    private final String  name;
+    private final String  except;        // set difference operator
+    private final boolean regex_operator; // regex is matched by ~ and ~* operators
+    private final boolean anti_join;     // difference of conditions is written as NOT EXISTS,
+                                         // intersection as EXISTS
+
+    private SQLDialect(String name, String except, boolean regex_operator, boolean anti_join) {
+        this.name           = name;
+        this.except         = except;
+        this.regex_operator = regex_operator;
+        this.anti_join      = anti_join;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * Set difference operator, including surrounding spaces.
+     */
+    String except() {
+        return except;
+    }
+
+    /**
+     * True if difference of conditions on the same table should be written as anti-join.
+     */
+    boolean antiJoin() {
+        return anti_join;
+    }
+
+    /**
+     * Appends regex match condition.
+     */
+    void appendRegex(SQLBuffer sql, String column, String value, boolean quoted, String regex_modes) {
+        if( regex_operator ) {
+            sql.append(column).append(regex_modes.indexOf('i') >= 0 ? " ~* " : " ~ ");
+            sql.appendValue(value, quoted);
+        } else {
+            sql.append("REGEXP_LIKE(").append(column).append(", ");
+            sql.appendValue(value, quoted);
+            sql.append(", '").append(regex_modes).append("')");
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/************************************************************************
+ *
+ * SQLizerBatch.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+
+/**
+ * Compiles large numbers of inputs of the same search field in parallel, e.g. when saved
+ * searches are validated or precompiled<br><br>
+ *
+ *  &nbsp;&nbsp;&nbsp;&nbsp;List&lt;SQLizerResult&gt; results = new SQLizerBatch(name_engine).parse(saved_searches);<br><br>
+ *
+ * Inputs are read in chunks, of CHUNK_SIZE by default, which are split between threads of
+ * fork-join pool. Results are returned in order of inputs, one per input, and invalid
+ * inputs give results with the error rather than failing the whole batch. Instances are
+ * thread safe.
+ */
+public class SQLizerBatch {
+
+    /**
+     * Default number of inputs read before they are compiled. Bounds memory used by
+     * {@link #parse(BufferedReader, Writer) parse(reader, writer)}.
+     */
+    public static final int CHUNK_SIZE = 4096;
+
+    /**
+     * Default size of the tasks: chunks are split between threads until they are no longer
+     * than this.
+     */
+    public static final int TASK_SIZE = 64;
+
+    private final SQLizerEngine engine;
+    private final ForkJoinPool  pool;
+    private final int           chunk_size;
+    private final int           task_size;
+
+    /**
+     * Batch compiling inputs by a given engine in common fork-join pool.
+     */
+    public SQLizerBatch(SQLizerEngine engine) {
+        this(engine, ForkJoinPool.commonPool());
+    }
+
+    public SQLizerBatch(SQLizerEngine engine, ForkJoinPool pool) {
+        this(engine, pool, CHUNK_SIZE, TASK_SIZE);
+    }
+
+    /**
+     * @param chunk_size  number of inputs read before they are compiled
+     * @param task_size   chunks are split between threads until they are no longer than this
+     */
+    public SQLizerBatch(SQLizerEngine engine, ForkJoinPool pool, int chunk_size, int task_size) {
+        if( chunk_size < 1 || task_size < 1 )
+            throw new IllegalArgumentException("chunk and task size must be positive");
+        this.engine     = engine;
+        this.pool       = pool;
+        this.chunk_size = chunk_size;
+        this.task_size  = task_size;
+    }
+
+    /**
+     * Compiles inputs by {@link SQLizerEngine#parse(String) SQLizerEngine.parse(...)}.
+     */
+    public List<SQLizerResult> parse(Iterable<String> inputs) {
+        return compile(inputs.iterator(), false);
+    }
+
+    public List<SQLizerResult> parse(Stream<String> inputs) {
+        return compile(inputs.iterator(), false);
+    }
+
+    /**
+     * Compiles inputs by {@link SQLizerEngine#prepare(String) SQLizerEngine.prepare(...)}.
+     */
+    public List<SQLizerResult> prepare(Iterable<String> inputs) {
+        return compile(inputs.iterator(), true);
+    }
+
+    public List<SQLizerResult> prepare(Stream<String> inputs) {
+        return compile(inputs.iterator(), true);
+    }
+
+    /**
+     * Compiles every line read from reader and writes line with the result for each of
+     * them, see {@link SQLizerResult#toString() SQLizerResult.toString()}. Only a chunk of
+     * lines is kept in memory at a time. Returns number of invalid lines.
+     */
+    public int parse(BufferedReader reader, Writer writer) throws IOException {
+        String[] chunk = new String[chunk_size];
+        int errors = 0;
+        boolean done = false;
+        while( !done ) {
+            int size = 0;
+            String line = null;
+            while( size < chunk.length && ( line = reader.readLine() ) != null )
+                chunk[size++] = line.trim();
+            done = line == null;
+
+            SQLizerResult[] results = compile(chunk, size, false);
+            for( int i = 0; i < size; i++ ) {
+                if( !results[i].isValid() )
+                    errors++;
+                writer.write(results[i].toString());
+                writer.write('\n');
+            }
+            writer.flush();
+        }
+        return errors;
+    }
+
+    private List<SQLizerResult> compile(Iterator<String> inputs, boolean bind) {
+        ArrayList<SQLizerResult> results = new ArrayList<SQLizerResult>();
+        String[] chunk = new String[chunk_size];
+        while( inputs.hasNext() ) {
+            int size = 0;
+            while( size < chunk.length && inputs.hasNext() )
+                chunk[size++] = inputs.next();
+            results.addAll(Arrays.asList(compile(chunk, size, bind)));
+        }
+        return results;
+    }
+
+    private SQLizerResult[] compile(String[] inputs, int size, boolean bind) {
+        SQLizerResult[] results = new SQLizerResult[size];
+        if( size > 0 )
+            pool.invoke(new Task(inputs, results, 0, size, bind));
+        return results;
+    }
+
+    // Compiles inputs between from and to, splitting them in halves while there are
+    // more than task_size of them.
+    private final class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final String[]        inputs;
+        private final SQLizerResult[] results;
+        private final int             from;
+        private final int             to;
+        private final boolean         bind;
+
+        Task(String[] inputs, SQLizerResult[] results, int from, int to, boolean bind) {
+            this.inputs  = inputs;
+            this.results = results;
+            this.from    = from;
+            this.to      = to;
+            this.bind    = bind;
+        }
+
+        protected void compute() {
+            if( to - from <= task_size ) {
+                for( int i = from; i < to; i++ )
+                    results[i] = bind ? engine.tryPrepare(inputs[i]) : engine.tryParse(inputs[i]);
+                return;
+            }
+            int middle = ( from + to ) >>> 1;
+            invokeAll(new Task(inputs, results, from, middle, bind),
+                      new Task(inputs, results, middle, to, bind));
+        }
+    }
+}
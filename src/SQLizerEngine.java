@@ -0,0 +1,569 @@
+/************************************************************************
+ *
+ * SQLizerEngine.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+import java.util.*;
+
+/**
+ * Generates SQL for a single search field, i.e. for a given type, table, column and
+ * post filter. Unlike static methods of Field2SQL, which decide everything on every call,
+ * engine is configured once, e.g. at application startup<br><br>
+ *
+ *  &nbsp;&nbsp;&nbsp;&nbsp;SQLizerEngine name = new SQLizerEngine.Builder().table("Record").column("name_lc").<br>
+ *  &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;postFilter(new NetDBPostFilter()).displayName("Name").build();<br><br>
+ *
+ * and then used by any number of threads<br><br>
+ *
+ *  &nbsp;&nbsp;&nbsp;&nbsp;String sql = name.parse(input_str);<br><br>
+ *
+ * Post filter is bound to the column when engine is built, see
+ * {@link ColumnFilter#forColumn(String, String) ColumnFilter.forColumn(...)}. Instances are
+ * immutable and thread safe as long as the filter is.
+ */
+public final class SQLizerEngine {
+
+    private final int             type;
+    private final String          table;
+    private final String          column;
+    private final String          field_display_name;
+    private final ColumnFilter    filter;
+    private final FieldPostFilter expr_builder;
+    private final int             engine;
+    private final SQLDialect      dialect;
+    private final SQLizerMetrics  metrics;
+    private final SQLizerLimits   limits;
+    private final boolean         single_valued;
+    private final boolean         not_null;
+    private final boolean         normalize;
+    private final Column[]        fanout;   // other columns the input is matched against
+
+    SQLizerEngine(int type,                  String table,
+                  String column,             String field_display_name,
+                  ColumnFilter filter,       FieldPostFilter expr_builder,
+                  int engine,                SQLDialect dialect,
+                  SQLizerMetrics metrics,    SQLizerLimits limits)
+    {
+        this(type, table, column, field_display_name, filter, expr_builder, engine, dialect,
+             metrics, limits, false, false, false, new Column[0]);
+    }
+
+    SQLizerEngine(int type,                  String table,
+                  String column,             String field_display_name,
+                  ColumnFilter filter,       FieldPostFilter expr_builder,
+                  int engine,                SQLDialect dialect,
+                  SQLizerMetrics metrics,    SQLizerLimits limits,
+                  boolean single_valued,     boolean not_null,
+                  boolean normalize,         Column[] fanout)
+    {
+        this.type               = type;
+        this.table              = table;
+        this.column             = column;
+        this.field_display_name = field_display_name;
+        this.filter             = filter;
+        this.expr_builder       = expr_builder;
+        this.engine             = engine;
+        this.dialect            = dialect;
+        this.metrics            = metrics;
+        this.limits             = limits;
+        this.single_valued      = single_valued;
+        this.not_null           = not_null;
+        this.normalize          = normalize;
+        this.fanout             = fanout;
+    }
+
+    /**
+     * Same as {@link Field2SQL#parseField(int, String, String, String, String, Object) Field2SQL.parseField(...)}
+     * or, if expression builder is set,
+     * {@link Field2SQL#buildField(int, String, String, String, String, FieldPostFilter) Field2SQL.buildField(...)}
+     * with parameters given to the builder.
+     */
+    public String parse(String str) throws Exception {
+        SQLBuffer sql = new SQLBuffer(str.length() * 16, false, dialect);
+        SQLizerException error = compile(str, sql, false, expr_builder != null);
+        if( error != null )
+            throw error;
+        return sql.toString();
+    }
+
+    /**
+     * Same as {@link Field2SQL#prepareField(int, String, String, String, String, Object) Field2SQL.prepareField(...)}
+     * with parameters given to the builder. Not supported if expression builder is set.
+     */
+    public PreparedSQL prepare(String str) throws Exception {
+        checkPrepare();
+        SQLBuffer sql = new SQLBuffer(str.length() * 16, true, dialect);
+        SQLizerException error = compile(str, sql, true, false);
+        if( error != null )
+            throw error;
+        return new PreparedSQL(sql.toString(), sql.parameters());
+    }
+
+    /**
+     * Same as {@link #parse(String) parse(...)}, but invalid input is returned in the
+     * result rather than thrown.
+     */
+    public SQLizerResult tryParse(String str) {
+        SQLBuffer sql = new SQLBuffer(str.length() * 16, false, dialect);
+        SQLizerException error = compile(str, sql, false, expr_builder != null);
+        if( error != null )
+            return new SQLizerResult(str, null, null, error);
+        return new SQLizerResult(str, sql.toString(), null, null);
+    }
+
+    /**
+     * Same as {@link #prepare(String) prepare(...)}, but invalid input is returned in the
+     * result rather than thrown.
+     */
+    public SQLizerResult tryPrepare(String str) {
+        checkPrepare();
+        SQLBuffer sql = new SQLBuffer(str.length() * 16, true, dialect);
+        SQLizerException error = compile(str, sql, true, false);
+        if( error != null )
+            return new SQLizerResult(str, null, null, error);
+        return new SQLizerResult(str, null, new PreparedSQL(sql.toString(), sql.parameters()), null);
+    }
+
+    /**
+     * Returns canonical form of the input, which is the same for inputs selecting the same
+     * ids by the same conditions, e.g. for 'b or a', 'A OR (b)' and 'a or not not b or a',
+     * see {@link Builder#normalize(boolean) Builder.normalize(...)}. Unlike the input, key
+     * can be used to cache generated SQL, or results of the query, for all of such inputs.
+     * Invalid input is thrown just as by parse(...).
+     */
+    public String key(String str) throws Exception {
+        try {
+            return FieldNormalizer.key(compiler(false, null).parse(str));
+        } catch (Exception ex) {
+            throw Field2SQL.error(ex, type, str, field_display_name, expr_builder != null);
+        } catch (StackOverflowError ex) {
+            throw Field2SQL.error(SQLizerLimits.stackOverflow(), type, str, field_display_name,
+                                  expr_builder != null);
+        }
+    }
+
+    /**
+     * Checks syntax of the input without generating SQL and without calling post filter,
+     * e.g. while the user types. Returns the error or null if input is valid, in which case
+     * parse(...) fails only if post filter does.
+     */
+    public SQLizerException validate(String str) {
+        return Field2SQL.validate(type, str, field_display_name, expr_builder != null, limits);
+    }
+
+    /**
+     * Returns tree of the conditions of the input with values to be bound, as it is written
+     * as SQL by prepare(...), see SQLizerExecutor.
+     */
+    FieldNode tree(String str) throws Exception {
+        checkPrepare();
+        try {
+            FieldNode tree = compiler(true, null).parse(str);
+            return rewrite(normalize ? FieldNormalizer.normalize(tree) : tree);
+        } catch (Exception ex) {
+            throw Field2SQL.error(ex, type, str, field_display_name, false);
+        } catch (StackOverflowError ex) {
+            throw Field2SQL.error(SQLizerLimits.stackOverflow(), type, str, field_display_name, false);
+        }
+    }
+
+    private void checkPrepare() {
+        if( expr_builder != null )
+            throw new UnsupportedOperationException("Values can not be bound when expression builder is used.");
+    }
+
+    // Writes SQL into the buffer, returns the error or null. Recursion over input nested
+    // within limits may still overflow small stack of the thread, which is reported as
+    // input over limits rather than thrown.
+    private SQLizerException compile(String str, SQLBuffer sql, boolean bind, boolean expression) {
+        try {
+            return compileSQL(str, sql, bind, expression);
+        } catch (StackOverflowError ex) {
+            return Field2SQL.error(SQLizerLimits.stackOverflow(), type, str, field_display_name, expression);
+        }
+    }
+
+    private SQLizerException compileSQL(String str, SQLBuffer sql, boolean bind, boolean expression) {
+        if( metrics == SQLizerMetrics.NONE ) {
+            try {
+                FieldCompiler compiler = compiler(bind, null);
+                if( normalize ) {
+                    rewrite(FieldNormalizer.normalize(compiler.parse(str))).appendSQL(sql, table);
+                    limits.checkSQLLength(sql.length());
+                } else if( engine == Field2SQL.OPTIMIZING_ENGINE )
+                    compiler.compileOptimized(str, sql);
+                else
+                    compiler.compile(str, sql);
+            } catch (Exception ex) {
+                return Field2SQL.error(ex, type, str, field_display_name, expression);
+            }
+            return null;
+        }
+
+        long[] timings = new long[SQLizerMetrics.PHASES];
+        long   started = System.nanoTime();
+        int    depth;
+        try {
+            FieldCompiler compiler = compiler(bind, timings);
+            if( engine == Field2SQL.OPTIMIZING_ENGINE || normalize ) {
+                FieldNode tree = compiler.parse(str);
+                long parsed = System.nanoTime();
+                timings[SQLizerMetrics.PARSE] = parsed - started -
+                    timings[SQLizerMetrics.LEX] - timings[SQLizerMetrics.POST_FILTER];
+                depth = SQLizerMetrics.depth(tree);
+                long optimizing = System.nanoTime();
+                if( normalize )
+                    tree = FieldNormalizer.normalize(tree);
+                tree = rewrite(tree);
+                long optimized = System.nanoTime();
+                timings[SQLizerMetrics.OPTIMIZE] = optimized - optimizing;
+                tree.appendSQL(sql, table);
+                timings[SQLizerMetrics.GENERATE] = System.nanoTime() - optimized;
+                limits.checkSQLLength(sql.length());
+            } else {
+                // single pass, SQL is written as tokens are parsed
+                compiler.compile(str, sql);
+                timings[SQLizerMetrics.PARSE] = System.nanoTime() - started -
+                    timings[SQLizerMetrics.LEX] - timings[SQLizerMetrics.POST_FILTER];
+                depth = compiler.depth;
+            }
+        } catch (Exception ex) {
+            long failed = System.nanoTime();
+            SQLizerException error = Field2SQL.error(ex, type, str, field_display_name, expression);
+            long reported = System.nanoTime();
+            timings[SQLizerMetrics.ERROR] = reported - failed;
+            metrics.failed(type, engine, timings, reported - started, error.getCategory());
+            return error;
+        }
+        metrics.compiled(type, engine, timings, System.nanoTime() - started, sql.length(), depth);
+        return null;
+    }
+
+    // Optimizes tree if OPTIMIZING_ENGINE is used.
+    private FieldNode rewrite(FieldNode tree) {
+        return engine == Field2SQL.OPTIMIZING_ENGINE ? FieldOptimizer.optimize(tree) : tree;
+    }
+
+    private FieldCompiler compiler(boolean bind_values, long[] timings) {
+        boolean match_numbers = type == Field2SQL.NUMERIC;
+        ConditionBuilder conditions =
+            new ConditionBuilder(table, column, match_numbers, type == Field2SQL.DOMAIN_NAME,
+                                 filter, expr_builder);
+        conditions.bind_values   = bind_values;
+        conditions.rewrite_regex = engine == Field2SQL.OPTIMIZING_ENGINE;
+        conditions.timings       = timings;
+        if( single_valued )
+            conditions.single_valued = true;
+        if( not_null )
+            conditions.nullable = false;
+        FieldCompiler compiler = new FieldCompiler(table, column, match_numbers, conditions);
+        compiler.timings = timings;
+        compiler.limits  = limits;
+        if( fanout.length > 0 ) {
+            compiler.fanout = new ConditionBuilder[fanout.length];
+            for( int i = 0; i < fanout.length; i++ ) {
+                ConditionBuilder other =
+                    new ConditionBuilder(fanout[i].table, fanout[i].column, match_numbers,
+                                         type == Field2SQL.DOMAIN_NAME, fanout[i].filter, expr_builder);
+                other.bind_values   = bind_values;
+                other.rewrite_regex = conditions.rewrite_regex;
+                other.timings       = timings;
+                if( !fanout[i].table.equals(table) ) {
+                    other.join_table    = fanout[i].table;
+                    other.single_valued = false;
+                }
+                compiler.fanout[i] = other;
+            }
+        }
+        return compiler;
+    }
+
+    // Column the input is matched against besides the column of the field.
+    static final class Column {
+        final String       table;
+        final String       column;
+        final ColumnFilter filter;
+
+        Column(String table, String column, ColumnFilter filter) {
+            this.table  = table;
+            this.column = column;
+            this.filter = filter;
+        }
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public SQLDialect getDialect() {
+        return dialect;
+    }
+
+    public SQLizerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public SQLizerLimits getLimits() {
+        return limits;
+    }
+
+    /**
+     * Returns settings, which SQL generated by the engine depends on besides classes of its
+     * filters, columns and what filters tell about them included, see SQLizerStore.
+     */
+    String settings() throws Exception {
+        StringBuilder str = new StringBuilder();
+        str.append(type).append(' ').append(engine).append(' ').append(dialect.getName()).
+            append(' ').append(limits).append(' ').append(single_valued).append(' ').
+            append(not_null).append(' ').append(normalize);
+        appendColumn(str, filter, table, column);
+        for( int i = 0; i < fanout.length; i++ )
+            appendColumn(str, fanout[i].filter, fanout[i].table, fanout[i].column);
+        return str.toString();
+    }
+
+    // Appends the column and what its filter tells about it.
+    private static void appendColumn(StringBuilder str, ColumnFilter filter, String table,
+                                     String column) throws Exception
+    {
+        str.append(' ').append(table).append('.').append(column);
+        if( filter != null )
+            str.append(' ').append(filter.lowerCaseColumn(table, column)).
+                append(' ').append(filter.reversedColumn(table, column)).
+                append(' ').append(filter.isSingleValued(table, column)).
+                append(' ').append(filter.isNullable(table, column));
+    }
+
+    /**
+     * Returns filters of the column and of the other columns, null if there is none, and
+     * expression builder, see SQLizerStore.
+     */
+    Object[] filters() {
+        Object[] filters = new Object[fanout.length + 2];
+        filters[0] = filter;
+        for( int i = 0; i < fanout.length; i++ )
+            filters[i + 1] = fanout[i].filter;
+        filters[filters.length - 1] = expr_builder;
+        return filters;
+    }
+
+    /**
+     * Configures and builds SQLizerEngine. Table and column must be set, everything else
+     * defaults to parameters used by
+     * {@link Field2SQL#parseStringField(String, String, String, String) Field2SQL.parseStringField(...)}.
+     */
+    public static class Builder {
+        private int             type               = Field2SQL.STRING;
+        private String          table              = null;
+        private String          column             = null;
+        private String          field_display_name = null;
+        private Object          post_filter        = null;
+        private FieldPostFilter expr_builder       = null;
+        private int             engine             = Field2SQL.FAST_ENGINE;
+        private SQLDialect      dialect            = SQLDialect.ORACLE;
+        private SQLizerMetrics  metrics            = Field2SQL.getMetrics();
+        private SQLizerLimits   limits             = Field2SQL.getLimits();
+        private boolean         single_valued      = false;
+        private boolean         not_null           = false;
+        private boolean         normalize          = false;
+        private ArrayList<String[]> fanout         = new ArrayList<String[]>(); // table or null, column
+
+        /**
+         * @param type  one of Field2SQL.NUMERIC, Field2SQL.STRING, Field2SQL.DOMAIN_NAME
+         */
+        public Builder type(int type) {
+            if( type != Field2SQL.NUMERIC && type != Field2SQL.STRING && type != Field2SQL.DOMAIN_NAME )
+                throw new IllegalArgumentException("Unknown type "+type);
+            this.type = type;
+            return this;
+        }
+
+        public Builder table(String table) {
+            this.table = table;
+            return this;
+        }
+
+        public Builder column(String column) {
+            this.column = column;
+            return this;
+        }
+
+        /**
+         * Matches input against several columns of the table, the first of them replaces the
+         * one set by column(...). Every term of the input matches ids of the rows, where any
+         * of the columns matches it, and all of the columns are checked by single select
+         *
+         *   a* and not b    (columns 'name' and 'alias')
+         *     -> ( select id from Record where name LIKE 'a%' ESCAPE '\' OR alias LIKE 'a%' ESCAPE '\' ) MINUS
+         *        ( select id from Record where name = 'b' OR alias = 'b' )
+         *
+         * Unlike union of SQL generated for each of the columns, 'a and b' matches also ids
+         * with 'a' in one column and 'b' in another. Post filter is bound to every column.
+         */
+        public Builder columns(String... columns) {
+            if( columns.length == 0 )
+                throw new IllegalArgumentException("At least one column must be given.");
+            this.column = columns[0];
+            for( int i = 1; i < columns.length; i++ )
+                fanout.add(new String[] { null, columns[i] });
+            return this;
+        }
+
+        /**
+         * Matches input also against column of another table, which has any number of rows
+         * per id, e.g. table of aliases. Its conditions are checked by
+         * 'id IN ( select id from table where ... )' within the same select, see
+         * {@link #columns(String...) columns(...)}.
+         */
+        public Builder joinedColumn(String table, String column) {
+            if( table == null || column == null )
+                throw new IllegalArgumentException("Both table and column must be given.");
+            fanout.add(new String[] { table, column });
+            return this;
+        }
+
+        /**
+         * @param field_display_name  name of the field used only in error messages
+         */
+        public Builder displayName(String field_display_name) {
+            this.field_display_name = field_display_name;
+            return this;
+        }
+
+        /**
+         * @param filter  typed post filter
+         */
+        public Builder filter(ColumnFilter filter) {
+            this.post_filter = filter;
+            return this;
+        }
+
+        /**
+         * @param post_filter  instance of ColumnFilter, PostFilter or FieldPostFilter
+         */
+        public Builder postFilter(Object post_filter) {
+            if( !(post_filter instanceof ColumnFilter)    &&
+                !(post_filter instanceof FieldPostFilter) &&
+                !(post_filter instanceof PostFilter) )
+                throw new IllegalArgumentException("post_filter must be instance of "+
+                                                   "ColumnFilter, PostFilter or FieldPostFilter.");
+            this.post_filter = post_filter;
+            return this;
+        }
+
+        /**
+         * @param expr_builder  builder of entire 'where' expression, see
+         *                      {@link Field2SQL#buildField(int, String, String, String, String, FieldPostFilter) Field2SQL.buildField(...)}
+         */
+        public Builder expressionBuilder(FieldPostFilter expr_builder) {
+            this.expr_builder = expr_builder;
+            return this;
+        }
+
+        /**
+         * @param engine  either Field2SQL.FAST_ENGINE or Field2SQL.OPTIMIZING_ENGINE
+         */
+        public Builder engine(int engine) {
+            if( engine != Field2SQL.FAST_ENGINE && engine != Field2SQL.OPTIMIZING_ENGINE )
+                throw new IllegalArgumentException("Unsupported engine "+engine);
+            this.engine = engine;
+            return this;
+        }
+
+        /**
+         * @param dialect  one of SQLDialect.ORACLE, SQLDialect.POSTGRESQL, SQLDialect.H2
+         */
+        public Builder dialect(SQLDialect dialect) {
+            if( dialect == null )
+                throw new IllegalArgumentException("dialect must not be null");
+            this.dialect = dialect;
+            return this;
+        }
+
+        /**
+         * @param metrics  receiver of measurements of every compiled input, defaults to
+         *                 {@link Field2SQL#getMetrics() Field2SQL.getMetrics()}
+         */
+        public Builder metrics(SQLizerMetrics metrics) {
+            if( metrics == null )
+                throw new IllegalArgumentException("metrics must not be null");
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @param limits  limits of complexity of input, defaults to
+         *                {@link Field2SQL#getLimits() Field2SQL.getLimits()}
+         */
+        public Builder limits(SQLizerLimits limits) {
+            if( limits == null )
+                throw new IllegalArgumentException("limits must not be null");
+            this.limits = limits;
+            return this;
+        }
+
+        /**
+         * Declares that the column has the same value in all of the rows with the same id,
+         * as does {@link ColumnFilter#isSingleValued(String, String) ColumnFilter.isSingleValued(...)}.
+         * Used only by OPTIMIZING_ENGINE.
+         */
+        public Builder singleValued(boolean single_valued) {
+            this.single_valued = single_valued;
+            return this;
+        }
+
+        /**
+         * Declares that the column never holds NULL, as does
+         * {@link ColumnFilter#isNullable(String, String) ColumnFilter.isNullable(...)}.
+         * Used only by OPTIMIZING_ENGINE.
+         */
+        public Builder notNull(boolean not_null) {
+            this.not_null = not_null;
+            return this;
+        }
+
+        /**
+         * Generates SQL for canonical form of the input, so that inputs which differ only
+         * in order of operands of 'and' and 'or', repeated operands, double negations,
+         * brackets, case of operators or runs of '*' wildcards give identical SQL, see
+         * {@link SQLizerEngine#key(String) key(...)}. It keeps both cache of the
+         * application and cache of statements of the database smaller. With FAST_ENGINE
+         * chains of operators are then written flat, as by OPTIMIZING_ENGINE.
+         */
+        public Builder normalize(boolean normalize) {
+            this.normalize = normalize;
+            return this;
+        }
+
+        public SQLizerEngine build() throws Exception {
+            if( table == null || column == null )
+                throw new IllegalStateException("Both table and column must be set.");
+            ColumnFilter filter = post_filter == null ?
+                ColumnFilter.IDENTITY : ColumnFilter.of(post_filter, table, column);
+            Column[] columns = new Column[fanout.size()];
+            for( int i = 0; i < columns.length; i++ ) {
+                String other_table = fanout.get(i)[0] == null ? table : fanout.get(i)[0];
+                String other       = fanout.get(i)[1];
+                columns[i] = new Column(other_table, other, post_filter == null ?
+                                        ColumnFilter.IDENTITY : ColumnFilter.of(post_filter, other_table, other));
+            }
+            return new SQLizerEngine(type, table, column, field_display_name,
+                                     filter, expr_builder, engine, dialect, metrics, limits,
+                                     single_valued, not_null, normalize, columns);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/************************************************************************
+ *
+ * SQLizerException.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+/**
+ * Invalid input of a search field. Besides the message, which is the same as the one
+ * always reported by Field2SQL, it tells where the input went wrong: offset of the
+ * offending character or token in the input, its text and category of the error, so
+ * that e.g. a form can highlight it.<br><br>
+ *
+ * Invalid input is expected, so these exceptions are cheap: they have no stack trace and
+ * the message is not built until it is asked for. They are returned rather than thrown
+ * by {@link SQLizerEngine#tryParse(String) SQLizerEngine.tryParse(...)},
+ * {@link SQLizerEngine#validate(String) SQLizerEngine.validate(...)} and
+ * {@link Field2SQL#validate(int, String) Field2SQL.validate(...)}.
+ */
+public class SQLizerException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String  reason;   // message of the lexer, parser or post filter
+    private final int     position; // offset in the input or -1 if not known
+    private final String  token;    // text of the offending token, null if at end of input
+    private final int     category; // one of SQLizerMetrics.LEXICAL, ...
+
+    // reported to the caller, see Field2SQL.error(...), null if thrown by the parser
+    private final String  input;
+    private final int     type;
+    private final String  field_display_name;
+    private final boolean expression;
+
+    /**
+     * Error found by FieldLexer, FieldCompiler or ConditionBuilder.
+     */
+    SQLizerException(String reason, int position, String token, int category) {
+        super(null, null, false, false);
+        this.reason             = reason;
+        this.position           = position;
+        this.token              = token;
+        this.category           = category;
+        this.input              = null;
+        this.type               = 0;
+        this.field_display_name = null;
+        this.expression         = false;
+    }
+
+    /**
+     * Error reported to the caller, see Field2SQL.error(...). Keeps the exception unless
+     * it is SQLizerException, e.g. when post filter fails.
+     */
+    SQLizerException(Exception ex, int type, String input, String field_display_name,
+                     boolean expression)
+    {
+        super(null, ex instanceof SQLizerException ? null : ex, false, false);
+        SQLizerException error = ex instanceof SQLizerException ? (SQLizerException)ex : null;
+        this.reason             = ex.getMessage();
+        this.position           = error == null ? -1 : error.position;
+        this.token              = error == null ? null : error.token;
+        this.category           = error == null ? SQLizerMetrics.category(ex) : error.category;
+        this.input              = input;
+        this.type               = type;
+        this.field_display_name = field_display_name;
+        this.expression         = expression;
+    }
+
+    public String getMessage() {
+        if( input == null )
+            return reason;
+        if( expression && reason != null && reason.trim().length() > 0 )
+            return "In \""+field_display_name+"\" field "+reason.trim();
+        if( category == SQLizerMetrics.LIMIT )
+            return ( field_display_name != null ? "\""+field_display_name+"\" field" :
+                     ( type==Field2SQL.NUMERIC ? "Numeric field" : "String field" ) )+
+                " is too complex, "+reason+".";
+        if( field_display_name != null )
+            return "\""+field_display_name+"\" field \""+input+
+                "\" is not a valid "+(type==Field2SQL.NUMERIC?"numeric":"string")+" field.";
+        return "Invalid "+(type==Field2SQL.NUMERIC?"numeric":"string")+" field \""+input+"\".";
+    }
+
+    /**
+     * Message of the lexer, parser or post filter, e.g. 'unexpected token: b'.
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * Offset of the offending character or token in the input, its length if the input
+     * ended too early, -1 if not known, e.g. if the error was thrown by post filter or
+     * found by ANTLR_ENGINE.
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Text of the offending character or token, null if the input ended too early or if
+     * not known.
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * One of SQLizerMetrics.LEXICAL, SYNTAX, ESCAPE, NUMBER, OTHER, LIMIT.
+     */
+    public int getCategory() {
+        return category;
+    }
+
+    /**
+     * The input, null if not known.
+     */
+    public String getInput() {
+        return input;
+    }
+}
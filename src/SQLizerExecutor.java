@@ -0,0 +1,310 @@
+/************************************************************************
+ *
+ * SQLizerExecutor.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.sql.DataSource;
+
+/**
+ * Selects ids matching search field by separate queries rather than by single statement
+ * of set operations<br><br>
+ *
+ *  &nbsp;&nbsp;&nbsp;&nbsp;SQLizerExecutor executor = new SQLizerExecutor(name_engine, pool);<br>
+ *  &nbsp;&nbsp;&nbsp;&nbsp;long[] ids = executor.select(data_source, input_str);<br><br>
+ *
+ * Input is compiled by the engine into the same tree of conditions, of which it generates
+ * SQL. Every condition, i.e. 'select id from table where ...' found in SQL generated by the
+ * engine, is run as its own query with bind parameters on its own connection of the data
+ * source, all of them at once on the threads of the executor service, e.g. of
+ * Executors.newVirtualThreadPerTaskExecutor() where it is available. UNION, INTERSECT and
+ * MINUS of the ids are done in memory by merging sorted arrays. Once operand of AND, or
+ * the first operand of MINUS, turns out to be empty, queries of the rest of the operands
+ * are cancelled, those which have not started are never run. NOT which is not an operand
+ * of AND needs all ids of the table, which are selected by one more query.<br><br>
+ *
+ * It pays off when database runs large statement of set operations by single session or
+ * plans it badly, while each of the conditions can use index. Engines with expression
+ * builder are not supported. Instances are thread safe.
+ */
+public final class SQLizerExecutor {
+
+    private final SQLizerEngine   engine;
+    private final ExecutorService executor;
+
+    public SQLizerExecutor(SQLizerEngine engine, ExecutorService executor) {
+        this.engine   = engine;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns ids matching the input in ascending order without duplicates. Invalid input
+     * is thrown as by SQLizerEngine.parse(...), so is the first error of the queries.
+     */
+    public long[] select(DataSource source, String str) throws Exception {
+        FieldNode tree = engine.tree(str);
+        Node root = plan(tree, source, false);
+        try {
+            return root.ids();
+        } finally {
+            root.cancel();
+        }
+    }
+
+    // Starts queries of all conditions of the tree. operand is true if the node is
+    // operand of AND, which subtracts negations rather than selecting all ids.
+    private Node plan(FieldNode tree, DataSource source, boolean operand) {
+        if( tree.isCondition() ) {
+            SQLBuffer sql = new SQLBuffer(64, true, engine.getDialect());
+            sql.append("select id from ").append(engine.getTable()).append(" where ");
+            tree.appendCondition(sql);
+            return new Node(FieldNode.LEAF, submit(source, sql.toString(), sql.parameters()));
+        }
+
+        Node node = new Node(tree, null);
+        boolean positive = false;
+        for( int i = 0; i < tree.children.size(); i++ ) {
+            FieldNode child = tree.child(i);
+            node.children[i] = plan(child, source, tree.kind == FieldNode.AND);
+            positive |= child.kind != FieldNode.NOT;
+        }
+        if( ( tree.kind == FieldNode.NOT && !operand ) || ( tree.kind == FieldNode.AND && !positive ) )
+            node.all = submit(source, "select id from "+engine.getTable(), Collections.<Object>emptyList());
+        return node;
+    }
+
+    private Query submit(DataSource source, String sql, List<Object> parameters) {
+        Query query = new Query(source, new PreparedSQL(sql, parameters));
+        query.future = executor.submit(query);
+        return query;
+    }
+
+    // Node of the tree of conditions, whose ids are being selected.
+    private static final class Node {
+        private final int    kind;     // FieldNode.AND, OR, NOT, MINUS or LEAF
+        private final Node[] children;
+        private final Query  query;    // query of LEAF
+        private Query        all;      // all ids of the table, if NOT or AND needs them
+
+        Node(int kind, Query query) {
+            this.kind     = kind;
+            this.query    = query;
+            this.children = null;
+        }
+
+        Node(FieldNode tree, Query query) {
+            this.kind     = tree.kind;
+            this.query    = query;
+            this.children = new Node[tree.children.size()];
+        }
+
+        long[] ids() throws Exception {
+            switch( kind ) {
+            case FieldNode.LEAF:
+                return query.ids();
+
+            case FieldNode.OR:
+                long[] union = children[0].ids();
+                for( int i = 1; i < children.length; i++ )
+                    union = union(union, children[i].ids());
+                return union;
+
+            case FieldNode.NOT:
+                return difference(all.ids(), children[0].ids());
+
+            case FieldNode.MINUS:
+                long[] rest = children[0].ids();
+                for( int i = 1; i < children.length && rest.length > 0; i++ )
+                    rest = difference(rest, children[i].ids());
+                return rest;
+
+            default:
+                // intersection of positive operands, then negated ones are subtracted
+                long[] result = all == null ? null : all.ids();
+                for( int i = 0; i < children.length && ( result == null || result.length > 0 ); i++ )
+                    if( children[i].kind != FieldNode.NOT )
+                        result = result == null ? children[i].ids() : intersection(result, children[i].ids());
+                for( int i = 0; i < children.length && result.length > 0; i++ )
+                    if( children[i].kind == FieldNode.NOT )
+                        result = difference(result, children[i].children[0].ids());
+                return result;
+            }
+        }
+
+        // Cancels queries, which are still running or waiting to be run.
+        void cancel() {
+            if( query != null )
+                query.cancel();
+            if( all != null )
+                all.cancel();
+            for( int i = 0; children != null && i < children.length; i++ )
+                children[i].cancel();
+        }
+    }
+
+    // Query selecting ids of a condition, run on its own connection.
+    private static final class Query implements Callable<long[]> {
+        private final DataSource  source;
+        private final PreparedSQL sql;
+        Future<long[]>            future;
+        private volatile Statement statement; // not null while query runs
+        private volatile boolean   cancelled;
+
+        Query(DataSource source, PreparedSQL sql) {
+            this.source = source;
+            this.sql    = sql;
+        }
+
+        public long[] call() throws Exception {
+            if( cancelled )
+                return new long[0];
+            Connection connection = source.getConnection();
+            try {
+                PreparedStatement prepared = connection.prepareStatement(sql.getSQL());
+                try {
+                    sql.bind(prepared, 1);
+                    statement = prepared;
+                    if( cancelled )
+                        return new long[0];
+                    ResultSet rs = prepared.executeQuery();
+                    long[] ids = new long[64];
+                    int count = 0;
+                    while( rs.next() ) {
+                        if( count == ids.length )
+                            ids = Arrays.copyOf(ids, count * 2);
+                        ids[count++] = rs.getLong(1);
+                    }
+                    rs.close();
+                    return distinct(ids, count);
+                } finally {
+                    statement = null;
+                    prepared.close();
+                }
+            } finally {
+                connection.close();
+            }
+        }
+
+        long[] ids() throws Exception {
+            try {
+                return future.get();
+            } catch (ExecutionException ex) {
+                if( ex.getCause() instanceof Exception )
+                    throw (Exception)ex.getCause();
+                throw ex;
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            future.cancel(false);
+            Statement running = statement;
+            if( running != null ) {
+                try {
+                    running.cancel();
+                } catch (SQLException ex) {
+                    // query is left to finish, its ids are not used
+                }
+            }
+        }
+    }
+
+    // Sorts first count ids and removes duplicates.
+    static long[] distinct(long[] ids, int count) {
+        Arrays.sort(ids, 0, count);
+        int length = 0;
+        for( int i = 0; i < count; i++ )
+            if( length == 0 || ids[i] != ids[length - 1] )
+                ids[length++] = ids[i];
+        return Arrays.copyOf(ids, length);
+    }
+
+    /**
+     * Returns ids found in either of the sorted arrays.
+     */
+    static long[] union(long[] a, long[] b) {
+        if( a.length == 0 )
+            return b;
+        if( b.length == 0 )
+            return a;
+        long[] result = new long[a.length + b.length];
+        int i = 0, j = 0, length = 0;
+        while( i < a.length && j < b.length ) {
+            if( a[i] < b[j] )
+                result[length++] = a[i++];
+            else if( a[i] > b[j] )
+                result[length++] = b[j++];
+            else {
+                result[length++] = a[i++];
+                j++;
+            }
+        }
+        while( i < a.length )
+            result[length++] = a[i++];
+        while( j < b.length )
+            result[length++] = b[j++];
+        return length == result.length ? result : Arrays.copyOf(result, length);
+    }
+
+    /**
+     * Returns ids found in both of the sorted arrays. Ids of much shorter array are looked
+     * up by binary search.
+     */
+    static long[] intersection(long[] a, long[] b) {
+        if( a.length > b.length ) {
+            long[] t = a;
+            a = b;
+            b = t;
+        }
+        long[] result = new long[a.length];
+        int length = 0;
+        if( a.length * 16 < b.length ) {
+            int from = 0;
+            for( int i = 0; i < a.length; i++ ) {
+                int found = Arrays.binarySearch(b, from, b.length, a[i]);
+                if( found >= 0 )
+                    result[length++] = a[i];
+                from = found >= 0 ? found + 1 : -found - 1;
+            }
+        } else {
+            int i = 0, j = 0;
+            while( i < a.length && j < b.length ) {
+                if( a[i] < b[j] )
+                    i++;
+                else if( a[i] > b[j] )
+                    j++;
+                else {
+                    result[length++] = a[i++];
+                    j++;
+                }
+            }
+        }
+        return Arrays.copyOf(result, length);
+    }
+
+    /**
+     * Returns ids of the first sorted array, which are not found in the second one.
+     */
+    static long[] difference(long[] a, long[] b) {
+        if( a.length == 0 || b.length == 0 )
+            return a;
+        long[] result = new long[a.length];
+        int i = 0, j = 0, length = 0;
+        while( i < a.length ) {
+            while( j < b.length && b[j] < a[i] )
+                j++;
+            if( j == b.length || b[j] != a[i] )
+                result[length++] = a[i];
+            i++;
+        }
+        return Arrays.copyOf(result, length);
+    }
+}
@@ -0,0 +1,142 @@
+/************************************************************************
+ *
+ * SQLizerLimits.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+/**
+ * Limits of complexity of a search field: number of terms (strings and regular
+ * expressions), nesting depth (brackets and NOT operators enclosing a term), length
+ * of generated SQL and cost of regular expressions. Terms and depth are checked while the
+ * input is parsed, before SQL is generated, so huge inputs are rejected early and deeply
+ * nested ones can not exhaust the stack. Input over a limit is reported as SQLizerException
+ * of SQLizerMetrics.LIMIT category. Zero means no limit, except for the depth, which is
+ * never over MAX_DEPTH.<br><br>
+ *
+ * Cost of the regular expression estimates how time the database spends matching it
+ * grows with the length of the value, 1 for linear, 2 for quadratic and so on, see
+ * RegexGuard. Regular expressions, which may take exponential time, e.g. /(a|aa)+$/, are
+ * over any limit. Unless the limit is 0 regular expressions are also checked to be valid
+ * POSIX regular expressions and nested quantifiers, e.g. /(a+)+/, are replaced with single
+ * one.<br><br>
+ *
+ * Installed by {@link Field2SQL#setLimits(SQLizerLimits) Field2SQL.setLimits(...)} or
+ * {@link SQLizerEngine.Builder#limits(SQLizerLimits) SQLizerEngine.Builder.limits(...)},
+ * DEFAULT limits the depth and rejects regular expressions, which may take exponential
+ * time. Stricter cost of regular expressions, e.g. 3, must be set explicitly.
+ */
+public final class SQLizerLimits {
+
+    /**
+     * Nesting depth, which is rejected whatever the limits are, as recursive parsing and
+     * generation of SQL would exhaust the stack. Input, which still exhausts the stack of
+     * a thread with small stack, is rejected as over limits as well.
+     */
+    public static final int MAX_DEPTH = 1024;
+
+    /**
+     * No limits, but MAX_DEPTH.
+     */
+    public static final SQLizerLimits NONE = new SQLizerLimits(0, 0, 0, 0);
+
+    /**
+     * Maximal cost of regular expressions, which rejects only those, which may take
+     * exponential time.
+     */
+    public static final int POLYNOMIAL = RegexGuard.EXPONENTIAL - 1;
+
+    /**
+     * At most 256 nested brackets and NOT operators, far more than any user types, but
+     * well below depth, which exhausts the stack, and regular expressions, which do not
+     * take exponential time, e.g. /.*a.*b.*&#47;, but not /(a|aa)+&#47;.
+     */
+    public static final SQLizerLimits DEFAULT = new SQLizerLimits(0, 256, 0, POLYNOMIAL);
+
+    final int max_terms;
+    final int max_depth;
+    final int max_sql_length;
+    final int max_regex_cost;
+
+    /**
+     * Same as {@link #SQLizerLimits(int, int, int, int) SQLizerLimits(...)} with no limit
+     * of cost of regular expressions.
+     */
+    public SQLizerLimits(int max_terms, int max_depth, int max_sql_length) {
+        this(max_terms, max_depth, max_sql_length, 0);
+    }
+
+    /**
+     * @param max_terms       maximal number of strings and regular expressions or 0
+     * @param max_depth       maximal number of brackets and NOT operators enclosing a term or 0,
+     *                        MAX_DEPTH at most
+     * @param max_sql_length  maximal length of generated SQL or 0
+     * @param max_regex_cost  maximal cost of regular expression or 0
+     */
+    public SQLizerLimits(int max_terms, int max_depth, int max_sql_length, int max_regex_cost) {
+        if( max_terms < 0 || max_depth < 0 || max_sql_length < 0 || max_regex_cost < 0 )
+            throw new IllegalArgumentException("limits must not be negative");
+        this.max_terms      = max_terms;
+        this.max_depth      = max_depth;
+        this.max_sql_length = max_sql_length;
+        this.max_regex_cost = max_regex_cost;
+    }
+
+    public int getMaxTerms() {
+        return max_terms;
+    }
+
+    public int getMaxDepth() {
+        return max_depth;
+    }
+
+    public int getMaxSQLLength() {
+        return max_sql_length;
+    }
+
+    public int getMaxRegexCost() {
+        return max_regex_cost;
+    }
+
+    /**
+     * Throws if a given number of terms is over the limit. Position and token are those of
+     * the current token of the lexer.
+     */
+    void checkTerms(int terms, FieldLexer lexer) throws SQLizerException {
+        if( max_terms > 0 && terms > max_terms )
+            throw new SQLizerException("more than "+max_terms+" terms", lexer.start, lexer.text(),
+                                       SQLizerMetrics.LIMIT);
+    }
+
+    /**
+     * Throws if a given depth is over the limit, see checkTerms(...).
+     */
+    void checkDepth(int depth, FieldLexer lexer) throws SQLizerException {
+        int max = max_depth > 0 && max_depth < MAX_DEPTH ? max_depth : MAX_DEPTH;
+        if( depth > max )
+            throw new SQLizerException("nested deeper than "+max+" levels", lexer.start,
+                                       lexer.text(), SQLizerMetrics.LIMIT);
+    }
+
+    /**
+     * Error reported, if input within MAX_DEPTH still exhausts the stack of the thread.
+     */
+    static SQLizerException stackOverflow() {
+        return new SQLizerException("nested too deeply", -1, null, SQLizerMetrics.LIMIT);
+    }
+
+    void checkSQLLength(int sql_length) throws SQLizerException {
+        if( max_sql_length > 0 && sql_length > max_sql_length )
+            throw new SQLizerException("generated SQL longer than "+max_sql_length+" characters",
+                                       -1, null, SQLizerMetrics.LIMIT);
+    }
+
+    public String toString() {
+        return "terms "+max_terms+", depth "+max_depth+", SQL length "+max_sql_length+
+            ", regex cost "+max_regex_cost;
+    }
+}
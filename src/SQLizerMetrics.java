@@ -0,0 +1,145 @@
+/************************************************************************
+ *
+ * SQLizerMetrics.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+/**
+ * Receives measurements of every compiled search field. Installed by
+ * {@link Field2SQL#setMetrics(SQLizerMetrics) Field2SQL.setMetrics(...)} or
+ * {@link SQLizerEngine.Builder#metrics(SQLizerMetrics) SQLizerEngine.Builder.metrics(...)}.
+ * This class does nothing; subclasses override compiled(...) and failed(...), which are
+ * called by any number of threads. See SQLizerStats for histograms and counters.<br><br>
+ *
+ * Time spent compiling is split into phases:<br><br>
+ *
+ * <table>
+ * <tr><td>LEX</td><td>reading tokens, StringsLexer or FieldLexer</td></tr>
+ * <tr><td>PARSE</td><td>StringsParser, or FieldCompiler, which parses and writes SQL in single pass</td></tr>
+ * <tr><td>OPTIMIZE</td><td>FieldNormalizer and FieldOptimizer, OPTIMIZING_ENGINE or normalized input only</td></tr>
+ * <tr><td>GENERATE</td><td>FieldTreeParser.expr(...) or writing SQL of optimized tree</td></tr>
+ * <tr><td>POST_FILTER</td><td>post filter and expression builder callbacks</td></tr>
+ * <tr><td>ERROR</td><td>building exception reported to the caller</td></tr>
+ * </table><br>
+ *
+ * Nothing is measured unless metrics other than NONE are installed, so there is no
+ * overhead by default.
+ */
+public class SQLizerMetrics {
+
+    /**
+     * Metrics, which are not collected. This is the default.
+     */
+    public static final SQLizerMetrics NONE = new SQLizerMetrics();
+
+    // phases
+    public static final int LEX         = 0;
+    public static final int PARSE       = 1;
+    public static final int OPTIMIZE    = 2;
+    public static final int GENERATE    = 3;
+    public static final int POST_FILTER = 4;
+    public static final int ERROR       = 5;
+
+    /**
+     * Number of phases, i.e. length of phase_nanos arrays.
+     */
+    public static final int PHASES = 6;
+
+    // categories of errors
+    public static final int LEXICAL = 0; // character, which can not start or continue token
+    public static final int SYNTAX  = 1; // unexpected token or end of input
+    public static final int ESCAPE  = 2; // illegal use of escape character
+    public static final int NUMBER  = 3; // not a number in NUMERIC field
+    public static final int OTHER   = 4; // e.g. thrown by post filter
+    public static final int LIMIT   = 5; // over one of SQLizerLimits
+
+    /**
+     * Number of error categories.
+     */
+    public static final int CATEGORIES = 6;
+
+    private static final String[] phase_names    = { "lex", "parse", "optimize", "generate", "post_filter", "error" };
+    private static final String[] category_names = { "lexical", "syntax", "escape", "number", "other", "limit" };
+
+    public static String phaseName(int phase) {
+        return phase_names[phase];
+    }
+
+    public static String categoryName(int category) {
+        return category_names[category];
+    }
+
+    /**
+     * Called when input is compiled.
+     *
+     * @param type         one of Field2SQL.NUMERIC, Field2SQL.STRING, Field2SQL.DOMAIN_NAME
+     * @param engine       engine, which generated SQL
+     * @param phase_nanos  nanoseconds spent in every phase, must not be kept after the call
+     * @param nanos        nanoseconds spent compiling input
+     * @param sql_length   length of generated SQL
+     * @param depth        depth of the parse tree, in which 'a and b and c' is '(a and b) and c'
+     */
+    public void compiled(int type, int engine, long[] phase_nanos, long nanos,
+                         int sql_length, int depth)
+    {
+    }
+
+    /**
+     * Called when input is rejected.
+     *
+     * @param category  one of LEXICAL, SYNTAX, ESCAPE, NUMBER, OTHER, LIMIT
+     * @see #compiled(int, int, long[], long, int, int) compiled(...)
+     */
+    public void failed(int type, int engine, long[] phase_nanos, long nanos, int category) {
+    }
+
+    /**
+     * Returns category of the exception thrown while compiling input.
+     */
+    static int category(Exception ex) {
+        if( ex instanceof SQLizerException )
+            return ((SQLizerException)ex).getCategory();
+        String msg = ex.getMessage() == null ? "" : ex.getMessage();
+        if( ex instanceof NumberFormatException )
+            return NUMBER;
+        if( msg.indexOf("escape character") >= 0 )
+            return ESCAPE;
+        if( ex instanceof antlr.TokenStreamException || msg.startsWith("unexpected char") ||
+            msg.startsWith("expecting '\"'") || msg.startsWith("expecting '/'") )
+            return LEXICAL;
+        if( ex instanceof antlr.RecognitionException ||
+            msg.startsWith("unexpected") || msg.startsWith("expecting") )
+            return SYNTAX;
+        return OTHER;
+    }
+
+    /**
+     * Depth of the tree parsed by FieldCompiler.parse(...), see
+     * {@link #compiled(int, int, long[], long, int, int) compiled(...)}.
+     */
+    static int depth(FieldNode node) {
+        if( node.isCondition() )
+            return 1;
+        int depth = depth(node.child(0));
+        if( node.kind == FieldNode.NOT )
+            return depth + 1;
+        for( int i = 1; i < node.children.size(); i++ )
+            depth = Math.max(depth, depth(node.child(i))) + 1;
+        return depth;
+    }
+
+    /**
+     * Depth of AST built by StringsParser.
+     */
+    static int depth(antlr.collections.AST ast) {
+        int depth = 0;
+        for( antlr.collections.AST child = ast.getFirstChild(); child != null; child = child.getNextSibling() )
+            depth = Math.max(depth, depth(child));
+        return depth + 1;
+    }
+}
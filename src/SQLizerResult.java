@@ -0,0 +1,78 @@
+/************************************************************************
+ *
+ * SQLizerResult.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+/**
+ * Outcome of compiling single input, which is either SQL (or PreparedSQL) or the error,
+ * which would have been thrown by
+ * {@link SQLizerEngine#parse(String) SQLizerEngine.parse(...)} or
+ * {@link SQLizerEngine#prepare(String) prepare(...)}. Returned by
+ * {@link SQLizerEngine#tryParse(String) SQLizerEngine.tryParse(...)} and tryPrepare(...),
+ * which never throw on invalid input, and by SQLizerBatch.
+ */
+public final class SQLizerResult {
+
+    private final String           input;
+    private final String           sql;      // null unless valid and compiled by parse(...)
+    private final PreparedSQL      prepared; // null unless valid and compiled by prepare(...)
+    private final SQLizerException error;    // null if valid
+
+    SQLizerResult(String input, String sql, PreparedSQL prepared, SQLizerException error) {
+        this.input    = input;
+        this.sql      = sql;
+        this.prepared = prepared;
+        this.error    = error;
+    }
+
+    public String getInput() {
+        return input;
+    }
+
+    /**
+     * True if input was compiled without error.
+     */
+    public boolean isValid() {
+        return error == null;
+    }
+
+    /**
+     * Generated SQL or null if input is not valid or values are bound, in which case
+     * SQL is {@link #getPreparedSQL() getPreparedSQL()}.getSQL().
+     */
+    public String getSQL() {
+        return sql;
+    }
+
+    /**
+     * Generated SQL with bind parameters or null if input is not valid or values are
+     * not bound.
+     */
+    public PreparedSQL getPreparedSQL() {
+        return prepared;
+    }
+
+    /**
+     * The error or null if input is valid. Tells where the input went wrong, see
+     * SQLizerException.
+     */
+    public SQLizerException getError() {
+        return error;
+    }
+
+    /**
+     * Generated SQL or 'ERROR: ' followed by the error message, as printed by
+     * Field2SQL shell.
+     */
+    public String toString() {
+        if( error != null )
+            return "ERROR: "+error.getMessage();
+        return sql != null ? sql : prepared.toString();
+    }
+}
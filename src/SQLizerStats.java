@@ -0,0 +1,181 @@
+/************************************************************************
+ *
+ * SQLizerStats.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * Metrics collected in memory: counts of compiled and rejected inputs by field type,
+ * errors by category and histograms of time spent in every phase, of the whole compile
+ * time, of generated SQL length and of parse tree depth, e.g.<br><br>
+ *
+ *  &nbsp;&nbsp;&nbsp;&nbsp;SQLizerStats stats = new SQLizerStats();<br>
+ *  &nbsp;&nbsp;&nbsp;&nbsp;Field2SQL.setMetrics(stats);<br>
+ *  &nbsp;&nbsp;&nbsp;&nbsp;...<br>
+ *  &nbsp;&nbsp;&nbsp;&nbsp;System.out.println(stats);<br><br>
+ *
+ * Histogram bucket i holds values v with 2^(i-1) &lt;= v &lt; 2^i, bucket 0 holds zeros.
+ * Thread safe and lock free.
+ */
+public class SQLizerStats extends SQLizerMetrics {
+
+    /**
+     * Number of buckets of every histogram.
+     */
+    public static final int BUCKETS = 64;
+
+    private static final int TYPES = 3; // Field2SQL.NUMERIC, STRING, DOMAIN_NAME
+
+    private final AtomicLongArray compiled = new AtomicLongArray(TYPES);
+    private final AtomicLongArray failed   = new AtomicLongArray(TYPES);
+    private final AtomicLongArray errors   = new AtomicLongArray(CATEGORIES);
+
+    private final AtomicLongArray[] phases = new AtomicLongArray[PHASES];
+    private final AtomicLongArray   nanos       = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray   sql_lengths = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray   depths      = new AtomicLongArray(BUCKETS);
+
+    public SQLizerStats() {
+        for( int i = 0; i < PHASES; i++ )
+            phases[i] = new AtomicLongArray(BUCKETS);
+    }
+
+    public void compiled(int type, int engine, long[] phase_nanos, long nanos,
+                         int sql_length, int depth)
+    {
+        compiled.incrementAndGet(type);
+        record(phase_nanos, nanos);
+        sql_lengths.incrementAndGet(bucket(sql_length));
+        depths.incrementAndGet(bucket(depth));
+    }
+
+    public void failed(int type, int engine, long[] phase_nanos, long nanos, int category) {
+        failed.incrementAndGet(type);
+        errors.incrementAndGet(category);
+        record(phase_nanos, nanos);
+    }
+
+    private void record(long[] phase_nanos, long nanos) {
+        for( int i = 0; i < PHASES; i++ )
+            if( phase_nanos[i] > 0 )
+                phases[i].incrementAndGet(bucket(phase_nanos[i]));
+        this.nanos.incrementAndGet(bucket(nanos));
+    }
+
+    /**
+     * Histogram bucket of a given value.
+     */
+    public static int bucket(long value) {
+        return value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * Number of inputs of a given field type compiled without error.
+     */
+    public long getCompiled(int type) {
+        return compiled.get(type);
+    }
+
+    /**
+     * Number of inputs of a given field type rejected with error.
+     */
+    public long getFailed(int type) {
+        return failed.get(type);
+    }
+
+    /**
+     * Number of errors of a given category, see SQLizerMetrics.
+     */
+    public long getErrors(int category) {
+        return errors.get(category);
+    }
+
+    /**
+     * Histogram of nanoseconds spent in a given phase by inputs, which went through it.
+     */
+    public long[] getPhaseHistogram(int phase) {
+        return snapshot(phases[phase]);
+    }
+
+    /**
+     * Histogram of nanoseconds spent compiling inputs.
+     */
+    public long[] getTimeHistogram() {
+        return snapshot(nanos);
+    }
+
+    /**
+     * Histogram of generated SQL lengths.
+     */
+    public long[] getSQLLengthHistogram() {
+        return snapshot(sql_lengths);
+    }
+
+    /**
+     * Histogram of parse tree depths.
+     */
+    public long[] getDepthHistogram() {
+        return snapshot(depths);
+    }
+
+    /**
+     * Upper bound of the bucket holding a given percentile, e.g. 0.99, of the histogram
+     * or 0 if it is empty.
+     */
+    public static long percentile(long[] histogram, double percentile) {
+        long count = 0;
+        for( int i = 0; i < histogram.length; i++ )
+            count += histogram[i];
+        if( count == 0 )
+            return 0;
+        long rank = (long)Math.ceil(percentile * count);
+        for( int i = 0; i < histogram.length; i++ ) {
+            rank -= histogram[i];
+            if( rank <= 0 )
+                return i == 0 ? 0 : ( i >= 63 ? Long.MAX_VALUE : ( 1L << i ) - 1 );
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private static long[] snapshot(AtomicLongArray histogram) {
+        long[] values = new long[histogram.length()];
+        for( int i = 0; i < values.length; i++ )
+            values[i] = histogram.get(i);
+        return values;
+    }
+
+    /**
+     * Counters and p50/p99 of the histograms in human readable form.
+     */
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        str.append("compiled: numeric ").append(getCompiled(Field2SQL.NUMERIC)).
+            append(", string ").append(getCompiled(Field2SQL.STRING)).
+            append(", domain ").append(getCompiled(Field2SQL.DOMAIN_NAME)).append('\n');
+        str.append("failed:   numeric ").append(getFailed(Field2SQL.NUMERIC)).
+            append(", string ").append(getFailed(Field2SQL.STRING)).
+            append(", domain ").append(getFailed(Field2SQL.DOMAIN_NAME)).append('\n');
+        str.append("errors:  ");
+        for( int i = 0; i < CATEGORIES; i++ )
+            str.append(' ').append(categoryName(i)).append(' ').append(getErrors(i));
+        str.append('\n');
+        for( int i = 0; i < PHASES; i++ )
+            append(str, phaseName(i)+" ns", getPhaseHistogram(i));
+        append(str, "total ns", getTimeHistogram());
+        append(str, "sql length", getSQLLengthHistogram());
+        append(str, "depth", getDepthHistogram());
+        return str.toString();
+    }
+
+    private static void append(StringBuilder str, String name, long[] histogram) {
+        str.append(name).append(": p50 <= ").append(percentile(histogram, 0.5)).
+            append(", p99 <= ").append(percentile(histogram, 0.99)).append('\n');
+    }
+}
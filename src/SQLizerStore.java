@@ -0,0 +1,380 @@
+/************************************************************************
+ *
+ * SQLizerStore.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.*;
+
+/**
+ * Saved searches compiled in advance and kept in a file, so they are not compiled again
+ * every time application starts<br><br>
+ *
+ *  &nbsp;&nbsp;&nbsp;&nbsp;SQLizerStore.write(name_engine, saved_searches, file);<br>
+ *  &nbsp;&nbsp;&nbsp;&nbsp;...<br>
+ *  &nbsp;&nbsp;&nbsp;&nbsp;SQLizerStore store = SQLizerStore.open(name_engine, file);<br>
+ *  &nbsp;&nbsp;&nbsp;&nbsp;String sql = store.parse(input_str);<br><br>
+ *
+ * For every valid input the file keeps its canonical form, see
+ * {@link SQLizerEngine#key(String) SQLizerEngine.key(...)}, and SQL generated by the engine.
+ * File is memory mapped, entries are looked up by hash of the input in the index sorted
+ * by hash and decoded only when found, so opening the file only checks that offsets of
+ * the index are within the file. Inputs not found in the file, invalid ones included, and
+ * entries which do not fit in truncated file are compiled by the engine.<br><br>
+ *
+ * File also keeps fingerprint of the compiler classes, of classes of the filters of the
+ * engine, of its settings and of SQL, which the engine generates for a fixed set of inputs.
+ * If compiler, engine settings or post filter change the fingerprint does not match and
+ * all of the entries are ignored, see
+ * {@link #isCurrent() isCurrent()}. Post filter, which output depends on anything else but
+ * its arguments, should not be used with the store. Instances are thread safe.<br><br>
+ *
+ * Format, all numbers are big endian 32 bit integers, strings are UTF-8 bytes preceded by
+ * their length:
+ *
+ *   MAGIC, VERSION, fingerprint bytes, number of entries,
+ *   index: hash of the input and offset of the entry, for every entry in order of hashes,
+ *   entries: input, key, SQL
+ */
+public final class SQLizerStore {
+
+    private static final int MAGIC   = 0x53514c5a; // 'SQLZ'
+    private static final int VERSION = 1;
+
+    // classes, whose changes change SQL generated for the same input, their nested and
+    // anonymous classes included
+    private static final String[] COMPILER_CLASSES = {
+        "FieldLexer", "FieldCompiler", "ConditionBuilder", "FieldNode", "FieldOptimizer",
+        "FieldNormalizer", "RegexAnalyzer", "RegexGuard", "SQLBuffer", "SQLDialect",
+        "FieldTreeParser", "StringsLexer", "StringsParser", "ColumnFilter", "NetDBPostFilter",
+        "PostFilter", "FieldPostFilter", "SQLizerLimits", "SQLizerEngine"
+    };
+
+    // inputs compiled into fingerprint of the engine
+    private static final String[] STRING_PROBES = {
+        "a", "aBc*", "*.b.c", "?a", "\"a b\"", "o'k", "a\\*", "/^aB.*c$/i", "/(a|b)+/",
+        "a and not b or c", "not (a or b*)"
+    };
+    private static final String[] NUMERIC_PROBES = {
+        "1", "-2.5", "1..10", ">= 3", "1,2,3", "1 and not 2 or 3"
+    };
+
+    private final SQLizerEngine engine;
+    private final ByteBuffer    buffer;  // null if there are no entries
+    private final int           entries; // number of entries
+    private final int           index;   // offset of the index
+    private final boolean       current;
+
+    private SQLizerStore(SQLizerEngine engine, ByteBuffer buffer, int entries, int index,
+                         boolean current)
+    {
+        this.engine  = engine;
+        this.buffer  = buffer;
+        this.entries = entries;
+        this.index   = index;
+        this.current = current;
+    }
+
+    /**
+     * Compiles inputs by the engine and writes valid ones into the file, which is replaced
+     * only once it is complete. Returns number of entries written, duplicates and invalid
+     * inputs are left out.
+     */
+    public static int write(SQLizerEngine engine, Iterable<String> inputs, File file)
+        throws IOException
+    {
+        // entries in order of hashes, inputs with the same hash in order of appearance
+        TreeMap<Integer, ArrayList<byte[][]>> compiled = new TreeMap<Integer, ArrayList<byte[][]>>();
+        HashSet<String> seen = new HashSet<String>();
+        int count = 0;
+        for( String input : inputs ) {
+            if( !seen.add(input) )
+                continue;
+            byte[][] entry;
+            try {
+                entry = new byte[][] { utf8(input), utf8(engine.key(input)), utf8(engine.parse(input)) };
+            } catch (Exception ex) {
+                continue;
+            }
+            ArrayList<byte[][]> bucket = compiled.get(input.hashCode());
+            if( bucket == null )
+                compiled.put(input.hashCode(), bucket = new ArrayList<byte[][]>(1));
+            bucket.add(entry);
+            count++;
+        }
+
+        File temp = new File(file.getPath()+".tmp");
+        DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16));
+        try {
+            byte[] fingerprint = fingerprint(engine);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(fingerprint.length);
+            out.write(fingerprint);
+            out.writeInt(count);
+            int offset = 16 + fingerprint.length + count * 8;
+            for( Map.Entry<Integer, ArrayList<byte[][]>> bucket : compiled.entrySet() ) {
+                for( byte[][] entry : bucket.getValue() ) {
+                    out.writeInt(bucket.getKey());
+                    out.writeInt(offset);
+                    offset += 12 + entry[0].length + entry[1].length + entry[2].length;
+                }
+            }
+            for( ArrayList<byte[][]> bucket : compiled.values() ) {
+                for( byte[][] entry : bucket ) {
+                    for( int i = 0; i < entry.length; i++ ) {
+                        out.writeInt(entry[i].length);
+                        out.write(entry[i]);
+                    }
+                }
+            }
+        } finally {
+            out.close();
+        }
+        if( !temp.renameTo(file) && !( file.delete() && temp.renameTo(file) ) )
+            throw new IOException("Can not rename "+temp+" to "+file+".");
+        return count;
+    }
+
+    /**
+     * Maps the file written by write(...) for a given engine. If the file is missing, has
+     * unknown format, is truncated or fingerprint of the engine does not match, store has
+     * no entries and all of the inputs are compiled by the engine.
+     */
+    public static SQLizerStore open(SQLizerEngine engine, File file) throws IOException {
+        if( !file.isFile() )
+            return new SQLizerStore(engine, null, 0, 0, false);
+
+        ByteBuffer buffer;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            // mapping stays valid after the file is closed
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        } finally {
+            raf.close();
+        }
+
+        try {
+            if( buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION )
+                return new SQLizerStore(engine, null, 0, 0, false);
+            int length = buffer.getInt(8);
+            if( length < 0 || length > buffer.limit() - 16 )
+                return new SQLizerStore(engine, null, 0, 0, false);
+            byte[] fingerprint = new byte[length];
+            ByteBuffer header = buffer.duplicate();
+            header.position(12);
+            header.get(fingerprint);
+            if( !Arrays.equals(fingerprint, fingerprint(engine)) )
+                return new SQLizerStore(engine, null, 0, 0, false);
+
+            // truncated or corrupt file is not used, entries must follow the index
+            int count = header.getInt();
+            int index = header.position();
+            if( count < 0 || count > ( buffer.limit() - index ) / 8 )
+                return new SQLizerStore(engine, null, 0, 0, false);
+            int entries = index + count * 8;
+            for( int i = 0; i < count; i++ ) {
+                int offset = buffer.getInt(index + i * 8 + 4);
+                if( offset < entries || offset > buffer.limit() - 12 )
+                    return new SQLizerStore(engine, null, 0, 0, false);
+            }
+            return new SQLizerStore(engine, buffer, count, index, true);
+        } catch (BufferUnderflowException ex) {
+            return new SQLizerStore(engine, null, 0, 0, false);
+        } catch (IndexOutOfBoundsException ex) {
+            return new SQLizerStore(engine, null, 0, 0, false);
+        }
+    }
+
+    /**
+     * Returns SQL of the input found in the file or generated by the engine.
+     */
+    public String parse(String str) throws Exception {
+        int offset = find(str);
+        return offset < 0 ? engine.parse(str) : string(offset, 2);
+    }
+
+    /**
+     * Returns canonical form of the input found in the file or given by the engine.
+     */
+    public String key(String str) throws Exception {
+        int offset = find(str);
+        return offset < 0 ? engine.key(str) : string(offset, 1);
+    }
+
+    /**
+     * True if the input is found in the file.
+     */
+    public boolean contains(String str) {
+        return find(str) >= 0;
+    }
+
+    /**
+     * Returns number of entries in the file, 0 if they are ignored.
+     */
+    public int size() {
+        return entries;
+    }
+
+    /**
+     * True if the file was written for the same compiler and engine settings and its
+     * entries are used.
+     */
+    public boolean isCurrent() {
+        return current;
+    }
+
+    public SQLizerEngine getEngine() {
+        return engine;
+    }
+
+    // Returns offset of the entry of the input or -1 if there is none.
+    private int find(String str) {
+        if( entries == 0 )
+            return -1;
+        int hash = str.hashCode();
+        int low  = 0;
+        int high = entries - 1;
+        while( low < high ) {
+            int middle = ( low + high ) >>> 1;
+            if( buffer.getInt(index + middle * 8) < hash )
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        for( int i = low; i < entries && buffer.getInt(index + i * 8) == hash; i++ ) {
+            int offset = buffer.getInt(index + i * 8 + 4);
+            if( position(offset, 3) >= 0 && str.equals(string(offset, 0)) )
+                return offset;
+        }
+        return -1;
+    }
+
+    // Decodes n-th string of the entry at a given offset, which fits in the file.
+    private String string(int offset, int n) {
+        int at = position(offset, n);
+        byte[] bytes = new byte[buffer.getInt(at)];
+        ByteBuffer entry = buffer.duplicate();
+        entry.position(at + 4);
+        entry.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Returns offset of n-th string of the entry at a given offset, or -1 if strings
+    // before it do not fit in the file.
+    private int position(int offset, int n) {
+        int at = offset;
+        for( int i = 0; i < n; i++ ) {
+            if( at > buffer.limit() - 4 )
+                return -1;
+            int length = buffer.getInt(at);
+            if( length < 0 || length > buffer.limit() - at - 4 )
+                return -1;
+            at += 4 + length;
+        }
+        return at;
+    }
+
+    // Adds bytes of the class, of its nested and anonymous classes and of its super classes,
+    // which are not part of Java, unless they are hashed already.
+    private static void hashClass(MessageDigest digest, Class<?> hashed_class,
+                                  HashSet<Class<?>> hashed, byte[] bytes) throws IOException
+    {
+        for( Class<?> c = hashed_class; c != null && !c.getName().startsWith("java.") && hashed.add(c);
+             c = c.getSuperclass() )
+        {
+            digest.update(utf8(c.getName()));
+            hashBytes(digest, c, c.getName(), bytes);
+            for( int i = 1; hashBytes(digest, c, c.getName()+"$"+i, bytes); i++ )
+                ;
+            // in order of names, as order of declared classes is not specified
+            TreeMap<String, Class<?>> nested = new TreeMap<String, Class<?>>();
+            Class<?>[] declared = c.getDeclaredClasses();
+            for( int i = 0; i < declared.length; i++ )
+                nested.put(declared[i].getName(), declared[i]);
+            for( Class<?> n : nested.values() )
+                hashClass(digest, n, hashed, bytes);
+        }
+    }
+
+    // Adds bytes of the class file of a given class, returns false if there is none.
+    private static boolean hashBytes(MessageDigest digest, Class<?> loaded, String name,
+                                     byte[] bytes) throws IOException
+    {
+        InputStream in = loaded.getResourceAsStream("/"+name.replace('.', '/')+".class");
+        if( in == null )
+            return false;
+        try {
+            for( int n; ( n = in.read(bytes) ) > 0; )
+                digest.update(bytes, 0, n);
+        } finally {
+            in.close();
+        }
+        return true;
+    }
+
+    private static byte[] utf8(String str) {
+        return str.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // SHA-256 of the compiler classes, of classes of the filters, of the settings of the
+    // engine and of SQL, or errors, which it generates for probe inputs.
+    static byte[] fingerprint(SQLizerEngine engine) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (java.security.NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+        byte[] bytes = new byte[4096];
+        HashSet<Class<?>> hashed = new HashSet<Class<?>>();
+        String prefix = SQLizerStore.class.getName();
+        prefix = prefix.substring(0, prefix.lastIndexOf('.') + 1);
+        for( int i = 0; i < COMPILER_CLASSES.length; i++ ) {
+            digest.update(utf8(COMPILER_CLASSES[i]));
+            try {
+                hashClass(digest, Class.forName(prefix+COMPILER_CLASSES[i], false,
+                                                SQLizerStore.class.getClassLoader()), hashed, bytes);
+            } catch (ClassNotFoundException ex) {
+                // classes generated by ANTLR are not needed by the engine
+            } catch (LinkageError ex) {
+                // nor is ANTLR, which they extend
+            }
+        }
+        Object[] filters = engine.filters();
+        for( int i = 0; i < filters.length; i++ ) {
+            Object filter = filters[i] instanceof ColumnFilter ?
+                ((ColumnFilter)filters[i]).implementation() : filters[i];
+            if( filter != null )
+                hashClass(digest, filter.getClass(), hashed, bytes);
+        }
+
+        try {
+            digest.update(utf8(engine.settings()));
+        } catch (Exception ex) {
+            digest.update(utf8(String.valueOf(ex)));
+        }
+        String[] probes = engine.getType() == Field2SQL.NUMERIC ? NUMERIC_PROBES : STRING_PROBES;
+        for( int i = 0; i < probes.length; i++ ) {
+            SQLizerResult result = engine.tryParse(probes[i]);
+            digest.update(utf8(result.isValid() ? result.getSQL() : result.getError().getMessage()));
+            try {
+                digest.update(utf8(engine.key(probes[i])));
+            } catch (Exception ex) {
+                digest.update(utf8(ex.getMessage()));
+            }
+        }
+        return digest.digest();
+    }
+}
@@ -0,0 +1,193 @@
+/************************************************************************
+ *
+ * SearchForm.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+import java.util.*;
+
+/**
+ * Compiles all of the fields of a search form into single SQL statement, which selects
+ * ids matching every field, e.g.<br><br>
+ *
+ *  &nbsp;&nbsp;&nbsp;&nbsp;SearchForm form = new SearchForm("Record").singleValued("name", "type");<br>
+ *  &nbsp;&nbsp;&nbsp;&nbsp;form.addField(Field2SQL.STRING,  "name",  "smi*",       "Name");<br>
+ *  &nbsp;&nbsp;&nbsp;&nbsp;form.addField(Field2SQL.NUMERIC, "type",  "1 or 2",     "Type");<br>
+ *  &nbsp;&nbsp;&nbsp;&nbsp;form.addField(Field2SQL.STRING,  "alias", "not x*",     "Alias");<br>
+ *  &nbsp;&nbsp;&nbsp;&nbsp;String sql = form.parse();<br><br>
+ *
+ * gives<br><br>
+ *
+ *  &nbsp;&nbsp;&nbsp;&nbsp;( ( select id from Record where name LIKE 'smi%' ESCAPE '\' AND ( type IN (1, 2) ) ) MINUS ( select id from Record where alias LIKE 'x%' ESCAPE '\' ) )<br><br>
+ *
+ * rather than three selects joined with INTERSECT. Fields are joined with 'and' and
+ * compiled together by the OPTIMIZING_ENGINE. Conditions of different fields are checked
+ * by single select when the result stays exact, i.e. when all of them but one are on
+ * columns declared by {@link #singleValued(String...) singleValued(...)} or by the post
+ * filter, see {@link ColumnFilter#isSingleValued(String, String) ColumnFilter.isSingleValued(...)}.
+ * Negations on such columns are checked by the same select, e.g. 'name &lt;&gt; 'x'', negations
+ * of the rest of the fields are subtracted by single MINUS. Fields with empty input are
+ * ignored.<br><br>
+ *
+ * Instances are not thread safe.
+ */
+public class SearchForm {
+
+    // single field of the form
+    private static final class Field {
+        int    type;
+        String column;
+        String str;
+        String field_display_name;
+        Object post_filter;
+    }
+
+    private String           table;
+    private SQLDialect       dialect       = SQLDialect.ORACLE;
+    private SQLizerLimits    limits        = Field2SQL.getLimits();
+    private HashSet<String>  single_valued = new HashSet<String>();
+    private HashSet<String>  not_null      = new HashSet<String>();
+    private ArrayList<Field> fields        = new ArrayList<Field>();
+
+    /**
+     * @param table  name of the table to be figured in resulting SQL expression
+     */
+    public SearchForm(String table) {
+        this.table = table;
+    }
+
+    /**
+     * Declares columns, which have the same value in all of the rows with the same id,
+     * e.g. columns of the table with single row per id. Conditions on such columns are
+     * combined with AND in single select.
+     */
+    public SearchForm singleValued(String... columns) {
+        for( int i = 0; i < columns.length; i++ )
+            single_valued.add(columns[i]);
+        return this;
+    }
+
+    /**
+     * Declares columns, which never hold NULL, so negations of conditions on single valued
+     * ones need no 'IS NULL' check.
+     */
+    public SearchForm notNull(String... columns) {
+        for( int i = 0; i < columns.length; i++ )
+            not_null.add(columns[i]);
+        return this;
+    }
+
+    /**
+     * Selects SQL dialect, SQLDialect.ORACLE by default.
+     */
+    public SearchForm dialect(SQLDialect dialect) {
+        if( dialect == null )
+            throw new IllegalArgumentException("dialect must not be null");
+        this.dialect = dialect;
+        return this;
+    }
+
+    /**
+     * Sets limits of complexity of every field, Field2SQL.getLimits() by default. Length
+     * of generated SQL is limited for the whole form.
+     */
+    public SearchForm limits(SQLizerLimits limits) {
+        if( limits == null )
+            throw new IllegalArgumentException("limits must not be null");
+        this.limits = limits;
+        return this;
+    }
+
+    /**
+     * Adds field to the form. Parameters have the same meaning as parameters of
+     * {@link Field2SQL#parseField(int, String, String, String, String, Object) Field2SQL.parseField(...)}.
+     */
+    public SearchForm addField(int type,   String column, String str,
+                               String field_display_name, Object post_filter)
+        throws Exception
+    {
+        if( !(post_filter instanceof FieldPostFilter) &&
+            !(post_filter instanceof PostFilter)      &&
+            !(post_filter instanceof ColumnFilter) )
+            throw new Exception("post_filter must be instance of "+
+                                "PostFilter, FieldPostFilter or ColumnFilter.");
+        Field field = new Field();
+        field.type               = type;
+        field.column             = column;
+        field.str                = str;
+        field.field_display_name = field_display_name;
+        field.post_filter        = post_filter;
+        fields.add(field);
+        return this;
+    }
+
+    /**
+     * Same as {@link #addField(int, String, String, String, Object) addField(...)} with
+     * post_filter set to the default one, which performs no transormations on final field values
+     */
+    public SearchForm addField(int type, String column, String str, String field_display_name)
+        throws Exception
+    {
+        return addField(type, column, str, field_display_name, new FieldPostFilter());
+    }
+
+    /**
+     * Returns SQL selecting ids which match all of the fields of the form or null if input
+     * of every field is empty.
+     */
+    public String parse() throws Exception {
+        SQLBuffer sql = new SQLBuffer(256, false, dialect);
+        return compile(sql) ? sql.toString() : null;
+    }
+
+    /**
+     * Same as {@link #parse() parse()}, but field values are passed as parameters,
+     * see {@link Field2SQL#prepareField(int, String, String, String, String, Object) Field2SQL.prepareField(...)}.
+     */
+    public PreparedSQL prepare() throws Exception {
+        SQLBuffer sql = new SQLBuffer(256, true, dialect);
+        return compile(sql) ? new PreparedSQL(sql.toString(), sql.parameters()) : null;
+    }
+
+    private boolean compile(SQLBuffer sql) throws Exception {
+        FieldNode form = FieldNode.node(FieldNode.AND);
+        for( int i = 0; i < fields.size(); i++ ) {
+            Field field = fields.get(i);
+            if( field.str == null || field.str.trim().length() == 0 )
+                continue;
+
+            try {
+                boolean match_numbers = field.type == Field2SQL.NUMERIC;
+                ConditionBuilder conditions =
+                    new ConditionBuilder(table, field.column, match_numbers,
+                                         field.type == Field2SQL.DOMAIN_NAME,
+                                         ColumnFilter.of(field.post_filter, table, field.column),
+                                         null);
+                conditions.bind_values   = sql.isBinding();
+                conditions.rewrite_regex = true;
+                if( single_valued.contains(field.column) )
+                    conditions.single_valued = true;
+                if( not_null.contains(field.column) )
+                    conditions.nullable = false;
+                FieldCompiler compiler = new FieldCompiler(table, field.column, match_numbers, conditions);
+                compiler.limits = limits;
+                form.children.add(compiler.parse(field.str));
+
+            } catch (Exception ex) {
+                throw Field2SQL.error(ex, field.type, field.str, field.field_display_name, false);
+            }
+        }
+
+        if( form.children.size() == 0 )
+            return false;
+        int length = sql.length();
+        FieldOptimizer.optimize(form.children.size() == 1 ? form.child(0) : form).appendSQL(sql, table);
+        limits.checkSQLLength(sql.length() - length);
+        return true;
+    }
+}
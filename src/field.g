@@ -50,139 +50,45 @@ options {
     //       where `expression_builder.filter(table, column, field)`
     public FieldPostFilter expression_builder = null;
 
-    String buildRegexCondition(String value) throws RecognitionException, Exception {
-        value = Field2SQL.unescape(value);
-        value = value.replaceAll("'", "''");
-        int length = value.length();
-
-        int cut_out = 1;
-        String regex_modes = "";
-        if( value.matches("^.*\\/i") ) {
-            cut_out = 2;
-            regex_modes = "i";
-        }
+    // if not null, nanoseconds spent in post filter are added to timings[SQLizerMetrics.POST_FILTER]
+    public long[] timings = null;
 
-        String m_column = column;
-        String m_value = value.substring(1, value.length() - cut_out);
-        if( post_filter instanceof PostFilter ) {
-            m_column =
-                ((PostFilter)post_filter).column_filter("REGEXP_LIKE", table, column, m_value);
-            m_value =
-                ((PostFilter)post_filter).field_filter("REGEXP_LIKE",  table, column, m_value);
-        }
+    // regular expressions are checked by RegexGuard unless it is 0, see SQLizerLimits
+    public int max_regex_cost = 0;
 
-        return "REGEXP_LIKE(" + m_column + ", '" +  m_value +
-            "', '" + regex_modes + "')";
-    }
+    // builds conditions for individual values, see ConditionBuilder
+    private ConditionBuilder conditions = null;
 
-    String buildStringCondition(String value) throws RecognitionException, Exception {
-        value = Field2SQL.unescape(value);
-        String svalue     = "";
-        String nvalue     = "";
-        int length        = value.length();
-        boolean escaped   = false;
-        boolean like_expr = false;
-        for( int i = 0; i < length; i++ ) {
-            String cchar = value.substring(i, i+1);
-            boolean end = i==length-1;
-            String nchar = end?"":value.substring(i+1, i+2);
-            if( cchar.equals("\\") ) {
-                escaped = escaped?false:true;
-                svalue += cchar;
-            } else {
-                if( cchar.equals("*") && !escaped ) {
-                    svalue += "%";
-                    like_expr = true;
-                } else if( cchar.equals("?") && !escaped ) {
-                    svalue += "_";
-                    like_expr = true;
-                } else {
-                    if( ( cchar.equals("%") || cchar.equals("_") ) && !escaped )
-                        like_expr = true;
-                    svalue += cchar;
-                    escaped = false;
-                }
-            }
+    private ConditionBuilder conditions() throws Exception {
+        if( conditions == null ) {
+            conditions = new ConditionBuilder(table, column, match_numbers, domain_name,
+                                              post_filter, expression_builder);
+            conditions.timings = timings;
         }
-        if( escaped ) // escape char not followed by any character
-            throw new RecognitionException("Illegal use of escape character.");
-
-        if( svalue.startsWith("\"") && svalue.endsWith("\"") )
-            svalue = svalue.substring(1, svalue.length()-1);
+        return conditions;
+    }
 
-        if( ( domain_name || column.matches("^.*fullname.*$") ) && svalue.indexOf(".") < 0 ) {
-            svalue += ".%";
-            like_expr = true;
+    // values are escaped by Field2SQL.escape(...), ConditionBuilder expects them as given by user
+    String buildRegexCondition(String value) throws RecognitionException, Exception {
+        try {
+            return conditions().buildRegexCondition(Field2SQL.unescape(value, true), max_regex_cost);
+        } catch (SQLizerException ex) {
+            // position is known only in the value, not in the input
+            throw new SQLizerException(ex.getReason(), -1, ex.getToken(), ex.getCategory());
         }
+    }
 
-        if( domain_name && !svalue.endsWith(".") && !svalue.endsWith("%") )
-            svalue += ".";
-
-        length = svalue.length();
-
-        if( !like_expr ) { // = expr
-            escaped = false;
-            for( int i = 0; i < length; i++ ) {
-                String cchar = svalue.substring(i, i+1);
-                if( escaped ) {
-                    nvalue += cchar.equals("'")?"''":cchar;
-                    escaped = false;
-                } else if( cchar.equals("\\") )
-                    escaped = true;
-                else
-                    nvalue += cchar.equals("'")?"''":cchar;
-            }
-            if( expression_builder != null )
-                nvalue = expression_builder.filter(table, column, nvalue);
-            else {
-                if( post_filter instanceof PostFilter ) {
-                    String mvalue =
-                        ((PostFilter)post_filter).field_filter("=", table, column, nvalue);
-                    nvalue = ((PostFilter)post_filter).column_filter("=", table, column, nvalue) +
-                        " = " + (match_numbers?mvalue:("'" + mvalue + "'"));
-
-                } else if( post_filter instanceof FieldPostFilter ) {
-                    String mvalue = ((FieldPostFilter)post_filter).filter(table, column, nvalue);
-                    nvalue = column + " = " + (match_numbers?mvalue:("'" + mvalue + "'"));
-                }
-            }
-
-        } else { // like expr
-            escaped = false;
-            for( int i = 0; i < length; i++ ) {
-                String cchar = svalue.substring(i, i+1);
-                if( escaped ) {
-                    if( cchar.equals("'") )
-                        nvalue += "''";
-                    else if( cchar.equals("\\") || cchar.equals("_") || cchar.equals("%") )
-                        nvalue += "\\"+cchar;
-                    else
-                        nvalue += cchar;
-                    escaped = false;
-                } else if( cchar.equals("\\") )
-                    escaped = true;
-                else
-                    nvalue += cchar.equals("'")?"''":cchar;
-            }
+    String buildNumericCondition(String value) throws RecognitionException, Exception {
+        return conditions().buildNumericCondition(value);
+    }
 
-            if( expression_builder != null )
-                nvalue = expression_builder.filter(table, column, nvalue);
-            else {
-                if( post_filter instanceof PostFilter ) {
-                    nvalue =
-                        ((PostFilter)post_filter).column_filter("LIKE", table, column, nvalue) +
-                        " LIKE '" +
-                        ((PostFilter)post_filter).field_filter("LIKE", table, column, nvalue) +
-                        "' ESCAPE '\\'";
-
-                } else if( post_filter instanceof FieldPostFilter ) {
-                    nvalue = column+" LIKE '" +
-                        ((FieldPostFilter)post_filter).filter(table, column, nvalue) +
-                        "' ESCAPE '\\'";
-                }
-            }
+    String buildStringCondition(String value) throws RecognitionException, Exception {
+        try {
+            return conditions().buildStringCondition(Field2SQL.unescape(value, true));
+        } catch (SQLizerException ex) {
+            // position is known only in the value, not in the input
+            throw new SQLizerException(ex.getReason(), -1, ex.getToken(), ex.getCategory());
         }
-        return nvalue;
     }
 
     String value(String src) {
@@ -210,11 +116,15 @@ expr returns [ String result ]
         }
     | value:STRING
         {
-            if( match_numbers )
-                result =
-                    " ( select id from "+table+" where "+column+" = "+
-                    Integer.parseInt(value.toString())+" ) ";
-            else {
+            if( match_numbers ) {
+                try {
+                    result =
+                        " ( select id from "+table+" where "+
+                        buildNumericCondition(value.toString())+" ) ";
+                } catch(Exception ex) {
+                    throw new RecognitionException(ex.getMessage());
+                }
+            } else {
                 try {
                     result =
                         " ( select id from "+table+" where "+
@@ -248,6 +158,11 @@ options {
 {
     // By setting this value to true we ensure that strings are numbers
     public boolean match_numbers = false;
+
+    // same as CCSET, ';' is END, see Field2SQL.escape(...)
+    private static boolean isCCSET(char c) {
+        return c != ';' && FieldLexer.isCCSET(c);
+    }
 }
 
 STRING
@@ -261,9 +176,21 @@ STRING
                   $setType(OR);
               else if( textLc.equals("not") )
                   $setType(NOT);
-          } else {
-              if( match_numbers )
-                  Integer.parseInt(textLc);
+          } else if( match_numbers ) {
+              // comparison operator is joined with the number which follows it, see FieldLexer
+              if( ConditionBuilder.comparisonEnd(textLc, 0, textLc.length()) == textLc.length() ) {
+                  int k = 1;
+                  while( LA(k) == ' ' || LA(k) == '\t' || LA(k) == '\n' || LA(k) == '\r' )
+                      k++;
+                  if( k > 1 && isCCSET(LA(k)) ) {
+                      for( ; k > 1; k-- )
+                          consume();
+                      while( isCCSET(LA(1)) )
+                          consume();
+                  }
+              }
+              if( !ConditionBuilder.isNumericTerm(getText(), 0, getText().length()) )
+                  throw new NumberFormatException("For input string: \""+getText()+"\"");
           }
         }
     ;
@@ -281,7 +208,7 @@ REGEX
                   $setType(NOT);
           } else {
               if( match_numbers )
-                  Integer.parseInt(textLc);
+                  throw new NumberFormatException("For input string: \""+getText()+"\"");
           }
         }
     ;
@@ -0,0 +1,92 @@
+/************************************************************************
+ *
+ * JFRMetrics.java -
+ *
+ * $Id$
+ *
+ *-----------------------------------------------------------------------
+ * Copyright (c) 2026, Board of Trustees, Leland Stanford Jr. University
+ ************************************************************************/
+package stanford.netdb.utils;
+
+import jdk.jfr.*;
+
+/**
+ * Records every compiled input as Java Flight Recorder event 'stanford.netdb.utils.Compile'
+ * with time spent in every phase, generated SQL length, parse tree depth and category of
+ * the error, if any<br><br>
+ *
+ *  &nbsp;&nbsp;&nbsp;&nbsp;Field2SQL.setMetrics(new JFRMetrics(stats));<br><br>
+ *
+ * Events are built only while recording with the event enabled. JFR requires Java 11, so
+ * this class is not part of field2sql_parser.jar, 'make jfr' builds it into field2sql_jfr.jar.
+ */
+public class JFRMetrics extends SQLizerMetrics {
+
+    private final SQLizerMetrics metrics;
+
+    public JFRMetrics() {
+        this(SQLizerMetrics.NONE);
+    }
+
+    /**
+     * @param metrics  metrics, which receive measurements as well, e.g. SQLizerStats
+     */
+    public JFRMetrics(SQLizerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void compiled(int type, int engine, long[] phase_nanos, long nanos,
+                         int sql_length, int depth)
+    {
+        metrics.compiled(type, engine, phase_nanos, nanos, sql_length, depth);
+        CompileEvent event = new CompileEvent();
+        if( event.shouldCommit() ) {
+            event.set(type, engine, phase_nanos, nanos);
+            event.sqlLength = sql_length;
+            event.depth     = depth;
+            event.commit();
+        }
+    }
+
+    public void failed(int type, int engine, long[] phase_nanos, long nanos, int category) {
+        metrics.failed(type, engine, phase_nanos, nanos, category);
+        CompileEvent event = new CompileEvent();
+        if( event.shouldCommit() ) {
+            event.set(type, engine, phase_nanos, nanos);
+            event.error = categoryName(category);
+            event.commit();
+        }
+    }
+
+    @Name("stanford.netdb.utils.Compile")
+    @Label("Search Field Compiled")
+    @Category("SQLizer")
+    @StackTrace(false)
+    static final class CompileEvent extends Event {
+        @Label("Field Type")      int    type;
+        @Label("Engine")          int    engine;
+        @Label("Compile Time")    @Timespan long time;
+        @Label("Lexer")           @Timespan long lex;
+        @Label("Parser")          @Timespan long parse;
+        @Label("Optimizer")       @Timespan long optimize;
+        @Label("SQL Generation")  @Timespan long generate;
+        @Label("Post Filter")     @Timespan long postFilter;
+        @Label("Error Reporting") @Timespan long errorReporting;
+        @Label("SQL Length")      int    sqlLength;
+        @Label("Parse Tree Depth") int   depth;
+        @Label("Error Category")  String error;
+
+        void set(int type, int engine, long[] phase_nanos, long nanos) {
+            this.type           = type;
+            this.engine         = engine;
+            this.time           = nanos;
+            this.lex            = phase_nanos[LEX];
+            this.parse          = phase_nanos[PARSE];
+            this.optimize       = phase_nanos[OPTIMIZE];
+            this.generate       = phase_nanos[GENERATE];
+            this.postFilter     = phase_nanos[POST_FILTER];
+            this.errorReporting = phase_nanos[ERROR];
+        }
+    }
+}